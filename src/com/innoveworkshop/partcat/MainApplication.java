@@ -1,8 +1,15 @@
 package com.innoveworkshop.partcat;
 
+import java.awt.Dimension;
 import java.awt.EventQueue;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.prefs.Preferences;
 
+import com.innoveworkshop.partcat.exceptions.WorkspaceNotFoundException;
+import com.innoveworkshop.partcat.images.ThumbnailGenerator;
+import com.innoveworkshop.partcat.images.ThumbnailProgressListener;
 import com.innoveworkshop.partcat.resources.ApplicationResources;
 import com.innoveworkshop.partcat.ui.MainWindow;
 
@@ -22,18 +29,28 @@ public class MainApplication {
 	 * @param args Command line arguments.
 	 */
 	public static void main(String[] args) throws Exception {
+		// Get preferences.
+		prefs = Preferences.userNodeForPackage(MainApplication.class.getClass());
+		
+		// Batch operations that don't need the UI.
+		if ((args.length > 0) && args[0].equals("--generate-thumbnails")) {
+			System.exit(generateThumbnails(args) ? 0 : 1);
+			return;
+		}
+		
 		// Get resources.
 		res = new ApplicationResources();
 		
-		// Get preferences.
-		prefs = Preferences.userNodeForPackage(MainApplication.class.getClass());
 		String lastWorkspace = prefs.get(PartCatConstants.LAST_OPENED_WORKSPACE_KEY, null);
 		
 		// Open workspace.
 		try {
 			workspace = null;
-			if (lastWorkspace != null)
-				workspace = new PartCatWorkspace(lastWorkspace);
+			if (lastWorkspace != null) {
+				workspace = new PartCatWorkspace();
+				workspace.loadPreferences(prefs);
+				workspace.open(Paths.get(lastWorkspace));
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.out.println("Looks like the last used workspace is no longer valid. " + 
@@ -58,4 +75,68 @@ public class MainApplication {
 			}
 		});
 	}
+	
+	/**
+	 * Generates the thumbnails of a workspace from the command line. Usage:
+	 * {@code --generate-thumbnails <workspace> [<width>x<height> ...]}. When no
+	 * sizes are given the ones that have been used before are generated.
+	 * 
+	 * @param  args Command line arguments.
+	 * @return      True if everything went fine.
+	 */
+	private static boolean generateThumbnails(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: --generate-thumbnails <workspace> " +
+					"[<width>x<height> ...]");
+			return false;
+		}
+		
+		// Open the workspace.
+		PartCatWorkspace workspace = new PartCatWorkspace();
+		workspace.loadPreferences(prefs);
+		try {
+			workspace.open(Paths.get(args[1]));
+		} catch (WorkspaceNotFoundException e) {
+			System.err.println("Couldn't find the workspace at " + args[1]);
+			return false;
+		}
+		
+		// Get the sizes to generate.
+		List<Dimension> sizes = new ArrayList<Dimension>();
+		for (int i = 2; i < args.length; i++) {
+			String[] size = args[i].split("x");
+			try {
+				sizes.add(new Dimension(Integer.parseInt(size[0]),
+						Integer.parseInt(size[1])));
+			} catch (Exception e) {
+				System.err.println("Invalid thumbnail size " + args[i]);
+				return false;
+			}
+		}
+		if (sizes.isEmpty())
+			sizes.addAll(workspace.getImageCache().getThumbnailStore().getSizes());
+		if (sizes.isEmpty()) {
+			System.err.println("No thumbnails have been shown yet, so a size " +
+					"has to be given.");
+			return false;
+		}
+		
+		// Generate them.
+		ThumbnailGenerator generator = new ThumbnailGenerator(workspace, sizes);
+		long start = System.currentTimeMillis();
+		generator.generate(new ThumbnailProgressListener() {
+			@Override
+			public void progressChanged(int done, int total) {
+				if (((done % 100) == 0) || (done == total))
+					System.out.println(done + "/" + total + " images");
+			}
+		});
+		
+		System.out.println("Generated " + generator.getGenerated() + " thumbnails (" +
+				generator.getSkipped() + " up to date, " + generator.getFailed() +
+				" failed) in " + (System.currentTimeMillis() - start) + " ms.");
+		workspace.close();
+		
+		return generator.getFailed() == 0;
+	}
 }
@@ -19,6 +19,14 @@ public final class PartCatConstants {
 	
 	// Sub folders paths.
 	public static final String IMAGES_DIR = "images";
+	public static final String ORIGINALS_DIR = "originals";
+	
+	// Workspace metadata (caches and indexes).
+	public static final String METADATA_ROOT    = ".partcat";
+	public static final String INDEX_FILE       = "index.bin";
+	public static final String FULLTEXT_FILE    = "fulltext.bin";
+	public static final String THUMBNAILS_DIR   = "thumbs";
+	public static final String THUMBNAIL_HASHES_FILE = "hashes.properties";
 	
 	// Preferences keys.
 	public static final String LAST_OPENED_WORKSPACE_KEY = "LastOpenedWorkspace";
@@ -27,10 +35,34 @@ public final class PartCatConstants {
 	public static final String WINDOW_POSITION_Y_KEY = "WindowPositionY";
 	public static final String WINDOW_WIDTH_KEY = "WindowWidth";
 	public static final String WINDOW_HEIGHT_KEY = "WindowHeight";
+	public static final String LOAD_THREADS_KEY = "LoadThreads";
+	public static final String LAZY_LOADING_KEY = "LazyLoading";
+	public static final String IMAGE_CACHE_SIZE_KEY = "ImageCacheSize";
+	public static final String PREFETCH_COUNT_KEY = "PrefetchCount";
+	public static final String IMPORT_MAX_IMAGE_SIZE_KEY = "ImportMaxImageSize";
+	public static final String IMPORT_KEEP_ORIGINALS_KEY = "ImportKeepOriginals";
 	
 	// Special component property keys.
 	public static final String PROPERTY_VALUE = "Value";
 	public static final String PROPERTY_CATEGORY = "Category";
 	public static final String PROPERTY_SUBCATEGORY = "Sub-Category";
 	public static final String PROPERTY_PACKAGE = "Package";
+	
+	// Workspace loading defaults.
+	public static final int DEFAULT_LOAD_THREADS = 8;
+	
+	// Image caching defaults.
+	public static final int DEFAULT_IMAGE_CACHE_SIZE = 64;  // MB
+	
+	// Image import defaults.
+	public static final int DEFAULT_IMPORT_MAX_IMAGE_SIZE = 1600;  // Pixels (longest side)
+	
+	// Maximum number of components shown for a full text search.
+	public static final int MAX_SEARCH_RESULTS = 500;
+	
+	// Component tree filtering delay after the last keystroke.
+	public static final int FILTER_DELAY = 200;  // ms
+	
+	// Component prefetching defaults.
+	public static final int DEFAULT_PREFETCH_COUNT = 3;
 }
@@ -1,20 +1,48 @@
 package com.innoveworkshop.partcat;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.prefs.Preferences;
 
 import com.innoveworkshop.partcat.components.Component;
 import com.innoveworkshop.partcat.components.ComponentCategory;
-import com.innoveworkshop.partcat.components.comparators.ComponentComparators;
 import com.innoveworkshop.partcat.exceptions.ComponentNotFoundException;
+import com.innoveworkshop.partcat.exceptions.QueryParseException;
 import com.innoveworkshop.partcat.exceptions.WorkspaceNotFoundException;
+import com.innoveworkshop.partcat.images.ImageCache;
+import com.innoveworkshop.partcat.images.ThumbnailStore;
+import com.innoveworkshop.partcat.index.CategoryIndex;
+import com.innoveworkshop.partcat.index.FullTextIndex;
+import com.innoveworkshop.partcat.index.ImageIndex;
+import com.innoveworkshop.partcat.index.PropertyIndex;
+import com.innoveworkshop.partcat.index.TrigramIndex;
+import com.innoveworkshop.partcat.index.WorkspaceSnapshot;
+import com.innoveworkshop.partcat.query.Query;
+import com.innoveworkshop.partcat.watcher.WorkspaceChangeEvent;
+import com.innoveworkshop.utilities.StringPool;
 
 /**
  * A PartCat workspace (root folder) abstraction class.
@@ -23,7 +51,22 @@ import com.innoveworkshop.partcat.exceptions.WorkspaceNotFoundException;
  */
 public class PartCatWorkspace {
 	private Path root_path;
-	private List<Component> components;
+	private volatile List<Component> components;
+	private volatile Map<String, Component> nameIndex;
+	private volatile Map<String, Component> foldedNameIndex;
+	private CategoryIndex categoryIndex;
+	private TrigramIndex trigramIndex;
+	private FullTextIndex fullTextIndex;
+	private PropertyIndex propertyIndex;
+	private StringPool stringPool;
+	private ImageIndex imageIndex;
+	private ImageCache imageCache;
+	private Map<String, Exception> loadErrors;
+	private WorkspaceSnapshot snapshot;
+	private int loadThreads;
+	private boolean lazyLoading;
+	private int importMaxImageSize;
+	private boolean keepImportOriginals;
 	private boolean opened;
 
 	/**
@@ -32,7 +75,23 @@ public class PartCatWorkspace {
 	public PartCatWorkspace() {
 		this.root_path = null;
 		this.opened = false;
-		this.components = new ArrayList<Component>();
+		this.components = Collections.emptyList();
+		this.nameIndex = new ConcurrentHashMap<String, Component>();
+		this.foldedNameIndex = new ConcurrentHashMap<String, Component>();
+		this.categoryIndex = new CategoryIndex();
+		this.trigramIndex = new TrigramIndex();
+		this.propertyIndex = new PropertyIndex();
+		this.stringPool = new StringPool();
+		this.imageIndex = null;
+		this.imageCache = new ImageCache(
+				PartCatConstants.DEFAULT_IMAGE_CACHE_SIZE * 1024L * 1024L);
+		this.loadErrors = new LinkedHashMap<String, Exception>();
+		this.snapshot = null;
+		this.fullTextIndex = null;
+		this.loadThreads = PartCatConstants.DEFAULT_LOAD_THREADS;
+		this.lazyLoading = false;
+		this.importMaxImageSize = PartCatConstants.DEFAULT_IMPORT_MAX_IMAGE_SIZE;
+		this.keepImportOriginals = false;
 	}
 	
 	/**
@@ -80,31 +139,667 @@ public class PartCatWorkspace {
 	 * Closes the workspace.
 	 */
 	public void close() {
+		saveFullTextIndex();
+		fullTextIndex = null;
 		root_path = null;
 		opened = false;
-		components.clear();
+		setComponents(new ArrayList<Component>());
+		loadErrors.clear();
+		snapshot = null;
+		stringPool.clear();
+		imageIndex = null;
+		imageCache.clear();
+		if (imageCache.getThumbnailStore() != null) {
+			imageCache.getThumbnailStore().prune();
+			imageCache.setThumbnailStore(null);
+		}
+	}
+	
+	/**
+	 * Loads the workspace settings from the application {@link Preferences}.
+	 * This should be called before opening the workspace.
+	 * 
+	 * @param prefs Application preferences.
+	 */
+	public void loadPreferences(Preferences prefs) {
+		setLoadThreads(prefs.getInt(PartCatConstants.LOAD_THREADS_KEY,
+				PartCatConstants.DEFAULT_LOAD_THREADS));
+		setLazyLoading(prefs.getBoolean(PartCatConstants.LAZY_LOADING_KEY, false));
+		imageCache.setMaxBytes(prefs.getInt(PartCatConstants.IMAGE_CACHE_SIZE_KEY,
+				PartCatConstants.DEFAULT_IMAGE_CACHE_SIZE) * 1024L * 1024L);
+		setImportMaxImageSize(prefs.getInt(PartCatConstants.IMPORT_MAX_IMAGE_SIZE_KEY,
+				PartCatConstants.DEFAULT_IMPORT_MAX_IMAGE_SIZE));
+		setKeepImportOriginals(prefs.getBoolean(
+				PartCatConstants.IMPORT_KEEP_ORIGINALS_KEY, false));
 	}
 	
 	/**
-	 * Populates the components list of the workspace.
+	 * Populates the components list of the workspace. Components are loaded
+	 * in parallel (see {@link #setLoadThreads(int)}), but the resulting list
+	 * is always in the same order as a serial load would produce. Components
+	 * that haven't changed since the last load are taken from the workspace
+	 * index instead of being read from disk.
 	 */
 	public void populateComponents() {
-		// Clear the list if we have something there.
-		if (components.size() > 0)
-			components.clear();
+		ArrayList<Component> loaded = new ArrayList<Component>();
+		loadErrors.clear();
+		
+		// Load the index of the last time we were opened.
+		if (snapshot == null)
+			snapshot = WorkspaceSnapshot.load(getIndexPath(), stringPool);
+		
+		loadComponents(loaded);
+		setComponents(loaded);
+		
+		// Drop whatever is gone from the index and persist it.
+		ArrayList<String> names = new ArrayList<String>(loaded.size());
+		for (Component component : loaded)
+			names.add(component.getName());
+		snapshot.retainAll(names);
+		saveIndex();
+		
+		// Bring the full text index up to date with what we've loaded.
+		if (fullTextIndex == null)
+			fullTextIndex = FullTextIndex.load(getFullTextIndexPath());
+		for (Component component : loaded) {
+			if (component.isDeleted())
+				continue;
+			
+			WorkspaceSnapshot.Entry entry = snapshot.get(component.getName());
+			long[] stamp = (entry == null) ? null : entry.getStamp();
+			if (!fullTextIndex.isCurrent(component.getName(), stamp))
+				fullTextIndex.put(component, stamp);
+		}
+		fullTextIndex.retainAll(names);
+		saveFullTextIndex();
+	}
+	
+	/**
+	 * Replaces the components list. The list is never modified after being
+	 * set, so that it can be safely read from other threads (such as the
+	 * workspace watcher) while it's being replaced.
+	 * 
+	 * @param list New components list.
+	 */
+	private void setComponents(List<Component> list) {
+		// Rebuild the name indexes.
+		Map<String, Component> names = new ConcurrentHashMap<String, Component>(
+				Math.max(16, list.size() * 2));
+		Map<String, Component> folded = new ConcurrentHashMap<String, Component>(
+				Math.max(16, list.size() * 2));
+		for (Component component : list) {
+			if (component.isDeleted())
+				continue;
+			
+			names.put(component.getName(), component);
+			folded.putIfAbsent(foldName(component.getName()), component);
+		}
+		
+		nameIndex = names;
+		foldedNameIndex = folded;
+		categoryIndex.rebuild(list);
+		trigramIndex.rebuild(list);
+		propertyIndex.rebuild(list);
+		components = Collections.unmodifiableList(list);
+	}
+	
+	/**
+	 * Case-folds a component name for the case-insensitive name index.
+	 * 
+	 * @param  name Component name.
+	 * @return      Case-folded name.
+	 */
+	private static String foldName(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Adds a component to the name, category, trigram and property indexes.
+	 * 
+	 * @param component Component to be indexed.
+	 */
+	private void indexComponent(Component component) {
+		nameIndex.put(component.getName(), component);
+		foldedNameIndex.putIfAbsent(foldName(component.getName()), component);
+		categoryIndex.add(component);
+		trigramIndex.add(component);
+		propertyIndex.add(component);
+		updateFullText(component);
+	}
+	
+	/**
+	 * Removes a component from the name, category, trigram and property
+	 * indexes.
+	 * 
+	 * @param component Component to be removed.
+	 * @param name      Name the component was indexed under.
+	 */
+	private void unindexComponent(Component component, String name) {
+		nameIndex.remove(name, component);
+		categoryIndex.remove(component);
+		trigramIndex.remove(component);
+		propertyIndex.remove(component);
+		if (fullTextIndex != null)
+			fullTextIndex.remove(name);
 		
-		// Go through the components folder.
+		// Another component whose name only differs in case takes its place.
+		String folded = foldName(name);
+		if (foldedNameIndex.remove(folded, component)) {
+			for (Component sibling : trigramIndex.search(name)) {
+				if ((sibling != component) && !sibling.isDeleted() &&
+						foldName(sibling.getName()).equals(folded)) {
+					foldedNameIndex.putIfAbsent(folded, sibling);
+					break;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Updates the full text index with the current contents of a component.
+	 * 
+	 * @param component Component to be indexed.
+	 */
+	private void updateFullText(Component component) {
+		if ((fullTextIndex == null) || component.isDeleted())
+			return;
+		
+		// Components that were just reloaded have a current snapshot.
+		WorkspaceSnapshot.Entry entry = (snapshot == null) ? null :
+				snapshot.get(component.getName());
+		fullTextIndex.put(component, (entry == null) ? null : entry.getStamp());
+	}
+	
+	/**
+	 * Updates the workspace indexes after a component has been renamed. This is
+	 * called by the {@link Component} itself.
+	 * 
+	 * @param component Renamed component.
+	 * @param oldName   Name the component had before being renamed.
+	 */
+	public void componentRenamed(Component component, String oldName) {
+		unindexComponent(component, oldName);
+		indexComponent(component);
+	}
+	
+	/**
+	 * Updates the workspace indexes after a component has been deleted. This is
+	 * called by the {@link Component} itself.
+	 * 
+	 * @param component Deleted component.
+	 */
+	public void componentDeleted(Component component) {
+		unindexComponent(component, component.getName());
+	}
+	
+	/**
+	 * Updates the workspace indexes after the properties of a component have
+	 * been changed and saved. This is called by the {@link Component} itself.
+	 * 
+	 * @param component Changed component.
+	 */
+	public void componentChanged(Component component) {
+		categoryIndex.update(component);
+		propertyIndex.update(component);
+		
+		// The snapshot is behind the saved files, so we don't know the stamp.
+		if (fullTextIndex != null)
+			fullTextIndex.put(component, null);
+	}
+	
+	/**
+	 * Loads all the components from the components folder.
+	 * 
+	 * @param components List to add the loaded components to.
+	 */
+	private void loadComponents(List<Component> components) {
+		// Go through the components folder, only taking directories into account.
 		Path components_dir = root_path.resolve(PartCatConstants.COMPONENTS_ROOT);
-		for (File file : components_dir.toFile().listFiles()) {
-			// Only add to the list if the file is actually a directory.
-			if (file.isDirectory()) {
+		File[] folders = components_dir.toFile().listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isDirectory();
+			}
+		});
+		if (folders == null)
+			return;
+		
+		// Sort the folders to make sure the load order is always the same.
+		Arrays.sort(folders);
+		
+		// Check if it's even worth going parallel.
+		if ((loadThreads <= 1) || (folders.length < 2)) {
+			for (File folder : folders) {
 				try {
-					components.add(new Component(this, file.getName()));
+					components.add(loadComponent(folder.getName()));
 				} catch (Exception e) {
 					e.printStackTrace();
+					loadErrors.put(folder.getName(), e);
+				}
+			}
+			
+			return;
+		}
+		
+		// Submit all the component loads to the pool.
+		ExecutorService pool = Executors.newFixedThreadPool(
+				Math.min(loadThreads, folders.length), new LoaderThreadFactory());
+		List<Future<Component>> futures = new ArrayList<Future<Component>>(folders.length);
+		for (final File folder : folders) {
+			futures.add(pool.submit(new Callable<Component>() {
+				@Override
+				public Component call() throws Exception {
+					return loadComponent(folder.getName());
+				}
+			}));
+		}
+		
+		// Merge the results back in submission order.
+		try {
+			for (int i = 0; i < folders.length; i++) {
+				try {
+					components.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					Exception cause = (e.getCause() instanceof Exception) ?
+							(Exception)e.getCause() : e;
+					cause.printStackTrace();
+					loadErrors.put(folders[i].getName(), cause);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			e.printStackTrace();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Loads a single component, either from the workspace index, if it's still
+	 * current, or from disk. This is safe to be called from multiple threads.
+	 * 
+	 * @param  name Component name.
+	 * @return      Loaded component.
+	 * 
+	 * @throws Exception If anything goes wrong while loading the component.
+	 */
+	private Component loadComponent(String name) throws Exception {
+		// Stat the component before reading it, that way a change that happens
+		// while we are reading will be caught the next time around.
+		long[] stamp = WorkspaceSnapshot.stamp(root_path
+				.resolve(PartCatConstants.COMPONENTS_ROOT).resolve(name));
+		
+		// Check if we can just use what we have in the index.
+		WorkspaceSnapshot.Entry entry = snapshot.getCurrent(name, stamp);
+		if (entry != null) {
+			Component component = new Component(this, entry);
+			
+			// Store whatever was missing from a previous lazy load.
+			if (!lazyLoading && !entry.isComplete())
+				snapshot.put(component, stamp);
+			
+			return component;
+		}
+		
+		// Read it from disk and update the index.
+		Component component = new Component(this, name);
+		snapshot.put(component, stamp);
+		
+		return component;
+	}
+	
+	/**
+	 * Reads the components with the given names from disk without changing the
+	 * workspace. This can be called from any thread and is meant to be used
+	 * together with {@link #applyChanges(WorkspaceChangeEvent)}. Components
+	 * that haven't changed since they were last loaded are left out.
+	 * 
+	 * @param  names Names of the components to be reloaded.
+	 * @return       Changes that should be applied to the workspace.
+	 */
+	public WorkspaceChangeEvent prepareReload(Collection<String> names) {
+		return prepareReload(names, Collections.<String>emptySet());
+	}
+	
+	/**
+	 * Reads the components with the given names from disk without changing the
+	 * workspace. This can be called from any thread and is meant to be used
+	 * together with {@link #applyChanges(WorkspaceChangeEvent)}.
+	 * 
+	 * @param  names  Names of the components to be reloaded.
+	 * @param  forced Names of the components that must be reloaded even if
+	 *                their folders haven't changed since they were loaded.
+	 * @return        Changes that should be applied to the workspace.
+	 */
+	public WorkspaceChangeEvent prepareReload(Collection<String> names,
+			Collection<String> forced) {
+		WorkspaceChangeEvent event = new WorkspaceChangeEvent(this);
+		if (!isOpen() || (snapshot == null))
+			return event;
+		
+		for (String name : new LinkedHashSet<String>(names)) {
+			Component current = findComponent(name);
+			
+			// Deleted components are no longer indexed by name.
+			if (current == null)
+				current = findDeletedComponent(name);
+			
+			// Check if the component was removed.
+			if (!Component.exists(this, name)) {
+				if (current != null) {
+					event.addRemoved(current);
+				} else if (snapshot.get(name) != null) {
+					event.addRemovedName(name);
 				}
+				
+				continue;
+			}
+			
+			try {
+				// Skip the components that haven't changed since we loaded them.
+				long[] stamp = WorkspaceSnapshot.stamp(root_path
+						.resolve(PartCatConstants.COMPONENTS_ROOT).resolve(name));
+				if ((current != null) && !forced.contains(name) &&
+						(snapshot.getCurrent(name, stamp) != null)) {
+					continue;
+				}
+				
+				Component component = loadComponent(name);
+				if (current == null) {
+					event.addAdded(component);
+				} else {
+					event.addModified(current, component);
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+				event.addError(name, e);
 			}
 		}
+		
+		return event;
+	}
+	
+	/**
+	 * Applies the changes of a previously prepared reload to the workspace. This
+	 * should be called from the same thread that reads the components list
+	 * (usually the UI thread). Changes that were already made by someone else
+	 * since the event was prepared are dropped from it, so that afterwards it
+	 * only holds what was actually applied.
+	 * 
+	 * @param event Changes prepared by {@link #prepareReload(Collection)}.
+	 */
+	public void applyChanges(WorkspaceChangeEvent event) {
+		if (!isOpen() || event.isEmpty())
+			return;
+		
+		// The event may have been prepared before the last changes were made.
+		event.discardStale(components);
+		if (event.isEmpty())
+			return;
+		
+		// Build the new list, replacing modified components in place.
+		ArrayList<Component> list = new ArrayList<Component>(components.size() +
+				event.getAdded().size());
+		for (Component component : components) {
+			if (event.isRemoved(component))
+				continue;
+			
+			Component replacement = event.getReplacement(component);
+			list.add((replacement != null) ? replacement : component);
+		}
+		list.addAll(event.getAdded());
+		components = Collections.unmodifiableList(list);
+		
+		// Update the indexes.
+		for (Component component : event.getRemoved())
+			unindexComponent(component, component.getName());
+		for (Component component : event.getReplaced()) {
+			// Replacements have the same name, so they take over the slots.
+			nameIndex.remove(component.getName(), component);
+			foldedNameIndex.remove(foldName(component.getName()), component);
+			categoryIndex.remove(component);
+			trigramIndex.remove(component);
+			propertyIndex.remove(component);
+		}
+		for (Component component : event.getModified())
+			indexComponent(component);
+		for (Component component : event.getAdded())
+			indexComponent(component);
+		
+		// Keep the index and the errors up to date.
+		for (Component component : event.getRemoved())
+			snapshot.remove(component.getName());
+		for (String name : event.getRemovedNames())
+			snapshot.remove(name);
+		for (Component component : event.getAdded())
+			loadErrors.remove(component.getName());
+		for (Component component : event.getModified())
+			loadErrors.remove(component.getName());
+		loadErrors.putAll(event.getErrors());
+		saveIndex();
+		saveFullTextIndex();
+	}
+	
+	/**
+	 * Reloads the components with the given names from disk and applies the
+	 * changes to the workspace.
+	 * 
+	 * @param  names Names of the components to be reloaded.
+	 * @return       Changes that were applied to the workspace.
+	 */
+	public WorkspaceChangeEvent reloadComponents(Collection<String> names) {
+		WorkspaceChangeEvent event = prepareReload(names);
+		applyChanges(event);
+		
+		return event;
+	}
+	
+	/**
+	 * Finds a component that was deleted but is still in the components list.
+	 * 
+	 * @param  name Name of the deleted component.
+	 * @return      Deleted component or {@code null} if there isn't one.
+	 */
+	private Component findDeletedComponent(String name) {
+		for (Component component : components) {
+			if (component.isDeleted() && component.getName().equals(name))
+				return component;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Gets the names of the components that are using any of the given images.
+	 * 
+	 * @param  imageNames Image names (filenames without extension).
+	 * @return            Names of the components that use those images.
+	 */
+	public Set<String> getComponentsUsingImages(Collection<String> imageNames) {
+		Set<String> names = new HashSet<String>();
+		if (imageNames.isEmpty())
+			return names;
+		
+		for (Component component : components) {
+			// Images that were never loaded don't need to be reloaded.
+			if (!component.isImageLoaded())
+				continue;
+			
+			if (imageNames.contains(component.getImageDeclaration()) ||
+					imageNames.contains(component.getImage().getName()) ||
+					imageNames.contains(component.getPackage())) {
+				names.add(component.getName());
+			}
+		}
+		
+		return names;
+	}
+	
+	/**
+	 * Gets the names of all the components loaded in the workspace.
+	 * 
+	 * @return Component names.
+	 */
+	public List<String> getComponentNames() {
+		List<Component> list = components;
+		ArrayList<String> names = new ArrayList<String>(list.size());
+		
+		for (Component component : list)
+			names.add(component.getName());
+		
+		return names;
+	}
+	
+	/**
+	 * Gets the names of all the component folders currently in the workspace.
+	 * 
+	 * @return Component folder names.
+	 */
+	public List<String> listComponentFolders() {
+		ArrayList<String> names = new ArrayList<String>();
+		File[] folders = root_path.resolve(PartCatConstants.COMPONENTS_ROOT).toFile()
+				.listFiles();
+		
+		if (folders != null) {
+			for (File folder : folders) {
+				if (folder.isDirectory())
+					names.add(folder.getName());
+			}
+		}
+		
+		return names;
+	}
+	
+	/**
+	 * Saves the workspace index to disk if it has changed.
+	 */
+	public void saveIndex() {
+		if ((snapshot == null) || !snapshot.isDirty())
+			return;
+		
+		try {
+			snapshot.save(getIndexPath());
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Couldn't save the workspace index.");
+		}
+	}
+	
+	/**
+	 * Saves the full text index to disk if it has changed.
+	 */
+	public void saveFullTextIndex() {
+		if ((fullTextIndex == null) || !fullTextIndex.isDirty())
+			return;
+		
+		try {
+			fullTextIndex.save(getFullTextIndexPath());
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Couldn't save the full text index.");
+		}
+	}
+	
+	/**
+	 * Gets the errors that occurred while loading components during the last
+	 * {@link #populateComponents()} call.
+	 * 
+	 * @return Map of component folder names and the exception that prevented
+	 *         each one of them from being loaded, in load order.
+	 */
+	public Map<String, Exception> getLoadErrors() {
+		return Collections.unmodifiableMap(loadErrors);
+	}
+	
+	/**
+	 * Gets the maximum number of components that are loaded at the same time.
+	 * 
+	 * @return Number of loader threads.
+	 */
+	public int getLoadThreads() {
+		return loadThreads;
+	}
+	
+	/**
+	 * Sets the maximum number of components that are loaded at the same time.
+	 * Setting this to 1 (or less) makes the workspace load serially.
+	 * 
+	 * @param loadThreads Number of loader threads.
+	 */
+	public void setLoadThreads(int loadThreads) {
+		this.loadThreads = Math.max(1, loadThreads);
+	}
+	
+	/**
+	 * Checks if the workspace is loading components lazily.
+	 * 
+	 * @return True if only the manifest of each component is read when the
+	 *         workspace is opened.
+	 */
+	public boolean isLazyLoading() {
+		return lazyLoading;
+	}
+	
+	/**
+	 * Sets the lazy loading mode. When enabled, only the name and manifest of
+	 * each component is read when the workspace is opened. Everything else is
+	 * loaded and cached the first time it's accessed.
+	 * 
+	 * @param lazyLoading Should components be loaded lazily?
+	 */
+	public void setLazyLoading(boolean lazyLoading) {
+		this.lazyLoading = lazyLoading;
+	}
+	
+	/**
+	 * Gets the maximum size of the images imported into the workspace.
+	 * 
+	 * @return Maximum width and height of an imported image in pixels or 0 if
+	 *         images are imported as they are.
+	 */
+	public int getImportMaxImageSize() {
+		return importMaxImageSize;
+	}
+	
+	/**
+	 * Sets the maximum size of the images imported into the workspace. Bigger
+	 * images are downscaled to fit this size when imported.
+	 * 
+	 * @param importMaxImageSize Maximum width and height of an imported image
+	 *                           in pixels. 0 (or less) imports the images as
+	 *                           they are.
+	 */
+	public void setImportMaxImageSize(int importMaxImageSize) {
+		this.importMaxImageSize = Math.max(0, importMaxImageSize);
+	}
+	
+	/**
+	 * Checks if the originals of the images downscaled on import are kept.
+	 * 
+	 * @return True if the originals are archived in the originals directory.
+	 */
+	public boolean isKeepingImportOriginals() {
+		return keepImportOriginals;
+	}
+	
+	/**
+	 * Sets if the originals of the images downscaled on import should be kept
+	 * in the originals directory.
+	 * 
+	 * @param keepImportOriginals Should the originals be kept?
+	 */
+	public void setKeepImportOriginals(boolean keepImportOriginals) {
+		this.keepImportOriginals = keepImportOriginals;
+	}
+	
+	/**
+	 * Gets the pool of strings shared by the properties of all the components
+	 * in the workspace.
+	 * 
+	 * @return Workspace string pool.
+	 */
+	public StringPool getStringPool() {
+		return stringPool;
 	}
 	
 	/**
@@ -151,6 +846,74 @@ public class PartCatWorkspace {
 		return root_path.resolve(PartCatConstants.ASSETS_ROOT).resolve(PartCatConstants.IMAGES_DIR);
 	}
 	
+	/**
+	 * Gets the path to the directory where the originals of the images that
+	 * were downscaled on import are kept.
+	 * 
+	 * @return Originals directory path.
+	 */
+	public Path getOriginalsPath() {
+		return root_path.resolve(PartCatConstants.ASSETS_ROOT).resolve(PartCatConstants.ORIGINALS_DIR);
+	}
+	
+	/**
+	 * Gets the index of the components grouped by category, which also holds
+	 * the category objects shared by every component in the workspace.
+	 * 
+	 * @return Category index.
+	 */
+	public CategoryIndex getCategoryIndex() {
+		return categoryIndex;
+	}
+	
+	/**
+	 * Gets the index of the images directory, which is shared by every
+	 * component image in the workspace.
+	 * 
+	 * @return Images directory index.
+	 */
+	public ImageIndex getImageIndex() {
+		return imageIndex;
+	}
+	
+	/**
+	 * Gets the cache of decoded images, which is shared by every component
+	 * image in the workspace.
+	 * 
+	 * @return Decoded image cache.
+	 */
+	public ImageCache getImageCache() {
+		return imageCache;
+	}
+	
+	/**
+	 * Gets the path to the metadata (caches and indexes) directory of the
+	 * workspace.
+	 * 
+	 * @return Metadata directory path.
+	 */
+	public Path getMetadataPath() {
+		return root_path.resolve(PartCatConstants.METADATA_ROOT);
+	}
+	
+	/**
+	 * Gets the path to the workspace index file.
+	 * 
+	 * @return Workspace index file path.
+	 */
+	public Path getIndexPath() {
+		return getMetadataPath().resolve(PartCatConstants.INDEX_FILE);
+	}
+	
+	/**
+	 * Gets the path to the full text index file.
+	 * 
+	 * @return Full text index file path.
+	 */
+	public Path getFullTextIndexPath() {
+		return getMetadataPath().resolve(PartCatConstants.FULLTEXT_FILE);
+	}
+	
 	/**
 	 * Sets the workspace path.
 	 * 
@@ -166,6 +929,9 @@ public class PartCatWorkspace {
 			 throw new WorkspaceNotFoundException(path.toString());
 		
 		root_path = path;
+		imageIndex = new ImageIndex(getImagesPath());
+		imageCache.setThumbnailStore(new ThumbnailStore(
+				getMetadataPath().resolve(PartCatConstants.THUMBNAILS_DIR), root_path));
 		opened = true;
 	}
 	
@@ -178,96 +944,142 @@ public class PartCatWorkspace {
 	 * @throws ComponentNotFoundException If the name didn't match any components.
 	 */
 	public Component getComponent(String name) throws ComponentNotFoundException {
-		ListIterator<Component> iter = components.listIterator();
+		return getComponent(name, false);
+	}
+	
+	/**
+	 * Gets a component from this workspace by its name.
+	 * 
+	 * @param  name       Name of the component to search for.
+	 * @param  ignoreCase Should the name be matched case-insensitively? An
+	 *                    exact match is always preferred.
+	 * @return            The found component.
+	 * 
+	 * @throws ComponentNotFoundException If the name didn't match any components.
+	 */
+	public Component getComponent(String name, boolean ignoreCase)
+			throws ComponentNotFoundException {
+		Component comp = findComponent(name);
+		if ((comp == null) && ignoreCase)
+			comp = foldedNameIndex.get(foldName(name));
 		
-		while (iter.hasNext()) {
-			Component comp = iter.next();
-			if (comp.getName().equals(name))
-				return comp;
-		}
+		if (comp == null)
+			throw new ComponentNotFoundException(name);
+		
+		return comp;
+	}
+	
+	/**
+	 * Finds a component in this workspace by its name.
+	 * 
+	 * @param  name Name of the component to search for.
+	 * @return      The found component or {@code null} if there isn't one.
+	 */
+	private Component findComponent(String name) {
+		if (name == null)
+			return null;
 		
-		throw new ComponentNotFoundException(name);
+		return nameIndex.get(name);
 	}
 	
 	/**
 	 * Gets a list of all the component for a given category.
 	 * 
 	 * @param  category Category to search for components.
-	 * @return          A list of components in that category.
+	 * @return          A read-only list of components in that category sorted
+	 *                  alphabetically.
 	 */
-	public ArrayList<Component> getComponentsByCategories(ComponentCategory category) {
-		ArrayList<Component> components = new ArrayList<Component>();
-		ListIterator<Component> iter = componentIterator();
-		
-		// Go through components matching the category.
-		while (iter.hasNext()) {
-			Component comp = iter.next();
-			
-			if (category.equals(comp.getCategory())) {
-				components.add(comp);
-			}
-		}
-		
-		// Sort the components alphabetically.
-		ComponentComparators compars = new ComponentComparators();
-		Collections.sort(components, compars.new Alphabetically());
-		
-		return components;
+	public List<Component> getComponentsByCategories(ComponentCategory category) {
+		return categoryIndex.getComponents(category);
 	}
 	
 	/**
-	 * Gets a list of all the component categories (populated with sub-categories)
-	 * that are used in this workspace.
+	 * Gets a list of all the component for a given sub category.
+	 * 
+	 * @param  category    Category to search for components.
+	 * @param  subCategory Sub category to search for components or
+	 *                     {@code null} to get the components in the category
+	 *                     that don't have a sub category.
+	 * @return             A read-only list of components in that sub category
+	 *                     sorted alphabetically.
+	 */
+	public List<Component> getComponentsBySubCategory(ComponentCategory category,
+			ComponentCategory subCategory) {
+		return categoryIndex.getComponents(category, subCategory);
+	}
+	
+	/**
+	 * Gets the components whose names contain a piece of text, ignoring case.
+	 * This is answered by a trigram index, so it doesn't have to go through
+	 * every component.
 	 * 
-	 * @return A list of component categories.
+	 * @param  text Text to search for in the component names.
+	 * @return      A read-only set of the matching components.
+	 */
+	public Set<Component> getComponentsByName(String text) {
+		return trigramIndex.search(text);
+	}
+	
+	/**
+	 * Searches the names, properties and notes of the components for a piece
+	 * of text. The results are ranked by relevance (BM25).
 	 * 
-	 * @see {@link ComponentCategory}
+	 * @param  text  Text to search for.
+	 * @param  limit Maximum number of components to return.
+	 * @return       Matching components, best matches first.
 	 */
-	public ArrayList<ComponentCategory> getComponentCategories() {
-		ArrayList<ComponentCategory> categories = new ArrayList<ComponentCategory>();
-		ListIterator<Component> iterComponents = componentIterator();
+	public List<Component> searchComponents(String text, int limit) {
+		if (fullTextIndex == null)
+			return Collections.emptyList();
 		
-		// Go through components looking for unique categories.
-		while (iterComponents.hasNext()) {
-			ComponentCategory cat = iterComponents.next().getCategory();
-			
-			// Looks like a unique category so far?
-			if (!categories.contains(cat)) {
-				categories.add(cat);
-			}
+		List<Component> results = new ArrayList<Component>();
+		for (String name : fullTextIndex.search(text, limit)) {
+			Component component = findComponent(name);
+			if (component != null)
+				results.add(component);
 		}
 		
-		// Populate the categories with their respective sub categories.
-		ListIterator<ComponentCategory> iterCategories = categories.listIterator();
-		while (iterCategories.hasNext()) {
-			populateCategorySubCategories(iterCategories.next());
-		}
-		
-		return categories;
+		return results;
 	}
 	
 	/**
-	 * Populates the category object with its sub categories.
+	 * Gets the components that match a parametric query, like
+	 * {@code Category=Resistors AND Value BETWEEN 1k AND 10k AND quantity<50}.
+	 * Queries on quantities read every quantity the first time they're made,
+	 * so this shouldn't be called from the event thread.
 	 * 
-	 * @param category Category to be populated with sub categories.
+	 * @param  query Query to be matched.
+	 * @return       A read-only set of the matching components.
 	 */
-	private void populateCategorySubCategories(ComponentCategory category) {
-		ArrayList<Component> components = getComponentsByCategories(category);
-		ListIterator<Component> iterComponents = components.listIterator();
-		ArrayList<ComponentCategory> subCategories = new ArrayList<ComponentCategory>();
-
-		// Go through components looking for unique sub categories.
-		while (iterComponents.hasNext()) {
-			ComponentCategory cat = iterComponents.next().getSubCategory();
-			
-			// Looks like a unique sub category so far?
-			if (!subCategories.contains(cat)) {
-				subCategories.add(cat);
-			}
-		}
-		
-		// Set the sub categories list.
-		category.setSubCategories(subCategories);
+	public Set<Component> queryComponents(Query query) {
+		return Collections.unmodifiableSet(query.find(propertyIndex, components));
+	}
+	
+	/**
+	 * Gets the components that match a parametric query.
+	 * 
+	 * @param  query Query text.
+	 * @return       A read-only set of the matching components.
+	 * 
+	 * @throws QueryParseException If the query isn't valid.
+	 * 
+	 * @see #queryComponents(Query)
+	 * @see Query
+	 */
+	public Set<Component> queryComponents(String query) throws QueryParseException {
+		return queryComponents(Query.parse(query));
+	}
+	
+	/**
+	 * Gets a list of all the component categories (populated with sub-categories)
+	 * that are used in this workspace.
+	 * 
+	 * @return A read-only list of component categories sorted alphabetically.
+	 * 
+	 * @see {@link ComponentCategory}
+	 */
+	public List<ComponentCategory> getComponentCategories() {
+		return categoryIndex.getCategories();
 	}
 	
 	/**
@@ -287,4 +1099,20 @@ public class PartCatWorkspace {
 	public boolean isOpen() {
 		return opened;
 	}
+	
+	/**
+	 * A simple thread factory for the component loader pool, making sure we
+	 * don't keep the application alive because of it.
+	 */
+	private static class LoaderThreadFactory implements ThreadFactory {
+		private int count = 0;
+		
+		@Override
+		public synchronized Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "PartCat-Loader-" + (++count));
+			thread.setDaemon(true);
+			
+			return thread;
+		}
+	}
 }
@@ -11,6 +11,8 @@ import java.util.Map;
 import com.innoveworkshop.partcat.PartCatConstants;
 import com.innoveworkshop.partcat.PartCatWorkspace;
 import com.innoveworkshop.partcat.exceptions.WorkspaceNotOpenedException;
+import com.innoveworkshop.partcat.index.CategoryIndex;
+import com.innoveworkshop.partcat.index.WorkspaceSnapshot;
 import com.innoveworkshop.utilities.FileUtilities;
 
 /**
@@ -25,8 +27,16 @@ public class Component {
 	private String name;
 	private int quantity;
 	private ComponentProperties prop;
+	private ComponentCategory category;
+	private ComponentCategory sub_category;
+	private int category_revision;
 	private String notes;
 	private ComponentImage image;
+	private String image_declaration;
+	private Boolean has_datasheet;
+	private boolean quantity_loaded;
+	private boolean notes_loaded;
+	private boolean image_loaded;
 	private boolean newly_created;
 	private boolean deleted;
 
@@ -50,10 +60,12 @@ public class Component {
 		this.name = null;
 		this.setQuantity(0);
 		this.setNotes(null);
-		this.prop = new ComponentProperties();
+		this.prop = new ComponentProperties(workspace.getStringPool());
 		this.newly_created = true;
 		this.deleted = false;
 		this.image = new ComponentImage(this.workspace);
+		this.image_loaded = true;
+		this.has_datasheet = null;
 	}
 	
 	/**
@@ -96,6 +108,44 @@ public class Component {
 		}
 	}
 	
+	/**
+	 * Creates a component object from a workspace snapshot entry, avoiding
+	 * having to read and parse its files.
+	 * 
+	 * @param workspace A PartCat active workspace.
+	 * @param entry     Snapshot entry of the component.
+	 * 
+	 * @throws WorkspaceNotOpenedException If the workspace isn't open. This is
+	 *                                     needed to determine the component
+	 *                                     folder path.
+	 */
+	public Component(PartCatWorkspace workspace, WorkspaceSnapshot.Entry entry)
+			throws WorkspaceNotOpenedException {
+		this(workspace);
+		this.name = entry.getName();
+		this.newly_created = false;
+		this.path = workspace.getPath()
+				.resolve(PartCatConstants.COMPONENTS_ROOT).resolve(name);
+		
+		// Populate the object with whatever was stored in the snapshot.
+		prop.putAll(entry.getProperties());
+		prop.trimToSize();
+		setLoaded(false);
+		if (entry.hasImageName()) {
+			image_declaration = entry.getImageName();
+			image_loaded = true;
+			image = null;
+		}
+		if (entry.hasQuantity())
+			this.setQuantity(entry.getQuantity());
+		if (entry.hasNotes())
+			this.setNotes(entry.getNotes());
+		
+		// Load everything else if we aren't being lazy.
+		if (!workspace.isLazyLoading())
+			loadEverything();
+	}
+	
 	/**
 	 * Populates the object with information from a component path.
 	 * 
@@ -109,10 +159,38 @@ public class Component {
 		Path manifest_path = path.resolve(PartCatConstants.MANIFEST_FILE);
 		prop.parseManifest(manifest_path);
 		
-		// Load image.
-		loadImage();
-		
-		// Load the quantity file.
+		// Everything else is only loaded when first accessed if we are lazy.
+		setLoaded(false);
+		if (!workspace.isLazyLoading())
+			loadEverything();
+	}
+	
+	/**
+	 * Sets the loaded state of all the lazily loaded parts of the component.
+	 * 
+	 * @param loaded Should everything be considered as loaded?
+	 */
+	private synchronized void setLoaded(boolean loaded) {
+		quantity_loaded = loaded;
+		notes_loaded = loaded;
+		image_loaded = loaded;
+		if (!loaded)
+			image = null;
+	}
+	
+	/**
+	 * Loads all the parts of the component that haven't been loaded yet.
+	 */
+	private void loadEverything() {
+		getImage();
+		getQuantity();
+		getNotes();
+	}
+	
+	/**
+	 * Loads the quantity file.
+	 */
+	private void loadQuantity() {
 		try {
 			// Get file path and set the quantity with its contents.
 			Path quantity_path = path.resolve(PartCatConstants.QUANTITY_FILE);
@@ -120,8 +198,12 @@ public class Component {
 		} catch (Exception e) {
 			this.setQuantity(0);
 		}
-		
-		// Load the notes file.
+	}
+	
+	/**
+	 * Loads the notes file.
+	 */
+	private void loadNotes() {
 		try {
 			// Get file path and set the notes property with its contents.
 			Path notes_path = path.resolve(PartCatConstants.NOTES_FILE);
@@ -151,8 +233,10 @@ public class Component {
 		FileUtilities.copyDirectory(path, targetPath, StandardCopyOption.COPY_ATTRIBUTES);
 		
 		// Remake this object into the new component and save.
+		String oldName = this.name;
 		this.path = targetPath;
 		this.name = name;
+		workspace.componentRenamed(this, oldName);
 		save();
 	}
 	
@@ -191,6 +275,9 @@ public class Component {
 		if (!getImage().isUsingDefaults())
 			FileUtilities.writeFileContents(path.resolve(PartCatConstants.IMAGE_FILE),
 					getImage().getName());
+		
+		// Let the workspace know that our category might have changed.
+		workspace.componentChanged(this);
 	}
 	
 	/**
@@ -201,8 +288,10 @@ public class Component {
 	 * @throws IOException If anything bad happens during the rename operation.
 	 */
 	public void rename(String name) throws IOException {
+		String oldName = this.name;
 		path = Files.move(path, path.resolveSibling(name));
 		this.name = name;
+		workspace.componentRenamed(this, oldName);
 	}
 	
 	/**
@@ -212,6 +301,7 @@ public class Component {
 	 */
 	public void delete() throws IOException {
 		deleted = true;
+		workspace.componentDeleted(this);
 		if (!FileUtilities.deleteDirectory(path.toFile()))
 			throw new IOException("Something went wrong while deleting " + getName());
 	}
@@ -245,14 +335,43 @@ public class Component {
 	 * and etc.
 	 */
 	private void loadImage() {
+		loadImage(readImageDeclaration());
+	}
+	
+	/**
+	 * Reads the image name from the image declaration file.
+	 * 
+	 * @return Declared image name or {@code null} if there isn't one.
+	 */
+	private String readImageDeclaration() {
+		if (path == null)
+			return null;
+		
 		try {
 			Path image_path = path.resolve(PartCatConstants.IMAGE_FILE);
 			
-			if (image_path.toFile().exists()) {
+			if (image_path.toFile().exists())
+				return FileUtilities.slurpFile(image_path).trim();
+		} catch (Exception e) {
+			// Just behave as if there wasn't an image declared.
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Loads the component image appropriately from an already read image
+	 * declaration, taking into account the package, and etc.
+	 * 
+	 * @param image_name Declared image name or {@code null} if there isn't one.
+	 */
+	private void loadImage(String image_name) {
+		image_declaration = image_name;
+		image_loaded = true;
+		
+		try {
+			if (image_name != null) {
 				// Get image name from image declaration file.
-				String image_name = FileUtilities.slurpFile(image_path);
-				image_name.trim();
-				
 				image = new ComponentImage(workspace, image_name);
 			} else if (getPackage() != null) {
 				// Load image based on device package.
@@ -270,7 +389,7 @@ public class Component {
 	/**
 	 * Reloads the image associated with this component.
 	 */
-	public void reloadImage() {
+	public synchronized void reloadImage() {
 		loadImage();
 	}
 	
@@ -328,10 +447,42 @@ public class Component {
 	 * 
 	 * @return Component image name or NULL if there isn't one associated.
 	 */
-	public ComponentImage getImage() {
+	public synchronized ComponentImage getImage() {
+		if (image == null) {
+			if (image_loaded) {
+				// We already know the declared name, just resolve it.
+				loadImage(image_declaration);
+			} else {
+				loadImage();
+			}
+		}
+		
 		return image;
 	}
 	
+	/**
+	 * Gets the image name as it was declared in the image declaration file when
+	 * the image was last loaded.
+	 * 
+	 * @return Declared image name or {@code null} if there wasn't one.
+	 */
+	public synchronized String getImageDeclaration() {
+		if (!image_loaded)
+			getImage();
+		
+		return image_declaration;
+	}
+	
+	/**
+	 * Checks if the image declaration of this component has already been
+	 * loaded. Only relevant when the workspace is loading lazily.
+	 * 
+	 * @return True if the image declaration has been loaded.
+	 */
+	public synchronized boolean isImageLoaded() {
+		return image_loaded;
+	}
+	
 	/**
 	 * Gets the properties of this component.
 	 * 
@@ -346,7 +497,10 @@ public class Component {
 	 * 
 	 * @return The quantity of the component.
 	 */
-	public int getQuantity() {
+	public synchronized int getQuantity() {
+		if (!quantity_loaded)
+			loadQuantity();
+		
 		return this.quantity;
 	}
 	
@@ -355,8 +509,9 @@ public class Component {
 	 * 
 	 * @param quantity New quantity of the component.
 	 */
-	public void setQuantity(int quantity) {
+	public synchronized void setQuantity(int quantity) {
 		this.quantity = quantity;
+		this.quantity_loaded = true;
 	}
 	
 	/**
@@ -365,7 +520,17 @@ public class Component {
 	 * @param quantity Quantity number as a {@link String}.
 	 */
 	public void setQuantity(String quantity) {
-		this.quantity = Integer.parseInt(quantity.trim());
+		setQuantity(Integer.parseInt(quantity.trim()));
+	}
+	
+	/**
+	 * Checks if the quantity of this component has already been loaded. Only
+	 * relevant when the workspace is loading lazily.
+	 * 
+	 * @return True if the quantity has been loaded.
+	 */
+	public synchronized boolean isQuantityLoaded() {
+		return quantity_loaded;
 	}
 
 	/**
@@ -373,7 +538,10 @@ public class Component {
 	 * 
 	 * @return The component notes.
 	 */
-	public String getNotes() {
+	public synchronized String getNotes() {
+		if (!notes_loaded)
+			loadNotes();
+		
 		return this.notes;
 	}
 	
@@ -382,8 +550,19 @@ public class Component {
 	 * 
 	 * @param notes Notes to be set to this component.
 	 */
-	public void setNotes(String notes) {
+	public synchronized void setNotes(String notes) {
 		this.notes = notes;
+		this.notes_loaded = true;
+	}
+	
+	/**
+	 * Checks if the notes of this component have already been loaded. Only
+	 * relevant when the workspace is loading lazily.
+	 * 
+	 * @return True if the notes have been loaded.
+	 */
+	public synchronized boolean isNotesLoaded() {
+		return notes_loaded;
 	}
 	
 	/**
@@ -392,6 +571,7 @@ public class Component {
 	 * @return True if the component has notes.
 	 */
 	public boolean hasNotes() {
+		String notes = getNotes();
 		if (notes == null)
 			return false;
 		
@@ -407,6 +587,7 @@ public class Component {
 	 * @throws IOException If something went wrong when downloading.
 	 */
 	public void downloadDatasheet(URL url) throws IOException {
+		has_datasheet = null;
 		FileUtilities.downloadFile(url, getDatasheet());
 	}
 	
@@ -416,6 +597,7 @@ public class Component {
 	 * @throws IOException If a problem occurred while deleting the file.
 	 */
 	public void removeDatasheet() throws IOException {
+		has_datasheet = null;
 		Files.delete(getDatasheet());
 	}
 	
@@ -433,8 +615,11 @@ public class Component {
 	 * 
 	 * @return True if the component has a datasheet file available.
 	 */
-	public boolean hasDatasheet() {
-		return getDatasheet().toFile().exists();
+	public synchronized boolean hasDatasheet() {
+		if (has_datasheet == null)
+			has_datasheet = Boolean.valueOf(getDatasheet().toFile().exists());
+		
+		return has_datasheet.booleanValue();
 	}
 	
 	/**
@@ -456,13 +641,15 @@ public class Component {
 	}
 	
 	/**
-	 * Gets the component category.
+	 * Gets the component category. The same object is returned until the
+	 * component properties are changed.
 	 * 
 	 * @return Component category.
 	 * @see {@link ComponentCategory}
 	 */
-	public ComponentCategory getCategory() {
-		return new ComponentCategory(prop, false);
+	public synchronized ComponentCategory getCategory() {
+		updateCategories();
+		return category;
 	}
 	
 	/**
@@ -471,22 +658,19 @@ public class Component {
 	 * @return True if the component properties has a category field.
 	 */
 	public boolean hasCategory() {
-		for (Map.Entry<String, String> entry : prop.entrySet()) {
-			if (entry.getKey().equals(PartCatConstants.PROPERTY_CATEGORY))
-				return true;
-		}
-		
-		return false;
+		return prop.containsKey(PartCatConstants.PROPERTY_CATEGORY);
 	}
 	
 	/**
-	 * Gets the component sub category.
+	 * Gets the component sub category. The same object is returned until the
+	 * component properties are changed.
 	 * 
 	 * @return Component sub category.
 	 * @see {@link ComponentCategory}
 	 */
-	public ComponentCategory getSubCategory() {
-		return new ComponentCategory(prop, true);
+	public synchronized ComponentCategory getSubCategory() {
+		updateCategories();
+		return sub_category;
 	}
 	
 	/**
@@ -495,12 +679,23 @@ public class Component {
 	 * @return True if the component properties has a sub category field.
 	 */
 	public boolean hasSubCategory() {
-		for (Map.Entry<String, String> entry : prop.entrySet()) {
-			if (entry.getKey().equals(PartCatConstants.PROPERTY_SUBCATEGORY))
-				return true;
-		}
+		return prop.containsKey(PartCatConstants.PROPERTY_SUBCATEGORY);
+	}
+	
+	/**
+	 * Picks up the canonical category objects from the workspace category
+	 * index if the properties have changed since they were last picked up.
+	 */
+	private void updateCategories() {
+		if ((category != null) && (category_revision == prop.getRevision()))
+			return;
 		
-		return false;
+		CategoryIndex index = workspace.getCategoryIndex();
+		String name = prop.get(PartCatConstants.PROPERTY_CATEGORY);
+		category = index.getCanonicalCategory(name);
+		sub_category = index.getCanonicalSubCategory(name,
+				prop.get(PartCatConstants.PROPERTY_SUBCATEGORY));
+		category_revision = prop.getRevision();
 	}
 	
 	/**
@@ -529,6 +724,22 @@ public class Component {
 		
 		return false;
 	}
+	
+	/**
+	 * Gets a hash code that is consistent with {@link #equals(Object)}, based
+	 * on the component name. Since the name changes when a component is
+	 * renamed, a component shouldn't be renamed while it's a key of a hash
+	 * based collection.
+	 * 
+	 * @return Hash code of the component name.
+	 */
+	@Override
+	public int hashCode() {
+		if (this.getName() == null)
+			return 0;
+		
+		return this.getName().hashCode();
+	}
 
 	/**
 	 * Gets a string representation of the component in the form of a summary.
@@ -2,8 +2,8 @@ package com.innoveworkshop.partcat.components;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.ListIterator;
-import java.util.Map;
 
 import com.innoveworkshop.partcat.PartCatConstants;
 import com.innoveworkshop.partcat.components.comparators.CategoryComparators;
@@ -44,13 +44,9 @@ public class ComponentCategory {
 		// Sets the sub category flag.
 		this.isSubCategory = isSubCategory;
 		
-		// Go through the component properties looking for one named "(Sub-)Category".
-		for (Map.Entry<String, String> entry : prop.entrySet()) {
-			if ((entry.getKey().equals(PartCatConstants.PROPERTY_CATEGORY) && !isSubCategory) ||
-					(entry.getKey().equals(PartCatConstants.PROPERTY_SUBCATEGORY) && isSubCategory)) {
-				setName(entry.getValue());
-			}
-		}
+		// Get the property named "(Sub-)Category".
+		setName(prop.get(isSubCategory ? PartCatConstants.PROPERTY_SUBCATEGORY :
+				PartCatConstants.PROPERTY_CATEGORY));
 	}
 	
 	/**
@@ -93,6 +89,18 @@ public class ComponentCategory {
 		return subCategories.listIterator();
 	}
 	
+	/**
+	 * Gets the sub categories list.
+	 * 
+	 * @return Read-only sub categories list.
+	 */
+	public List<ComponentCategory> getSubCategories() {
+		if (subCategories == null)
+			return Collections.emptyList();
+		
+		return Collections.unmodifiableList(subCategories);
+	}
+	
 	/**
 	 * Sets the sub categories list.
 	 * 
@@ -167,4 +175,18 @@ public class ComponentCategory {
 		
 		return false;
 	}
+	
+	/**
+	 * Hash code of the category based on its name, which is consistent with
+	 * {@link #equals(Object)}.
+	 * 
+	 * @return Category hash code.
+	 */
+	@Override
+	public int hashCode() {
+		if (getName() == null)
+			return 0;
+		
+		return getName().hashCode();
+	}
 }
@@ -2,16 +2,14 @@ package com.innoveworkshop.partcat.components;
 
 import java.awt.Dimension;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 
-import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
 
 import com.innoveworkshop.partcat.PartCatWorkspace;
+import com.innoveworkshop.partcat.images.ImageImporter;
+import com.innoveworkshop.partcat.images.ScaledImageIcon;
 import com.innoveworkshop.utilities.FileUtilities;
 import com.innoveworkshop.utilities.ImageUtilities;
 
@@ -46,7 +44,6 @@ public class ComponentImage {
 	public ComponentImage(PartCatWorkspace workspace, String name) throws Exception {
 		this(workspace);
 		
-		setName(name);
 		Path path = matchesName(name);
 		if (path == null)
 			throw new Exception("Couldn't find any image with a name of " + name);
@@ -68,27 +65,14 @@ public class ComponentImage {
 
 	/**
 	 * Checks if a name matches the name of an image (filename without the
-	 * extension) in the images directory.
+	 * extension) in the images directory. This is looked up in the workspace
+	 * image index, so no directory listing is involved.
 	 * 
 	 * @param  name Filename without the extension to be matched against.
 	 * @return      Path to the file if it exists, otherwise NULL.
 	 */
 	public Path matchesName(String name) {
-		// Check if we actually have a name.
-		if (name == null)
-			return null;
-		
-		// Go through images looking for one that actually has the name we want.
-		File[] contents = workspace.getImagesPath().toFile().listFiles();
-		if (contents != null) {
-			for (File file : contents) {
-				if (FileUtilities.getFilenameWithoutExt(file.toPath()).equals(name)) {
-					return file.toPath();
-				}
-			}
-		}
-		
-		return null;
+		return workspace.getImageIndex().get(name);
 	}
 	
 	/**
@@ -142,7 +126,9 @@ public class ComponentImage {
 	
 	/**
 	 * Sets the path to the image file. If the image is outside the workspace,
-	 * this function will also import the file to the workspace.
+	 * this function will also import the file to the workspace (see
+	 * {@link ImageImporter}), unless there's already an image with the exact
+	 * same contents in it, which is then used instead.
 	 * 
 	 * @param path Path to the image file.
 	 * @param name Name of the image. Only used if it's necessary to import the
@@ -152,12 +138,8 @@ public class ComponentImage {
 		if (path != null) {
 			if (!path.startsWith(workspace.getImagesPath())) {
 				// The selected image is outside the workspace images folder. Let's bring it in.
-				String destFilename = name + FileUtilities.getFileExtension(path, true);
-				Path dest = workspace.getImagesPath().resolve(destFilename);
-				
 				try {
-					Files.copy(path, dest, StandardCopyOption.COPY_ATTRIBUTES);
-					path = dest;
+					path = new ImageImporter(workspace).importImage(path, name);
 				} catch (IOException e) {
 					e.printStackTrace();
 					path = null;
@@ -180,21 +162,13 @@ public class ComponentImage {
 	}
 	
 	/**
-	 * Gets a {@link BufferedImage} of the component image.
+	 * Gets a {@link BufferedImage} of the component image. The image comes from
+	 * the workspace image cache, so it must not be modified.
 	 * 
 	 * @return Component image as a {@link BufferedImage}.
 	 */
 	public BufferedImage getImage() {
-		Path path = getPath();
-
-		try {
-			if (path != null)
-				return ImageIO.read(getPath().toFile());
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		
-		return null;
+		return workspace.getImageCache().get(getPath());
 	}
 	
 	/**
@@ -211,6 +185,8 @@ public class ComponentImage {
 	/**
 	 * Gets an {@link ImageIcon} from the component image and resizes it to fit
 	 * the dimension specified, being able to use it directly in an UI element.
+	 * On HiDPI displays the image is resized to the number of pixels that will
+	 * actually be shown.
 	 * 
 	 * @param  dim            Dimension to fit the image into. Can be null if you want the
 	 *                        original image, no resizing done.
@@ -219,17 +195,63 @@ public class ComponentImage {
 	 *                        default one will be returned.
 	 */
 	public ImageIcon getIcon(Dimension dim, boolean maintainAspect) {
-		BufferedImage image = getImage();
+		// Get the image already resized to fit these dimensions.
+		double scale = (dim == null) ? 1 : ImageUtilities.getDisplayScale();
+		BufferedImage image = workspace.getImageCache().get(getPath(),
+				scaleDimension(dim, scale), maintainAspect);
+		
+		return createIcon(image, scale);
+	}
+	
+	/**
+	 * Gets an {@link ImageIcon} from the component image only if it has
+	 * already been loaded at this size, which makes it safe to be called from
+	 * the event thread.
+	 * 
+	 * @param  dim            Dimension to fit the image into.
+	 * @param  maintainAspect Should we maintain the image's aspect ratio?
+	 * @return                Image icon or {@code null} if the image hasn't
+	 *                        been loaded yet.
+	 */
+	public ImageIcon getCachedIcon(Dimension dim, boolean maintainAspect) {
+		double scale = ImageUtilities.getDisplayScale();
+		BufferedImage image = workspace.getImageCache().getIfCached(getPath(),
+				scaleDimension(dim, scale), maintainAspect);
+		
+		return createIcon(image, scale);
+	}
+	
+	/**
+	 * Creates the icon of an image, taking the display scale into account.
+	 * 
+	 * @param  image Image in screen pixels.
+	 * @param  scale Number of screen pixels per user interface unit.
+	 * @return       Image icon or {@code null} if there's no image.
+	 */
+	private static ImageIcon createIcon(BufferedImage image, double scale) {
 		if (image == null)
 			return null;
 		
-		// Resize the image to fit these dimensions.
-		if (dim != null)
-			image = ImageUtilities.resizeImage(image, dim, maintainAspect);
-		
+		if (scale > 1)
+			return new ScaledImageIcon(image, scale);
 		return new ImageIcon(image);
 	}
 	
+	/**
+	 * Converts a dimension in user interface units to screen pixels.
+	 * 
+	 * @param  dim   Dimension in user interface units. Can be {@code null}.
+	 * @param  scale Number of screen pixels per user interface unit.
+	 * @return       Dimension in screen pixels.
+	 */
+	private static Dimension scaleDimension(Dimension dim, double scale) {
+		if ((dim == null) || (scale <= 1))
+			return dim;
+		
+		return new Dimension((int)Math.round(dim.width * scale),
+				(int)Math.round(dim.height * scale));
+	}
+	
 	/**
 	 * Checks if we are using a default placeholder image instead of a set one.
 	 * 
@@ -0,0 +1,204 @@
+package com.innoveworkshop.partcat.components;
+
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Warms up the caches of the components that are likely to be selected next
+ * (usually the ones right after the current selection) in a low priority
+ * background thread. Every new request supersedes the previous one, so the
+ * prefetching stops as soon as the selection jumps elsewhere.
+ * 
+ * The hit rate, the ratio of selections that were already warmed up, is kept
+ * to help tune the number of components to prefetch.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ComponentPrefetcher {
+	private ExecutorService executor;
+	private Future<?> pending;
+	private long generation;
+	private int count;
+	private Set<Component> warmed;
+	private long hits;
+	private long requests;
+	
+	/**
+	 * Creates a component prefetcher.
+	 * 
+	 * @param count Number of components to prefetch after each selection.
+	 */
+	public ComponentPrefetcher(int count) {
+		this.executor = Executors.newSingleThreadExecutor(new PrefetcherThreadFactory());
+		this.pending = null;
+		this.generation = 0;
+		this.count = count;
+		this.warmed = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+		this.hits = 0;
+		this.requests = 0;
+	}
+	
+	/**
+	 * Tells the prefetcher that a component has been selected and which ones
+	 * are likely to be selected next, superseding any previous request.
+	 * 
+	 * @param selected  Component that has just been selected.
+	 * @param upcoming  Components likely to be selected next, in order. Only
+	 *                  the first {@link #getCount()} are prefetched.
+	 * @param imageSize Dimension the component images are shown at.
+	 */
+	public synchronized void prefetch(Component selected, List<Component> upcoming,
+			final Dimension imageSize) {
+		// Check if we've guessed this one right.
+		requests++;
+		if (warmed.contains(selected))
+			hits++;
+		
+		cancel();
+		if (count <= 0)
+			return;
+		
+		final long request = generation;
+		final List<Component> components = new ArrayList<Component>(
+				upcoming.subList(0, Math.min(count, upcoming.size())));
+		pending = executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				for (Component component : components) {
+					// Stop if the selection has moved on.
+					if (!isCurrent(request))
+						return;
+					
+					warm(component, imageSize);
+					synchronized (ComponentPrefetcher.this) {
+						if (request == generation)
+							warmed.add(component);
+					}
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Stops prefetching and forgets what has been prefetched.
+	 */
+	public synchronized void cancel() {
+		generation++;
+		warmed.clear();
+		if (pending != null) {
+			pending.cancel(false);
+			pending = null;
+		}
+	}
+	
+	/**
+	 * Cancels the current request and stops the background thread. The
+	 * prefetcher can't be used after this.
+	 */
+	public synchronized void shutdown() {
+		cancel();
+		executor.shutdown();
+	}
+	
+	/**
+	 * Gets the number of components prefetched after each selection.
+	 * 
+	 * @return Number of components to prefetch.
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+	
+	/**
+	 * Sets the number of components to prefetch after each selection.
+	 * 
+	 * @param count Number of components to prefetch. 0 disables prefetching.
+	 */
+	public synchronized void setCount(int count) {
+		this.count = count;
+	}
+	
+	/**
+	 * Gets the number of selections that had already been prefetched.
+	 * 
+	 * @return Number of prefetch hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Gets the number of selections we've been told about.
+	 * 
+	 * @return Number of selections.
+	 */
+	public synchronized long getRequests() {
+		return requests;
+	}
+	
+	/**
+	 * Gets the ratio of selections that had already been prefetched.
+	 * 
+	 * @return Hit rate between 0 and 1.
+	 */
+	public synchronized double getHitRate() {
+		if (requests == 0)
+			return 0;
+		
+		return (double)hits / requests;
+	}
+	
+	/**
+	 * Resets the hit rate statistics.
+	 */
+	public synchronized void resetStatistics() {
+		hits = 0;
+		requests = 0;
+	}
+	
+	/**
+	 * Checks if a request is still the current one.
+	 * 
+	 * @param  request Generation of the request.
+	 * @return         True if it hasn't been superseded or cancelled.
+	 */
+	private synchronized boolean isCurrent(long request) {
+		return request == generation;
+	}
+	
+	/**
+	 * Loads everything that is shown when a component gets selected.
+	 * 
+	 * @param component Component to be warmed up.
+	 * @param imageSize Dimension the component image is shown at.
+	 */
+	private static void warm(Component component, Dimension imageSize) {
+		component.getQuantity();
+		component.getNotes();
+		component.hasDatasheet();
+		component.getImage().getIcon(imageSize, true);
+	}
+	
+	/**
+	 * A simple thread factory for the prefetcher, making sure it doesn't get
+	 * in the way of anything else or keep the application alive.
+	 */
+	private static class PrefetcherThreadFactory implements ThreadFactory {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "PartCat-Prefetcher");
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.setDaemon(true);
+			
+			return thread;
+		}
+	}
+}
@@ -3,27 +3,301 @@ package com.innoveworkshop.partcat.components;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.innoveworkshop.utilities.FileUtilities;
+import com.innoveworkshop.utilities.StringPool;
 
 /**
- * A collection of properties related to a {@link Component}.
- *
+ * A collection of properties related to a {@link Component}. The properties
+ * are stored as a pair of small arrays sorted by key, which is a lot more
+ * compact than a hash table for the handful of properties each component
+ * has. When a {@link StringPool} is provided, the keys and the short values
+ * are shared with every other component in the workspace.
+ * 
  * @author Nathan Campos <nathan@innoveworkshop.com>
  */
-public class ComponentProperties extends HashMap<String, String> {
-	private static final long serialVersionUID = -3136245942637832206L;
-
+public class ComponentProperties extends AbstractMap<String, String> {
+	// Values longer than this are unlikely to be shared between components.
+	private static final int MAX_POOLED_VALUE_LENGTH = 32;
+	private static final String[] EMPTY = new String[0];
+	
+	private StringPool pool;
+	private String[] keys;
+	private String[] values;
+	private int size;
+	private int revision;
+	private int modCount;
+	private Set<Map.Entry<String, String>> entrySet;
+	
 	/**
 	 * Initializes an empty properties collection.
 	 */
 	public ComponentProperties() {
+		this((StringPool)null);
+	}
+	
+	/**
+	 * Initializes an empty properties collection that shares its strings using
+	 * a pool.
+	 * 
+	 * @param pool Pool of strings or {@code null} if the strings shouldn't be
+	 *             shared.
+	 */
+	public ComponentProperties(StringPool pool) {
+		this.pool = pool;
+		this.keys = EMPTY;
+		this.values = EMPTY;
+		this.size = 0;
+		this.revision = 0;
+		this.modCount = 0;
+	}
+	
+	/**
+	 * Initializes a properties collection with a copy of another map.
+	 * 
+	 * @param pool Pool of strings or {@code null} if the strings shouldn't be
+	 *             shared.
+	 * @param map  Properties to be copied.
+	 */
+	public ComponentProperties(StringPool pool, Map<String, String> map) {
+		this(pool);
+		putAll(map);
+		trimToSize();
+	}
+	
+	/**
+	 * Gets the number of properties.
+	 * 
+	 * @return Number of properties.
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the value of a property.
+	 * 
+	 * @param  key Property name.
+	 * @return     Property value or {@code null} if there isn't one.
+	 */
+	@Override
+	public String get(Object key) {
+		int index = indexOf(key);
+		if (index < 0)
+			return null;
+		
+		return values[index];
+	}
+	
+	/**
+	 * Checks if a property exists.
+	 * 
+	 * @param  key Property name.
+	 * @return     True if the property exists.
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+	
+	/**
+	 * Sets the value of a property.
+	 * 
+	 * @param  key   Property name.
+	 * @param  value Property value.
+	 * @return       Previous value of the property or {@code null} if there
+	 *               wasn't one.
+	 */
+	@Override
+	public String put(String key, String value) {
+		value = poolValue(value);
+		int index = indexOf(key);
+		
+		// Just replace the value of an existing property.
+		if (index >= 0) {
+			String old = values[index];
+			values[index] = value;
+			revision++;
+			
+			return old;
+		}
+		
+		// Make room for the new property.
+		index = -(index + 1);
+		if (size == keys.length) {
+			int capacity = size + (size >> 1) + 2;
+			keys = Arrays.copyOf(keys, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(values, index, values, index + 1, size - index);
+		
+		keys[index] = (pool == null) ? key : pool.intern(key);
+		values[index] = value;
+		size++;
+		revision++;
+		modCount++;
+		
+		return null;
+	}
+	
+	/**
+	 * Removes a property.
+	 * 
+	 * @param  key Property name.
+	 * @return     Value of the removed property or {@code null} if there wasn't
+	 *             one.
+	 */
+	@Override
+	public String remove(Object key) {
+		int index = indexOf(key);
+		if (index < 0)
+			return null;
+		
+		String old = values[index];
+		removeAt(index);
+		
+		return old;
+	}
+	
+	/**
+	 * Removes all the properties.
+	 */
+	@Override
+	public void clear() {
+		keys = EMPTY;
+		values = EMPTY;
+		size = 0;
+		revision++;
+		modCount++;
+	}
+	
+	/**
+	 * Gets a set view of the properties sorted by key.
+	 * 
+	 * @return Properties set.
+	 */
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		if (entrySet == null)
+			entrySet = new EntrySet();
+		
+		return entrySet;
+	}
+	
+	/**
+	 * Gets the revision of the properties. This changes every time a property
+	 * is added, changed or removed, which allows anything derived from the
+	 * properties to be cached until they change.
+	 * 
+	 * @return Modification counter.
+	 */
+	public int getRevision() {
+		return revision;
+	}
+	
+	/**
+	 * Shrinks the internal arrays to the number of properties.
+	 */
+	public void trimToSize() {
+		if (size == keys.length)
+			return;
+		
+		keys = (size == 0) ? EMPTY : Arrays.copyOf(keys, size);
+		values = (size == 0) ? EMPTY : Arrays.copyOf(values, size);
+	}
+	
+	/**
+	 * Finds the index of a property using a binary search.
+	 * 
+	 * @param  key Property name.
+	 * @return     Index of the property or {@code -(insertion point + 1)} if it
+	 *             doesn't exist.
+	 */
+	private int indexOf(Object key) {
+		if ((key != null) && !(key instanceof String))
+			return -1;
+		
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compareKeys(keys[mid], (String)key);
+			
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		
+		return -(low + 1);
+	}
+	
+	/**
+	 * Compares two property names, with {@code null} coming before everything
+	 * else.
+	 * 
+	 * @param  key1 First property name.
+	 * @param  key2 Second property name.
+	 * @return      Comparison result.
+	 */
+	private static int compareKeys(String key1, String key2) {
+		if (key1 == null)
+			return (key2 == null) ? 0 : -1;
+		if (key2 == null)
+			return 1;
+		
+		return key1.compareTo(key2);
+	}
+	
+	/**
+	 * Removes the property at an index.
+	 * 
+	 * @param index Index of the property to be removed.
+	 */
+	private void removeAt(int index) {
+		int moved = size - index - 1;
+		System.arraycopy(keys, index + 1, keys, index, moved);
+		System.arraycopy(values, index + 1, values, index, moved);
+		
+		size--;
+		keys[size] = null;
+		values[size] = null;
+		revision++;
+		modCount++;
+	}
+	
+	/**
+	 * Gets the shared instance of a value if it's worth sharing.
+	 * 
+	 * @param  value Property value.
+	 * @return       Shared or original value.
+	 */
+	private String poolValue(String value) {
+		if ((pool == null) || (value == null) ||
+				(value.length() > MAX_POOLED_VALUE_LENGTH)) {
+			return value;
+		}
+		
+		return pool.intern(value);
 	}
 	
 	/**
@@ -32,6 +306,8 @@ public class ComponentProperties extends HashMap<String, String> {
 	 * @param manifestPath Manifest file path.
 	 * 
 	 * @throws FileNotFoundException If the manifest file doesn't exist.
+	 * 
+	 * @see {@link ManifestParser}
 	 */
 	public void parseManifest(Path manifestPath) throws FileNotFoundException {
 		File file = manifestPath.toFile();
@@ -39,6 +315,36 @@ public class ComponentProperties extends HashMap<String, String> {
 			throw new FileNotFoundException("Couldn't locate the component manifest in path " +
 					manifestPath.toString());
 		
+		try {
+			ManifestParser.parse(manifestPath, this);
+			trimToSize();
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException("Couldn't locate the component manifest in path " +
+					manifestPath.toString());
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Couldn't read the component manifest in path " +
+					manifestPath.toString());
+		}
+	}
+	
+	/**
+	 * Populates the properties with data from a manifest file using the
+	 * original {@link Scanner} and regular expression based parser. This is
+	 * a lot slower than {@link #parseManifest(Path)} and is only kept as a
+	 * reference implementation to compare the parsers against, which is what
+	 * the ManifestParserCheck tool does.
+	 * 
+	 * @param manifestPath Manifest file path.
+	 * 
+	 * @throws FileNotFoundException If the manifest file doesn't exist.
+	 */
+	public void parseManifestRegex(Path manifestPath) throws FileNotFoundException {
+		File file = manifestPath.toFile();
+		if (!file.exists())
+			throw new FileNotFoundException("Couldn't locate the component manifest in path " +
+					manifestPath.toString());
+		
 		Scanner input = new Scanner(file);
 		Pattern pattern = Pattern.compile("^([A-Za-z0-9\\-]+): (.+)$");
 		
@@ -82,4 +388,125 @@ public class ComponentProperties extends HashMap<String, String> {
 		// Save contents to file.
 		FileUtilities.writeFileContents(manifestPath, strBuilder.toString());
 	}
+	
+	/**
+	 * Set view of the properties.
+	 */
+	private class EntrySet extends AbstractSet<Map.Entry<String, String>> {
+		@Override
+		public Iterator<Map.Entry<String, String>> iterator() {
+			return new EntryIterator();
+		}
+		
+		@Override
+		public int size() {
+			return size;
+		}
+		
+		@Override
+		public void clear() {
+			ComponentProperties.this.clear();
+		}
+	}
+	
+	/**
+	 * Iterator over the properties that supports removal.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+		private int next = 0;
+		private int last = -1;
+		private int expectedModCount = modCount;
+		
+		@Override
+		public boolean hasNext() {
+			return next < size;
+		}
+		
+		@Override
+		public Map.Entry<String, String> next() {
+			checkModCount();
+			if (next >= size)
+				throw new NoSuchElementException();
+			
+			last = next++;
+			return new Entry(last);
+		}
+		
+		@Override
+		public void remove() {
+			if (last < 0)
+				throw new IllegalStateException();
+			checkModCount();
+			
+			removeAt(last);
+			next = last;
+			last = -1;
+			expectedModCount = modCount;
+		}
+		
+		/**
+		 * Makes sure the properties weren't changed behind our back.
+		 */
+		private void checkModCount() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+		}
+	}
+	
+	/**
+	 * A single property that writes its value back to the collection.
+	 */
+	private class Entry implements Map.Entry<String, String> {
+		private String key;
+		private String value;
+		
+		/**
+		 * Creates an entry for the property at an index.
+		 * 
+		 * @param index Index of the property.
+		 */
+		public Entry(int index) {
+			this.key = keys[index];
+			this.value = values[index];
+		}
+		
+		@Override
+		public String getKey() {
+			return key;
+		}
+		
+		@Override
+		public String getValue() {
+			return value;
+		}
+		
+		@Override
+		public String setValue(String value) {
+			String old = this.value;
+			this.value = value;
+			put(key, value);
+			
+			return old;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Map.Entry))
+				return false;
+			
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>)obj;
+			return Objects.equals(key, entry.getKey()) &&
+					Objects.equals(value, entry.getValue());
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(value);
+		}
+		
+		@Override
+		public String toString() {
+			return key + "=" + value;
+		}
+	}
 }
@@ -0,0 +1,169 @@
+package com.innoveworkshop.partcat.components;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * A hand-written parser for component manifest files. It accepts exactly the
+ * same lines as the original {@link java.util.Scanner} and regular expression
+ * ({@code ^([A-Za-z0-9\-]+): (.+)$}) based parser, but reads the whole file
+ * in a single pass and only allocates the keys and values it finds.
+ * 
+ * @see {@link ComponentProperties#parseManifestRegex(Path)}
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public final class ManifestParser {
+	// Character classes used by the scanner.
+	private static final byte OTHER = 0;
+	private static final byte KEY = 1;
+	private static final byte COLON = 2;
+	private static final byte SPACE = 3;
+	
+	// Class of each ASCII character. Everything else is OTHER.
+	private static final byte[] CHAR_CLASS = new byte[128];
+	static {
+		for (char c = 'A'; c <= 'Z'; c++)
+			CHAR_CLASS[c] = KEY;
+		for (char c = 'a'; c <= 'z'; c++)
+			CHAR_CLASS[c] = KEY;
+		for (char c = '0'; c <= '9'; c++)
+			CHAR_CLASS[c] = KEY;
+		CHAR_CLASS['-'] = KEY;
+		CHAR_CLASS[':'] = COLON;
+		CHAR_CLASS[' '] = SPACE;
+	}
+	
+	/**
+	 * This class only has static methods.
+	 */
+	private ManifestParser() {
+	}
+	
+	/**
+	 * Parses a manifest file into a map of properties. The file is decoded
+	 * using the platform's default charset, just like {@link java.util.Scanner}
+	 * does.
+	 * 
+	 * @param  manifestPath Manifest file path.
+	 * @param  properties   Map to put the parsed properties into.
+	 * 
+	 * @throws IOException If the file couldn't be read.
+	 */
+	public static void parse(Path manifestPath, Map<String, String> properties)
+			throws IOException {
+		CharBuffer chars = Charset.defaultCharset().decode(
+				ByteBuffer.wrap(Files.readAllBytes(manifestPath)));
+		
+		parse(chars.array(), chars.arrayOffset() + chars.position(),
+				chars.arrayOffset() + chars.limit(), properties);
+	}
+	
+	/**
+	 * Parses the contents of a manifest file into a map of properties.
+	 * 
+	 * @param contents   Manifest file contents.
+	 * @param properties Map to put the parsed properties into.
+	 */
+	public static void parse(String contents, Map<String, String> properties) {
+		parse(contents.toCharArray(), 0, contents.length(), properties);
+	}
+	
+	/**
+	 * Parses the contents of a manifest file into a map of properties.
+	 * 
+	 * @param text       Buffer with the manifest file contents.
+	 * @param offset     Start of the contents in the buffer.
+	 * @param end        End of the contents in the buffer (exclusive).
+	 * @param properties Map to put the parsed properties into.
+	 */
+	public static void parse(char[] text, int offset, int end,
+			Map<String, String> properties) {
+		int pos = offset;
+		
+		while (pos < end) {
+			// Find the end of the line.
+			int lineStart = pos;
+			int lineEnd = pos;
+			while ((lineEnd < end) && !isLineTerminator(text[lineEnd]))
+				lineEnd++;
+			
+			// Skip the line terminator, treating CRLF as a single one.
+			pos = lineEnd;
+			if (pos < end) {
+				if ((text[pos] == '\r') && ((pos + 1) < end) && (text[pos + 1] == '\n')) {
+					pos += 2;
+				} else {
+					pos++;
+				}
+			}
+			
+			parseLine(text, lineStart, lineEnd, properties);
+		}
+	}
+	
+	/**
+	 * Parses a single manifest line.
+	 * 
+	 * @param text       Buffer with the manifest file contents.
+	 * @param start      Start of the line.
+	 * @param end        End of the line (exclusive) without its terminator.
+	 * @param properties Map to put the parsed property into.
+	 */
+	private static void parseLine(char[] text, int start, int end,
+			Map<String, String> properties) {
+		// Trim the line the same way as String.trim().
+		while ((start < end) && (text[start] <= ' '))
+			start++;
+		while ((end > start) && (text[end - 1] <= ' '))
+			end--;
+		
+		// Ignore empty lines.
+		if (start == end)
+			return;
+		
+		// Key.
+		int pos = start;
+		while ((pos < end) && (charClass(text[pos]) == KEY))
+			pos++;
+		
+		// Separator followed by a value of at least one character.
+		if ((pos > start) && ((pos + 2) < end) && (charClass(text[pos]) == COLON) &&
+				(charClass(text[pos + 1]) == SPACE)) {
+			properties.put(new String(text, start, pos - start),
+					new String(text, pos + 2, end - (pos + 2)));
+		} else {
+			System.err.println("Invalid manifest line: " +
+					new String(text, start, end - start));
+		}
+	}
+	
+	/**
+	 * Gets the class of a character.
+	 * 
+	 * @param  c Character to be classified.
+	 * @return   Character class.
+	 */
+	private static byte charClass(char c) {
+		if (c >= CHAR_CLASS.length)
+			return OTHER;
+		
+		return CHAR_CLASS[c];
+	}
+	
+	/**
+	 * Checks if a character is one of the line terminators recognized by
+	 * {@link java.util.Scanner#nextLine()}.
+	 * 
+	 * @param  c Character to be checked.
+	 * @return   True if the character ends a line.
+	 */
+	private static boolean isLineTerminator(char c) {
+		return (c == '\n') || (c == '\r') || (c == '\u0085') ||
+				(c == '\u2028') || (c == '\u2029');
+	}
+}
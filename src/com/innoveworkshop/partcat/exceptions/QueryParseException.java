@@ -0,0 +1,32 @@
+package com.innoveworkshop.partcat.exceptions;
+
+/**
+ * A component query parsing exception.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class QueryParseException extends Exception {
+	private static final long serialVersionUID = -2417856932081658437L;
+	private int position;
+	
+	/**
+	 * Creates a query parsing exception for a problem found at a specific
+	 * position of the query.
+	 * 
+	 * @param message  Description of the problem.
+	 * @param position Position in the query where the problem was found.
+	 */
+	public QueryParseException(String message, int position) {
+		super(message + " (at column " + (position + 1) + ")");
+		this.position = position;
+	}
+	
+	/**
+	 * Gets the position in the query where the problem was found.
+	 * 
+	 * @return Position in the query (starting at 0).
+	 */
+	public int getPosition() {
+		return position;
+	}
+}
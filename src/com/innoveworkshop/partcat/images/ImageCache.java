@@ -0,0 +1,404 @@
+package com.innoveworkshop.partcat.images;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import com.innoveworkshop.utilities.ImageUtilities;
+
+/**
+ * A cache of decoded (and resized) images shared by a whole workspace.
+ * Images are keyed by their path and modification time, so a changed file is
+ * never served from the cache, and the least recently used ones are evicted
+ * once the total size of their pixels goes over a byte budget.
+ * 
+ * The cached images are shared, so they must never be drawn into. Resized
+ * images are kept in the pixel format of the screen, since they're the ones
+ * that get drawn over and over.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ImageCache {
+	private LinkedHashMap<Key, BufferedImage> images;
+	private ThumbnailStore thumbnails;
+	private long maxBytes;
+	private long bytes;
+	private long hits;
+	private long misses;
+	
+	/**
+	 * Creates an empty image cache.
+	 * 
+	 * @param maxBytes Maximum number of pixel bytes to keep in memory.
+	 */
+	public ImageCache(long maxBytes) {
+		this.images = new LinkedHashMap<Key, BufferedImage>(16, 0.75f, true);
+		this.thumbnails = null;
+		this.maxBytes = maxBytes;
+		this.bytes = 0;
+		this.hits = 0;
+		this.misses = 0;
+	}
+	
+	/**
+	 * Gets the decoded image from a file.
+	 * 
+	 * @param  path Image file path.
+	 * @return      Decoded image or {@code null} if it couldn't be read.
+	 */
+	public BufferedImage get(Path path) {
+		return get(path, null, false);
+	}
+	
+	/**
+	 * Gets the decoded image from a file resized to fit a dimension.
+	 * 
+	 * @param  path           Image file path.
+	 * @param  dim            Dimension to fit the image into or {@code null}
+	 *                        to get the original image.
+	 * @param  maintainAspect Should we maintain the image's aspect ratio?
+	 * @return                Decoded image or {@code null} if it couldn't be
+	 *                        read.
+	 */
+	public BufferedImage get(Path path, Dimension dim, boolean maintainAspect) {
+		if (path == null)
+			return null;
+		
+		// Check if we already have it.
+		long modified = lastModified(path);
+		if (modified < 0)
+			return null;
+		Key key = new Key(path, modified, dim, maintainAspect);
+		BufferedImage image = lookup(key);
+		if (image != null)
+			return image;
+		
+		if (dim != null) {
+			// Check if we've resized it in a previous session.
+			ThumbnailStore thumbStore = getThumbnailStore();
+			if (thumbStore != null) {
+				image = thumbStore.load(path, dim, maintainAspect);
+				if (image != null) {
+					image = ImageUtilities.toCompatibleImage(image);
+					store(key, image);
+					return image;
+				}
+			}
+			
+			// Thumbnails are stored at a slightly bigger size than the one
+			// we were asked for.
+			Dimension size = (thumbStore == null) ? null :
+					ThumbnailStore.getStoredSize(dim, maintainAspect);
+			
+			// Resize the original image if we have it, otherwise decode just
+			// enough of the file to get a good looking resize.
+			BufferedImage original = peek(new Key(path, modified, null, false));
+			try {
+				if (original != null) {
+					image = ImageUtilities.resizeImage(original,
+							(size != null) ? size : dim, maintainAspect);
+				} else {
+					image = ImageUtilities.readResizedImage(path.toFile(),
+							(size != null) ? size : dim, maintainAspect);
+				}
+				
+				if ((image != null) && (size != null)) {
+					thumbStore.save(path, size, maintainAspect, image);
+					if (!size.equals(dim))
+						image = ImageUtilities.resizeImage(image, dim, maintainAspect);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				return null;
+			}
+			
+			if (image == null)
+				return null;
+			
+			// Resized images are meant to be shown, so keep them in the
+			// format of the screen.
+			image = ImageUtilities.toCompatibleImage(image);
+			store(key, image);
+			
+			return image;
+		}
+		
+		// Decode the image.
+		try {
+			image = ImageIO.read(path.toFile());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+		
+		if (image != null)
+			store(key, image);
+		
+		return image;
+	}
+	
+	/**
+	 * Gets an image only if it's already in memory. This never touches the
+	 * disk other than checking the modification time of the file, so it's
+	 * cheap enough to be used from the event thread.
+	 * 
+	 * @param  path           Image file path.
+	 * @param  dim            Dimension the image was resized to fit into or
+	 *                        {@code null} for the original image.
+	 * @param  maintainAspect Was the aspect ratio maintained?
+	 * @return                Cached image or {@code null} if it isn't cached.
+	 */
+	public BufferedImage getIfCached(Path path, Dimension dim, boolean maintainAspect) {
+		if (path == null)
+			return null;
+		
+		long modified = lastModified(path);
+		if (modified < 0)
+			return null;
+		
+		return peek(new Key(path, modified, dim, maintainAspect));
+	}
+	
+	/**
+	 * Gets the store used to persist the resized images.
+	 * 
+	 * @return Thumbnail store or {@code null} if resized images aren't
+	 *         persisted.
+	 */
+	public synchronized ThumbnailStore getThumbnailStore() {
+		return thumbnails;
+	}
+	
+	/**
+	 * Sets the store used to persist the resized images across sessions.
+	 * 
+	 * @param thumbnails Thumbnail store or {@code null} if resized images
+	 *                   shouldn't be persisted.
+	 */
+	public synchronized void setThumbnailStore(ThumbnailStore thumbnails) {
+		this.thumbnails = thumbnails;
+	}
+	
+	/**
+	 * Removes all the cached versions of an image.
+	 * 
+	 * @param path Image file path.
+	 */
+	public synchronized void invalidate(Path path) {
+		Iterator<Map.Entry<Key, BufferedImage>> iter = images.entrySet().iterator();
+		while (iter.hasNext()) {
+			Map.Entry<Key, BufferedImage> entry = iter.next();
+			if (entry.getKey().path.equals(path)) {
+				bytes -= sizeOf(entry.getValue());
+				iter.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Removes everything from the cache.
+	 */
+	public synchronized void clear() {
+		images.clear();
+		bytes = 0;
+	}
+	
+	/**
+	 * Sets the maximum number of pixel bytes to keep in memory, evicting
+	 * images if needed.
+	 * 
+	 * @param maxBytes Maximum number of pixel bytes.
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		evict();
+	}
+	
+	/**
+	 * Gets the maximum number of pixel bytes kept in memory.
+	 * 
+	 * @return Maximum number of pixel bytes.
+	 */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+	
+	/**
+	 * Gets the number of pixel bytes currently in the cache.
+	 * 
+	 * @return Cached pixel bytes.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+	
+	/**
+	 * Gets the number of images currently in the cache.
+	 * 
+	 * @return Number of cached images.
+	 */
+	public synchronized int size() {
+		return images.size();
+	}
+	
+	/**
+	 * Gets the number of requests that were served from the cache.
+	 * 
+	 * @return Number of cache hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Gets the number of requests that had to decode or resize an image.
+	 * 
+	 * @return Number of cache misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Looks up an image in the cache.
+	 * 
+	 * @param  key Image key.
+	 * @return     Cached image or {@code null} if it isn't cached.
+	 */
+	private synchronized BufferedImage lookup(Key key) {
+		BufferedImage image = images.get(key);
+		if (image != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		
+		return image;
+	}
+	
+	/**
+	 * Looks up an image in the cache without counting it as a request.
+	 * 
+	 * @param  key Image key.
+	 * @return     Cached image or {@code null} if it isn't cached.
+	 */
+	private synchronized BufferedImage peek(Key key) {
+		return images.get(key);
+	}
+	
+	/**
+	 * Stores an image in the cache, evicting the least recently used ones if
+	 * we've gone over budget. Images bigger than the whole budget aren't
+	 * cached.
+	 * 
+	 * @param key   Image key.
+	 * @param image Image to be cached.
+	 */
+	private synchronized void store(Key key, BufferedImage image) {
+		long size = sizeOf(image);
+		if (size > maxBytes)
+			return;
+		
+		BufferedImage old = images.put(key, image);
+		if (old != null)
+			bytes -= sizeOf(old);
+		bytes += size;
+		
+		evict();
+	}
+	
+	/**
+	 * Evicts the least recently used images until we are within budget.
+	 */
+	private void evict() {
+		Iterator<BufferedImage> iter = images.values().iterator();
+		while ((bytes > maxBytes) && iter.hasNext()) {
+			bytes -= sizeOf(iter.next());
+			iter.remove();
+		}
+	}
+	
+	/**
+	 * Gets the number of bytes used by the pixels of an image.
+	 * 
+	 * @param  image Image to be measured.
+	 * @return       Size of the image data in bytes.
+	 */
+	private static long sizeOf(BufferedImage image) {
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		return (long)buffer.getSize() * buffer.getNumBanks() *
+				(DataBuffer.getDataTypeSize(buffer.getDataType()) / 8);
+	}
+	
+	/**
+	 * Gets the modification time of a file.
+	 * 
+	 * @param  path File path.
+	 * @return      Modification time in milliseconds or -1 if the file
+	 *              couldn't be accessed.
+	 */
+	private static long lastModified(Path path) {
+		try {
+			return Files.getLastModifiedTime(path).toMillis();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Identifies a cached version of an image.
+	 */
+	private static class Key {
+		private Path path;
+		private long modified;
+		private int width;
+		private int height;
+		private boolean maintainAspect;
+		
+		/**
+		 * Creates a cache key.
+		 * 
+		 * @param path           Image file path.
+		 * @param modified       Modification time of the file.
+		 * @param dim            Dimension the image was resized to or
+		 *                       {@code null} for the original image.
+		 * @param maintainAspect Was the aspect ratio maintained?
+		 */
+		public Key(Path path, long modified, Dimension dim,
+				boolean maintainAspect) {
+			this.path = path;
+			this.modified = modified;
+			this.width = (dim == null) ? -1 : dim.width;
+			this.height = (dim == null) ? -1 : dim.height;
+			this.maintainAspect = (dim != null) && maintainAspect;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			
+			Key key = (Key)obj;
+			return path.equals(key.path) && (modified == key.modified) &&
+					(width == key.width) && (height == key.height) &&
+					(maintainAspect == key.maintainAspect);
+		}
+		
+		@Override
+		public int hashCode() {
+			int hash = path.hashCode();
+			hash = (31 * hash) + (int)(modified ^ (modified >>> 32));
+			hash = (31 * hash) + width;
+			hash = (31 * hash) + height;
+			return (31 * hash) + (maintainAspect ? 1 : 0);
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package com.innoveworkshop.partcat.images;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.innoveworkshop.partcat.PartCatConstants;
+import com.innoveworkshop.partcat.PartCatWorkspace;
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.utilities.FileUtilities;
+
+/**
+ * Finds images with the same contents in the images directory of a workspace.
+ * This is used to reuse existing images instead of importing copies of them,
+ * and to merge the copies that are already there.
+ * 
+ * Files are only hashed when there's another image with the exact same size,
+ * and their hashes are remembered by the workspace {@link ThumbnailStore}
+ * when there's one.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ImageDeduplicator {
+	private PartCatWorkspace workspace;
+	
+	/**
+	 * Creates an image deduplicator for a workspace.
+	 * 
+	 * @param workspace Workspace whose images will be checked.
+	 */
+	public ImageDeduplicator(PartCatWorkspace workspace) {
+		this.workspace = workspace;
+	}
+	
+	/**
+	 * Finds an image in the workspace with the same contents as a file.
+	 * 
+	 * @param  source File to be checked.
+	 * @return        Workspace image with the same contents or {@code null} if
+	 *                there isn't one.
+	 */
+	public Path findDuplicate(Path source) {
+		try {
+			long size = Files.size(source);
+			String hash = null;
+			
+			for (Path image : getImages()) {
+				if (image.equals(source))
+					return image;
+				
+				// Only bother hashing files that could be the same.
+				if (fileSize(image) != size)
+					continue;
+				if (hash == null)
+					hash = FileUtilities.hashFile(source);
+				
+				if (hash.equals(getHash(image)))
+					return image;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Finds all the groups of images with the same contents.
+	 * 
+	 * @return Groups of images with the same contents, each one sorted by
+	 *         filename.
+	 */
+	public List<List<Path>> findDuplicates() {
+		// Group the images by size first.
+		Map<Long, List<Path>> sizes = new LinkedHashMap<Long, List<Path>>();
+		for (Path image : getImages()) {
+			long size = fileSize(image);
+			if (size < 0)
+				continue;
+			
+			List<Path> group = sizes.get(size);
+			if (group == null) {
+				group = new ArrayList<Path>();
+				sizes.put(size, group);
+			}
+			group.add(image);
+		}
+		
+		// Then only hash the ones that share their size with another.
+		List<List<Path>> duplicates = new ArrayList<List<Path>>();
+		for (List<Path> group : sizes.values()) {
+			if (group.size() < 2)
+				continue;
+			
+			Map<String, List<Path>> hashes = new LinkedHashMap<String, List<Path>>();
+			for (Path image : group) {
+				String hash = getHash(image);
+				if (hash == null)
+					continue;
+				
+				List<Path> same = hashes.get(hash);
+				if (same == null) {
+					same = new ArrayList<Path>();
+					hashes.put(hash, same);
+				}
+				same.add(image);
+			}
+			
+			for (List<Path> same : hashes.values()) {
+				if (same.size() > 1)
+					duplicates.add(same);
+			}
+		}
+		
+		return duplicates;
+	}
+	
+	/**
+	 * Merges the images with the same contents. Components that declare a
+	 * duplicate image are changed to use the one that's kept and the
+	 * duplicates are deleted. The image that's kept is the one used by the
+	 * most components. Images that are used as a package image are never
+	 * deleted, since components refer to them implicitly.
+	 * 
+	 * @return Summary of what was merged.
+	 */
+	public Result mergeDuplicates() {
+		Result result = new Result();
+		
+		// Package images are referenced implicitly, so they have to stay.
+		Set<String> pinned = new HashSet<String>();
+		Map<String, Integer> usage = new HashMap<String, Integer>();
+		ListIterator<Component> iter = workspace.componentIterator();
+		while (iter.hasNext()) {
+			Component component = iter.next();
+			if (component.getPackage() != null)
+				pinned.add(component.getPackage());
+			
+			// Count how many components use each image.
+			String name = component.getImageDeclaration();
+			if (name != null) {
+				Integer count = usage.get(name);
+				usage.put(name, (count == null) ? 1 : (count + 1));
+			}
+		}
+		
+		// Decide which images are going to replace which.
+		Map<String, String> replacements = new HashMap<String, String>();
+		Map<String, Path> removals = new LinkedHashMap<String, Path>();
+		for (List<Path> group : findDuplicates()) {
+			Path keep = null;
+			int keepUsage = -1;
+			for (Path image : group) {
+				String name = FileUtilities.getFilenameWithoutExt(image);
+				if (pinned.contains(name)) {
+					keep = image;
+					break;
+				}
+				
+				Integer count = usage.get(name);
+				if (((count == null) ? 0 : count) > keepUsage) {
+					keep = image;
+					keepUsage = (count == null) ? 0 : count;
+				}
+			}
+			
+			String keepName = FileUtilities.getFilenameWithoutExt(keep);
+			for (Path image : group) {
+				String name = FileUtilities.getFilenameWithoutExt(image);
+				if ((image == keep) || pinned.contains(name))
+					continue;
+				
+				replacements.put(name, keepName);
+				removals.put(name, image);
+			}
+		}
+		
+		// Point the components to the images that are being kept.
+		iter = workspace.componentIterator();
+		while (iter.hasNext()) {
+			Component component = iter.next();
+			String name = component.getImageDeclaration();
+			if ((name == null) || !replacements.containsKey(name))
+				continue;
+			
+			try {
+				FileUtilities.writeFileContents(component.getPath()
+						.resolve(PartCatConstants.IMAGE_FILE), replacements.get(name));
+				component.reloadImage();
+				result.componentsUpdated++;
+			} catch (IOException e) {
+				// Keep the image around since it's still being used.
+				e.printStackTrace();
+				System.err.println("Couldn't change the image of " +
+						component.getName());
+				removals.remove(name);
+			}
+		}
+		
+		// Get rid of the duplicates.
+		for (Path image : removals.values()) {
+			long size = fileSize(image);
+			try {
+				Files.delete(image);
+				workspace.getImageIndex().refresh(image);
+				workspace.getImageCache().invalidate(image);
+				
+				result.filesRemoved++;
+				result.bytesSaved += size;
+			} catch (IOException e) {
+				e.printStackTrace();
+				System.err.println("Couldn't delete the duplicate image " +
+						image.toString());
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Gets the images of the workspace sorted by filename, so that the results
+	 * don't depend on the order of the directory listing.
+	 * 
+	 * @return Image files.
+	 */
+	private List<Path> getImages() {
+		List<Path> images = new ArrayList<Path>(workspace.getImageIndex().getPaths());
+		Collections.sort(images);
+		
+		return images;
+	}
+	
+	/**
+	 * Gets the content hash of an image, using the remembered one if possible.
+	 * 
+	 * @param  image Image file.
+	 * @return       Hexadecimal hash or {@code null} if it couldn't be read.
+	 */
+	private String getHash(Path image) {
+		ThumbnailStore store = workspace.getImageCache().getThumbnailStore();
+		if (store != null)
+			return store.getHash(image);
+		
+		try {
+			return FileUtilities.hashFile(image);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+	
+	/**
+	 * Gets the size of a file.
+	 * 
+	 * @param  path File path.
+	 * @return      Size of the file in bytes or -1 if it couldn't be accessed.
+	 */
+	private static long fileSize(Path path) {
+		try {
+			return Files.size(path);
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * A summary of a duplicate merging operation.
+	 */
+	public static class Result {
+		private int filesRemoved;
+		private int componentsUpdated;
+		private long bytesSaved;
+		
+		/**
+		 * Gets the number of duplicate images that were deleted.
+		 * 
+		 * @return Number of deleted images.
+		 */
+		public int getFilesRemoved() {
+			return filesRemoved;
+		}
+		
+		/**
+		 * Gets the number of components that were changed to use another
+		 * image.
+		 * 
+		 * @return Number of updated components.
+		 */
+		public int getComponentsUpdated() {
+			return componentsUpdated;
+		}
+		
+		/**
+		 * Gets the disk space that was freed.
+		 * 
+		 * @return Size of the deleted images in bytes.
+		 */
+		public long getBytesSaved() {
+			return bytesSaved;
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package com.innoveworkshop.partcat.images;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import com.innoveworkshop.partcat.PartCatWorkspace;
+import com.innoveworkshop.utilities.FileUtilities;
+import com.innoveworkshop.utilities.ImageUtilities;
+
+/**
+ * Brings images from outside into the images directory of a workspace.
+ * Images bigger than the workspace maximum import size are downscaled and
+ * re-encoded, so that no matter what gets imported the cost of showing it
+ * stays bounded, and the original can optionally be kept in the originals
+ * directory. An image with the same contents as one that's already in the
+ * workspace is never imported again.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ImageImporter {
+	private PartCatWorkspace workspace;
+	private ImageDeduplicator deduplicator;
+	
+	/**
+	 * Creates an image importer for a workspace.
+	 * 
+	 * @param workspace Workspace to import the images into.
+	 */
+	public ImageImporter(PartCatWorkspace workspace) {
+		this.workspace = workspace;
+		this.deduplicator = new ImageDeduplicator(workspace);
+	}
+	
+	/**
+	 * Imports an image into the workspace.
+	 * 
+	 * @param  source Image file to be imported.
+	 * @param  name   Name (filename without extension) of the imported image.
+	 * @return        Path to the image in the workspace, which might be an
+	 *                existing image with the same contents.
+	 * 
+	 * @throws IOException If the image couldn't be imported.
+	 */
+	public Path importImage(Path source, String name) throws IOException {
+		// Check if we already have this exact image.
+		Path existing = deduplicator.findDuplicate(source);
+		if (existing != null)
+			return existing;
+		
+		// Just copy the image if it's small enough.
+		int maxSize = workspace.getImportMaxImageSize();
+		Dimension size = ImageUtilities.readImageSize(source.toFile());
+		if ((maxSize <= 0) || (size == null) ||
+				((size.width <= maxSize) && (size.height <= maxSize))) {
+			Path dest = workspace.getImagesPath().resolve(name +
+					FileUtilities.getFileExtension(source, true));
+			Files.copy(source, dest, StandardCopyOption.COPY_ATTRIBUTES);
+			workspace.getImageIndex().refresh(dest);
+			
+			return dest;
+		}
+		
+		// Photos are kept as JPEG, everything else becomes a PNG.
+		String extension = FileUtilities.getFileExtension(source, true);
+		String format = "jpg";
+		if (!extension.equalsIgnoreCase(".jpg") && !extension.equalsIgnoreCase(".jpeg")) {
+			extension = ".png";
+			format = "png";
+		}
+		
+		// Downscale the image somewhere the workspace watcher won't see it. A
+		// temporary file would get private permissions, which isn't what we
+		// want for a workspace image.
+		BufferedImage image = ImageUtilities.readResizedImage(source.toFile(),
+				new Dimension(maxSize, maxSize), true);
+		Files.createDirectories(workspace.getMetadataPath());
+		Path tmpPath = workspace.getMetadataPath().resolve(name + extension + ".import");
+		Path dest;
+		try {
+			ImageUtilities.writeImage(image, format, tmpPath.toFile());
+			
+			// The downscaled version might've been imported before.
+			existing = deduplicator.findDuplicate(tmpPath);
+			if (existing != null)
+				return existing;
+			
+			dest = workspace.getImagesPath().resolve(name + extension);
+			Files.move(tmpPath, dest);
+			workspace.getImageIndex().refresh(dest);
+		} finally {
+			Files.deleteIfExists(tmpPath);
+		}
+		
+		// Keep the original around if we were asked to.
+		if (workspace.isKeepingImportOriginals())
+			archiveOriginal(source, name);
+		
+		return dest;
+	}
+	
+	/**
+	 * Copies the original of an image that has been downscaled to the
+	 * originals directory. Failures are only reported, since the image has
+	 * already been imported.
+	 * 
+	 * @param source Original image file.
+	 * @param name   Name of the imported image.
+	 */
+	private void archiveOriginal(Path source, String name) {
+		Path dest = workspace.getOriginalsPath().resolve(name +
+				FileUtilities.getFileExtension(source, true));
+		
+		try {
+			Files.createDirectories(dest.getParent());
+			Files.copy(source, dest, StandardCopyOption.COPY_ATTRIBUTES,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Couldn't keep the original image at " + dest.toString());
+		}
+	}
+}
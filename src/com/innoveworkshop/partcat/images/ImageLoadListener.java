@@ -0,0 +1,18 @@
+package com.innoveworkshop.partcat.images;
+
+import javax.swing.ImageIcon;
+
+/**
+ * A listener for images loaded in the background by an {@link ImageLoader}.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public interface ImageLoadListener {
+	/**
+	 * Called when the requested image has finished loading. This is never
+	 * called for requests that were superseded or cancelled.
+	 * 
+	 * @param icon Loaded image or {@code null} if there isn't one.
+	 */
+	public void imageLoaded(ImageIcon icon);
+}
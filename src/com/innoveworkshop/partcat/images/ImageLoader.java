@@ -0,0 +1,118 @@
+package com.innoveworkshop.partcat.images;
+
+import java.awt.Dimension;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.ImageIcon;
+
+import com.innoveworkshop.partcat.components.ComponentImage;
+
+/**
+ * Loads component images in a background thread, making sure only the result
+ * of the latest request is delivered. Every new request supersedes the
+ * previous one, which is cancelled if it hasn't started yet and has its result
+ * thrown away if it has.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ImageLoader {
+	private ExecutorService executor;
+	private Executor dispatcher;
+	private Future<?> pending;
+	private long generation;
+	
+	/**
+	 * Creates an image loader.
+	 * 
+	 * @param dispatcher Executor used to deliver the loaded images to the
+	 *                   listeners. For Swing applications this should dispatch
+	 *                   to the event thread.
+	 */
+	public ImageLoader(Executor dispatcher) {
+		this.executor = Executors.newSingleThreadExecutor(new LoaderThreadFactory());
+		this.dispatcher = dispatcher;
+		this.pending = null;
+		this.generation = 0;
+	}
+	
+	/**
+	 * Requests an image to be loaded, superseding any previous request.
+	 * 
+	 * @param image          Component image to be loaded.
+	 * @param dim            Dimension to fit the image into.
+	 * @param maintainAspect Should we maintain the image's aspect ratio?
+	 * @param listener       Listener to deliver the image to.
+	 */
+	public synchronized void load(final ComponentImage image, final Dimension dim,
+			final boolean maintainAspect, final ImageLoadListener listener) {
+		cancel();
+		final long request = generation;
+		
+		pending = executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				// Don't bother if we've been superseded while in the queue.
+				if (!isCurrent(request))
+					return;
+				
+				final ImageIcon icon = image.getIcon(dim, maintainAspect);
+				dispatcher.execute(new Runnable() {
+					@Override
+					public void run() {
+						// Selection might've moved on while we were loading.
+						if (isCurrent(request))
+							listener.imageLoaded(icon);
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Cancels the current request, if there's one.
+	 */
+	public synchronized void cancel() {
+		generation++;
+		if (pending != null) {
+			pending.cancel(false);
+			pending = null;
+		}
+	}
+	
+	/**
+	 * Cancels the current request and stops the background thread. The loader
+	 * can't be used after this.
+	 */
+	public synchronized void shutdown() {
+		cancel();
+		executor.shutdown();
+	}
+	
+	/**
+	 * Checks if a request is still the current one.
+	 * 
+	 * @param  request Generation of the request.
+	 * @return         True if it hasn't been superseded or cancelled.
+	 */
+	private synchronized boolean isCurrent(long request) {
+		return request == generation;
+	}
+	
+	/**
+	 * A simple thread factory for the loader, making sure we don't keep the
+	 * application alive because of it.
+	 */
+	private static class LoaderThreadFactory implements ThreadFactory {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "PartCat-Image-Loader");
+			thread.setDaemon(true);
+			
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.innoveworkshop.partcat.images;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+import javax.swing.ImageIcon;
+
+/**
+ * An image icon for HiDPI displays. The image has as many pixels as the
+ * screen will actually show, while the icon reports its size in user interface
+ * units, so it's drawn pixel for pixel instead of being blown up.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ScaledImageIcon extends ImageIcon {
+	private static final long serialVersionUID = 4262361478307981635L;
+	private double scale;
+	
+	/**
+	 * Creates a scaled image icon.
+	 * 
+	 * @param image Image in screen pixels.
+	 * @param scale Number of screen pixels per user interface unit.
+	 */
+	public ScaledImageIcon(Image image, double scale) {
+		super(image);
+		this.scale = scale;
+	}
+	
+	@Override
+	public int getIconWidth() {
+		return (int)Math.round(super.getIconWidth() / scale);
+	}
+	
+	@Override
+	public int getIconHeight() {
+		return (int)Math.round(super.getIconHeight() / scale);
+	}
+	
+	@Override
+	public synchronized void paintIcon(Component c, Graphics g, int x, int y) {
+		// Undo the user interface scaling so that we draw straight to pixels.
+		Graphics2D graphics = (Graphics2D)g.create();
+		graphics.translate(x, y);
+		graphics.scale(1 / scale, 1 / scale);
+		graphics.drawImage(getImage(), 0, 0, (getImageObserver() == null) ?
+				c : getImageObserver());
+		graphics.dispose();
+	}
+	
+	/**
+	 * Gets the number of screen pixels per user interface unit.
+	 * 
+	 * @return Scale factor of the icon.
+	 */
+	public double getScale() {
+		return scale;
+	}
+}
@@ -0,0 +1,256 @@
+package com.innoveworkshop.partcat.images;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.innoveworkshop.partcat.PartCatWorkspace;
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.utilities.ImageUtilities;
+
+/**
+ * Generates the stored thumbnails of every image used by the components of a
+ * workspace, so that browsing the workspace for the first time doesn't have
+ * to make them on demand. The images are spread across all the processors
+ * with a work-stealing pool, thumbnails that are already current are skipped
+ * and the whole thing can be cancelled at any time. Each image is only
+ * decoded once, at the largest size, and scaled down from there to the other
+ * sizes.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ThumbnailGenerator {
+	private PartCatWorkspace workspace;
+	private List<Dimension> sizes;
+	private int parallelism;
+	private volatile boolean cancelled;
+	private AtomicInteger done;
+	private AtomicInteger generated;
+	private AtomicInteger skipped;
+	private AtomicInteger failed;
+	
+	/**
+	 * Creates a thumbnail generator.
+	 * 
+	 * @param workspace Workspace to generate the thumbnails for.
+	 * @param sizes     Sizes the images are shown at (with the aspect ratio
+	 *                  maintained). These are rounded up to the sizes the
+	 *                  thumbnails are stored at.
+	 */
+	public ThumbnailGenerator(PartCatWorkspace workspace, List<Dimension> sizes) {
+		this.workspace = workspace;
+		
+		// Only the sizes that can be stored, largest first.
+		Set<Dimension> stored = new LinkedHashSet<Dimension>();
+		for (Dimension dim : sizes) {
+			Dimension size = ThumbnailStore.getStoredSize(dim, true);
+			if (size != null)
+				stored.add(size);
+		}
+		this.sizes = new ArrayList<Dimension>(stored);
+		Collections.sort(this.sizes, new Comparator<Dimension>() {
+			@Override
+			public int compare(Dimension a, Dimension b) {
+				return Integer.compare(b.width, a.width);
+			}
+		});
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+		this.cancelled = false;
+		this.done = new AtomicInteger();
+		this.generated = new AtomicInteger();
+		this.skipped = new AtomicInteger();
+		this.failed = new AtomicInteger();
+	}
+	
+	/**
+	 * Generates the thumbnails, blocking until it's done or cancelled.
+	 * 
+	 * @param listener Listener to report the progress to. Can be {@code null}.
+	 * @return         True if everything was processed, false if cancelled.
+	 */
+	public boolean generate(final ThumbnailProgressListener listener) {
+		final ThumbnailStore store = workspace.getImageCache().getThumbnailStore();
+		if (store == null)
+			return true;
+		
+		// Get every image that's used by a component.
+		Set<Path> paths = new LinkedHashSet<Path>();
+		ListIterator<Component> iter = workspace.componentIterator();
+		while (iter.hasNext()) {
+			Path path = iter.next().getImage().getPath();
+			if (path != null)
+				paths.add(path);
+		}
+		final List<Path> images = new ArrayList<Path>(paths);
+		
+		// Spread the work across all the processors.
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new GenerateTask(store, images, 0, images.size(), listener));
+		} finally {
+			pool.shutdown();
+			store.flush();
+		}
+		
+		return !cancelled;
+	}
+	
+	/**
+	 * Cancels the generation. Images that are being processed are finished,
+	 * but no new ones are started.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	/**
+	 * Checks if the generation has been cancelled.
+	 * 
+	 * @return True if it has been cancelled.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	/**
+	 * Sets the number of images processed at the same time.
+	 * 
+	 * @param parallelism Number of worker threads. Defaults to the number of
+	 *                    available processors.
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+	
+	/**
+	 * Gets the number of thumbnails that were generated.
+	 * 
+	 * @return Number of generated thumbnails.
+	 */
+	public int getGenerated() {
+		return generated.get();
+	}
+	
+	/**
+	 * Gets the number of thumbnails that were already current.
+	 * 
+	 * @return Number of skipped thumbnails.
+	 */
+	public int getSkipped() {
+		return skipped.get();
+	}
+	
+	/**
+	 * Gets the number of thumbnails that couldn't be generated.
+	 * 
+	 * @return Number of failed thumbnails.
+	 */
+	public int getFailed() {
+		return failed.get();
+	}
+	
+	/**
+	 * Generates the missing thumbnails of a single image.
+	 * 
+	 * @param store Store to save the thumbnails to.
+	 * @param path  Image file path.
+	 */
+	private void generateImage(ThumbnailStore store, Path path) {
+		// Skip the ones we already have.
+		List<Dimension> missing = new ArrayList<Dimension>();
+		for (Dimension size : sizes) {
+			if (store.contains(path, size, true)) {
+				skipped.incrementAndGet();
+			} else {
+				missing.add(size);
+			}
+		}
+		if (missing.isEmpty() || cancelled)
+			return;
+		
+		try {
+			// Decode the image at the largest size and scale it down from there.
+			BufferedImage image = ImageUtilities.readResizedImage(path.toFile(),
+					missing.get(0), true);
+			if (image == null) {
+				failed.addAndGet(missing.size());
+				return;
+			}
+			
+			for (int i = 0; i < missing.size(); i++) {
+				if (i > 0)
+					image = ImageUtilities.resizeImage(image, missing.get(i), true);
+				
+				store.save(path, missing.get(i), true, image);
+				generated.incrementAndGet();
+			}
+		} catch (IOException e) {
+			System.err.println("Couldn't generate a thumbnail of " +
+					path.toString() + ": " + e.getMessage());
+			failed.addAndGet(missing.size());
+		}
+	}
+	
+	/**
+	 * Splits a range of images in half until there's only one left to work
+	 * on, which lets idle workers steal the other halves.
+	 */
+	private class GenerateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private ThumbnailStore store;
+		private List<Path> images;
+		private int start;
+		private int end;
+		private ThumbnailProgressListener listener;
+		
+		/**
+		 * Creates a generation task for a range of images.
+		 * 
+		 * @param store    Store to save the thumbnails to.
+		 * @param images   All the images.
+		 * @param start    Index of the first image of the range.
+		 * @param end      Index after the last image of the range.
+		 * @param listener Progress listener. Can be {@code null}.
+		 */
+		public GenerateTask(ThumbnailStore store, List<Path> images, int start,
+				int end, ThumbnailProgressListener listener) {
+			this.store = store;
+			this.images = images;
+			this.start = start;
+			this.end = end;
+			this.listener = listener;
+		}
+		
+		@Override
+		protected void compute() {
+			if (cancelled)
+				return;
+			
+			if ((end - start) > 1) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new GenerateTask(store, images, start, middle, listener),
+						new GenerateTask(store, images, middle, end, listener));
+				return;
+			}
+			
+			for (int i = start; i < end; i++) {
+				generateImage(store, images.get(i));
+				
+				int count = done.incrementAndGet();
+				if (listener != null)
+					listener.progressChanged(count, images.size());
+			}
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.innoveworkshop.partcat.images;
+
+/**
+ * A listener for the progress of a {@link ThumbnailGenerator}.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public interface ThumbnailProgressListener {
+	/**
+	 * Called after each image has been processed. This is called from the
+	 * generator worker threads.
+	 * 
+	 * @param done  Number of images processed so far.
+	 * @param total Total number of images to be processed.
+	 */
+	public void progressChanged(int done, int total);
+}
@@ -0,0 +1,457 @@
+package com.innoveworkshop.partcat.images;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+
+import com.innoveworkshop.partcat.PartCatConstants;
+import com.innoveworkshop.utilities.FileUtilities;
+import com.innoveworkshop.utilities.ImageUtilities;
+
+/**
+ * A persistent store of resized component images. Thumbnails are kept in
+ * {@code <root>/<size>/<hash>.png}, where the hash is taken from the
+ * contents of the source image, so they survive restarts and are only
+ * generated again when the source image changes.
+ * 
+ * Hashing big images isn't free, so the hash of each source image is
+ * remembered together with its modification time and size, and is only
+ * computed again when one of those changes.
+ * 
+ * Thumbnails are only stored at a small set of sizes, the next one up from
+ * the size that was asked for, and are resized from there when loaded. That
+ * way resizing the window doesn't leave a whole new set of thumbnails behind
+ * every time. Thumbnails of images that have changed or are gone are deleted
+ * by {@link #prune()}.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ThumbnailStore {
+	private static final int[] STORED_SIZES = {
+		64, 96, 128, 192, 256, 384, 512, 768, 1024, 1536, 2048
+	};
+	
+	private Path root;
+	private Path base;
+	private Properties hashes;
+	private boolean dirty;
+	
+	/**
+	 * Creates a thumbnail store.
+	 * 
+	 * @param root Folder where the thumbnails are kept.
+	 * @param base Folder that source image paths are remembered relative to.
+	 *             This is usually the workspace root, that way the workspace
+	 *             can be moved around.
+	 */
+	public ThumbnailStore(Path root, Path base) {
+		this.root = root;
+		this.base = base;
+		this.hashes = new Properties();
+		this.dirty = false;
+		
+		loadHashes();
+	}
+	
+	/**
+	 * Gets the size a thumbnail is stored at.
+	 * 
+	 * @param  dim            Dimension the image is resized to fit into.
+	 * @param  maintainAspect Is the aspect ratio maintained?
+	 * @return                Size the thumbnail is stored at or {@code null} if
+	 *                        it's too big to be stored.
+	 */
+	public static Dimension getStoredSize(Dimension dim, boolean maintainAspect) {
+		// Images keep their aspect ratio, so only the longest side matters.
+		if (maintainAspect) {
+			int side = getStoredLength(Math.max(dim.width, dim.height));
+			return (side < 0) ? null : new Dimension(side, side);
+		}
+		
+		int width = getStoredLength(dim.width);
+		int height = getStoredLength(dim.height);
+		if ((width < 0) || (height < 0))
+			return null;
+		
+		return new Dimension(width, height);
+	}
+	
+	/**
+	 * Loads a previously stored thumbnail, resized to fit a dimension.
+	 * 
+	 * @param  source         Source image file path.
+	 * @param  dim            Dimension to fit the image into.
+	 * @param  maintainAspect Should the aspect ratio be maintained?
+	 * @return                Thumbnail image or {@code null} if there isn't one
+	 *                        for the current contents of the source image.
+	 */
+	public BufferedImage load(Path source, Dimension dim, boolean maintainAspect) {
+		Path path = getThumbnailPath(source, dim, maintainAspect);
+		if ((path == null) || !Files.isRegularFile(path))
+			return null;
+		
+		try {
+			BufferedImage image = ImageIO.read(path.toFile());
+			if ((image == null) || dim.equals(getStoredSize(dim, maintainAspect)))
+				return image;
+			
+			return ImageUtilities.resizeImage(image, dim, maintainAspect);
+		} catch (IOException e) {
+			System.err.println("Couldn't read the thumbnail at " + path.toString() +
+					": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Stores a thumbnail. Failures are only reported, since the thumbnail can
+	 * always be generated again.
+	 * 
+	 * @param source         Source image file path.
+	 * @param size           Size the image was resized to fit into, as given
+	 *                       by {@link #getStoredSize(Dimension, boolean)}.
+	 * @param maintainAspect Was the aspect ratio maintained?
+	 * @param image          Resized image.
+	 */
+	public void save(Path source, Dimension size, boolean maintainAspect,
+			BufferedImage image) {
+		Path path = getThumbnailPath(source, size, maintainAspect);
+		if (path == null)
+			return;
+		
+		try {
+			// Write to a temporary file first so that nobody reads a half
+			// written thumbnail.
+			Files.createDirectories(path.getParent());
+			Path tmpPath = Files.createTempFile(path.getParent(), "thumb", ".tmp");
+			try {
+				try (OutputStream out = Files.newOutputStream(tmpPath)) {
+					ImageIO.write(image, "png", out);
+				}
+				
+				try {
+					Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(tmpPath);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Couldn't save the thumbnail at " + path.toString());
+		}
+	}
+	
+	/**
+	 * Checks if there's a stored thumbnail for the current contents of an
+	 * image.
+	 * 
+	 * @param  source         Source image file path.
+	 * @param  dim            Dimension the image is resized to fit into.
+	 * @param  maintainAspect Is the aspect ratio maintained?
+	 * @return                True if the thumbnail is there and current.
+	 */
+	public boolean contains(Path source, Dimension dim, boolean maintainAspect) {
+		Path path = getThumbnailPath(source, dim, maintainAspect);
+		return (path != null) && Files.isRegularFile(path);
+	}
+	
+	/**
+	 * Gets the sizes of the thumbnails (with the aspect ratio maintained) that
+	 * have been stored so far, which are the sizes the images are usually
+	 * shown at, rounded up to the sizes thumbnails are stored at.
+	 * 
+	 * @return Thumbnail sizes.
+	 */
+	public List<Dimension> getSizes() {
+		List<Dimension> sizes = new ArrayList<Dimension>();
+		File[] contents = root.toFile().listFiles();
+		if (contents == null)
+			return sizes;
+		
+		for (File file : contents) {
+			if (!file.isDirectory())
+				continue;
+			
+			// Only folders named like "<width>x<height>".
+			String name = file.getName();
+			int x = name.indexOf('x');
+			if (x < 0)
+				continue;
+			try {
+				Dimension size = new Dimension(Integer.parseInt(name.substring(0, x)),
+						Integer.parseInt(name.substring(x + 1)));
+				if (size.equals(getStoredSize(size, true)))
+					sizes.add(size);
+			} catch (NumberFormatException e) {
+				// Not a thumbnail folder.
+			}
+		}
+		
+		return sizes;
+	}
+	
+	/**
+	 * Deletes the thumbnails that will never be used again: the ones of source
+	 * images that have changed or are gone and the ones stored at sizes that
+	 * are no longer used. Thumbnails saved while this is running are left
+	 * alone.
+	 */
+	public void prune() {
+		long start = System.currentTimeMillis();
+		Map<String, String> memos = new HashMap<String, String>();
+		synchronized (this) {
+			for (String key : hashes.stringPropertyNames())
+				memos.put(key, hashes.getProperty(key));
+		}
+		
+		// Forget about the source images that have changed or are gone.
+		Set<String> current = new HashSet<String>();
+		for (Map.Entry<String, String> memo : memos.entrySet()) {
+			String stamp = null;
+			try {
+				stamp = getStamp(Files.readAttributes(getSource(memo.getKey()),
+						BasicFileAttributes.class));
+			} catch (IOException e) {
+				// The image is gone.
+			}
+			
+			if ((stamp != null) && memo.getValue().startsWith(stamp)) {
+				current.add(memo.getValue().substring(stamp.length()));
+			} else {
+				synchronized (this) {
+					if (hashes.remove(memo.getKey(), memo.getValue()))
+						dirty = true;
+				}
+			}
+		}
+		
+		// Delete the thumbnails of those images and of unused sizes.
+		File[] folders = root.toFile().listFiles();
+		if (folders == null)
+			return;
+		for (File folder : folders) {
+			File[] files = folder.listFiles();
+			if (files == null)
+				continue;
+			
+			boolean used = isStoredSizeName(folder.getName());
+			for (File file : files) {
+				String hash = FileUtilities.getFilenameWithoutExt(file.toPath());
+				if ((!used || !current.contains(hash)) &&
+						(file.lastModified() < start)) {
+					file.delete();
+				}
+			}
+			
+			if (!used)
+				folder.delete();
+		}
+		
+		flush();
+	}
+	
+	/**
+	 * Gets the path where the thumbnail of an image should be stored.
+	 * 
+	 * @param  source         Source image file path.
+	 * @param  dim            Dimension the image is resized to fit into.
+	 * @param  maintainAspect Is the aspect ratio maintained?
+	 * @return                Thumbnail path or {@code null} if the source
+	 *                        image couldn't be read or the thumbnail is too
+	 *                        big to be stored.
+	 */
+	public Path getThumbnailPath(Path source, Dimension dim, boolean maintainAspect) {
+		Dimension size = getStoredSize(dim, maintainAspect);
+		if (size == null)
+			return null;
+		
+		String hash = getHash(source);
+		if (hash == null)
+			return null;
+		
+		return root.resolve(getSizeName(size, maintainAspect)).resolve(hash + ".png");
+	}
+	
+	/**
+	 * Gets the content hash of a source image, only reading the file if it
+	 * has changed since the last time it was hashed.
+	 * 
+	 * @param  source Source image file path.
+	 * @return        Hexadecimal hash or {@code null} if the file couldn't be
+	 *                read.
+	 */
+	public String getHash(Path source) {
+		String key = getKey(source);
+		
+		try {
+			// Check if we've already hashed this version of the file.
+			BasicFileAttributes attr = Files.readAttributes(source,
+					BasicFileAttributes.class);
+			String stamp = getStamp(attr);
+			synchronized (this) {
+				String memo = hashes.getProperty(key);
+				if ((memo != null) && memo.startsWith(stamp))
+					return memo.substring(stamp.length());
+			}
+			
+			// Hash the file and remember it.
+			String hash = FileUtilities.hashFile(source);
+			synchronized (this) {
+				hashes.setProperty(key, stamp + hash);
+				dirty = true;
+			}
+			
+			return hash;
+		} catch (IOException e) {
+			System.err.println("Couldn't hash the image at " + source.toString() +
+					": " + e.getMessage());
+			return null;
+		}
+	}
+	
+	/**
+	 * Saves the remembered source image hashes if they have changed.
+	 */
+	public synchronized void flush() {
+		if (!dirty)
+			return;
+		
+		Path path = root.resolve(PartCatConstants.THUMBNAIL_HASHES_FILE);
+		try {
+			Files.createDirectories(root);
+			try (OutputStream out = Files.newOutputStream(path)) {
+				hashes.store(out, "PartCat thumbnail source hashes");
+			}
+			
+			dirty = false;
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Couldn't save the thumbnail hashes.");
+		}
+	}
+	
+	/**
+	 * Loads the remembered source image hashes.
+	 */
+	private void loadHashes() {
+		Path path = root.resolve(PartCatConstants.THUMBNAIL_HASHES_FILE);
+		try (InputStream in = Files.newInputStream(path)) {
+			hashes.load(in);
+		} catch (NoSuchFileException e) {
+			// Nothing has been hashed yet.
+		} catch (Exception e) {
+			System.err.println("Thumbnail hashes at " + path.toString() +
+					" are invalid and will be recomputed.");
+			hashes.clear();
+		}
+	}
+	
+	/**
+	 * Gets the stamp that's remembered along with the hash of a source image.
+	 * 
+	 * @param  attr Attributes of the source image file.
+	 * @return      Modification time and size of the file.
+	 */
+	private static String getStamp(BasicFileAttributes attr) {
+		return attr.lastModifiedTime().toMillis() + ":" + attr.size() + ":";
+	}
+	
+	/**
+	 * Gets the source image a remembered hash belongs to.
+	 * 
+	 * @param  key Key the hash is remembered under.
+	 * @return     Source image file path.
+	 */
+	private Path getSource(String key) {
+		Path path = Paths.get(key);
+		if (path.isAbsolute() || (base == null))
+			return path;
+		
+		return base.resolve(path);
+	}
+	
+	/**
+	 * Gets the key used to remember the hash of a source image.
+	 * 
+	 * @param  source Source image file path.
+	 * @return        Path relative to the base folder when possible.
+	 */
+	private String getKey(Path source) {
+		if ((base != null) && source.startsWith(base))
+			return base.relativize(source).toString().replace('\\', '/');
+		
+		return source.toAbsolutePath().toString();
+	}
+	
+	/**
+	 * Gets the name of the folder that holds the thumbnails of a given size.
+	 * 
+	 * @param  dim            Dimension the images are resized to fit into.
+	 * @param  maintainAspect Is the aspect ratio maintained?
+	 * @return                Folder name.
+	 */
+	private static String getSizeName(Dimension dim, boolean maintainAspect) {
+		return dim.width + "x" + dim.height + (maintainAspect ? "" : "-stretched");
+	}
+	
+	/**
+	 * Checks if a folder holds thumbnails of one of the sizes they're stored
+	 * at.
+	 * 
+	 * @param  name Folder name.
+	 * @return      True if it's the folder of a stored size.
+	 */
+	private static boolean isStoredSizeName(String name) {
+		boolean maintainAspect = !name.endsWith("-stretched");
+		String size = maintainAspect ? name :
+				name.substring(0, name.length() - "-stretched".length());
+		
+		int x = size.indexOf('x');
+		if (x < 0)
+			return false;
+		try {
+			Dimension dim = new Dimension(Integer.parseInt(size.substring(0, x)),
+					Integer.parseInt(size.substring(x + 1)));
+			return dim.equals(getStoredSize(dim, maintainAspect));
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Rounds a length up to the next length thumbnails are stored at.
+	 * 
+	 * @param  length Length in pixels.
+	 * @return        Stored length or -1 if it's too big to be stored.
+	 */
+	private static int getStoredLength(int length) {
+		for (int size : STORED_SIZES) {
+			if (length <= size)
+				return size;
+		}
+		
+		return -1;
+	}
+}
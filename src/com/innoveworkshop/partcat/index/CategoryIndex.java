@@ -0,0 +1,439 @@
+package com.innoveworkshop.partcat.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.partcat.components.ComponentCategory;
+import com.innoveworkshop.partcat.components.comparators.CategoryComparators;
+import com.innoveworkshop.partcat.components.comparators.ComponentComparators;
+
+/**
+ * An index of the components of a workspace grouped by category and
+ * sub-category. Every category and sub-category is represented by a single
+ * canonical {@link ComponentCategory} object and all the lists are kept
+ * sorted, so that the component tree can be built in a single pass without
+ * searching or sorting anything.
+ * 
+ * The lists returned by this class are read-only views that reflect later
+ * changes to the index, so they shouldn't be held on to while the workspace
+ * is being changed from another thread.
+ * 
+ * The canonical objects are kept in a pool that outlives the entries of the
+ * index, which lets the components take their categories from here instead
+ * of creating their own copies.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class CategoryIndex {
+	private List<ComponentCategory> categories;
+	private Map<String, CategoryEntry> entries;
+	private Map<Component, CategoryEntry> filed;
+	private ConcurrentHashMap<String, ComponentCategory> categoryPool;
+	private ConcurrentHashMap<String, ComponentCategory> subCategoryPool;
+	private ComponentCategory uncategorized;
+	private ComponentCategory noSubCategory;
+	private Comparator<ComponentCategory> categoryComparator;
+	private Comparator<Component> componentComparator;
+	
+	/**
+	 * Creates an empty category index.
+	 */
+	public CategoryIndex() {
+		categories = new ArrayList<ComponentCategory>();
+		entries = new HashMap<String, CategoryEntry>();
+		filed = new IdentityHashMap<Component, CategoryEntry>();
+		categoryPool = new ConcurrentHashMap<String, ComponentCategory>();
+		subCategoryPool = new ConcurrentHashMap<String, ComponentCategory>();
+		categoryComparator = new CategoryComparators().new Alphabetically();
+		componentComparator = new ComponentComparators().new Alphabetically();
+		
+		// Components without a category share the same object.
+		uncategorized = new ComponentCategory();
+		categoryPool.put(uncategorized.getName(), uncategorized);
+		noSubCategory = new ComponentCategory();
+		noSubCategory.setAsSubCategory(true);
+	}
+	
+	/**
+	 * Rebuilds the whole index from a list of components. This is done in a
+	 * single pass, with every list being sorted only once at the end.
+	 * 
+	 * @param components Components to be indexed.
+	 */
+	public synchronized void rebuild(Collection<Component> components) {
+		clear();
+		
+		// Group the components.
+		for (Component component : components) {
+			if (component.isDeleted())
+				continue;
+			
+			CategoryEntry entry = getEntry(component.getCategory(), true);
+			entry.file(component, component.getSubCategory(), false);
+			filed.put(component, entry);
+		}
+		
+		// Sort everything.
+		Collections.sort(categories, categoryComparator);
+		for (CategoryEntry entry : entries.values())
+			entry.sort();
+	}
+	
+	/**
+	 * Adds a component to the index.
+	 * 
+	 * @param component Component to be added.
+	 */
+	public synchronized void add(Component component) {
+		if (component.isDeleted() || filed.containsKey(component))
+			return;
+		
+		CategoryEntry entry = getEntry(component.getCategory(), true);
+		entry.file(component, component.getSubCategory(), true);
+		filed.put(component, entry);
+	}
+	
+	/**
+	 * Removes a component from the index.
+	 * 
+	 * @param component Component to be removed.
+	 */
+	public synchronized void remove(Component component) {
+		CategoryEntry entry = filed.remove(component);
+		if (entry == null)
+			return;
+		
+		entry.unfile(component);
+		
+		// Get rid of categories that are now empty.
+		if (entry.components.isEmpty()) {
+			entries.remove(entry.category.getName());
+			categories.remove(entry.category);
+		}
+	}
+	
+	/**
+	 * Files a component again after its name or properties have changed. This
+	 * does nothing if the component isn't in the index.
+	 * 
+	 * @param component Component that has changed.
+	 */
+	public synchronized void update(Component component) {
+		if (!filed.containsKey(component))
+			return;
+		
+		remove(component);
+		add(component);
+	}
+	
+	/**
+	 * Removes everything from the index.
+	 */
+	public synchronized void clear() {
+		categories.clear();
+		entries.clear();
+		filed.clear();
+	}
+	
+	/**
+	 * Gets all the categories in the index sorted alphabetically. Each of them
+	 * is populated with its sorted sub-categories.
+	 * 
+	 * @return Read-only list of categories.
+	 */
+	public synchronized List<ComponentCategory> getCategories() {
+		return Collections.unmodifiableList(categories);
+	}
+	
+	/**
+	 * Gets the canonical category object with a given name.
+	 * 
+	 * @param  name Category name.
+	 * @return      Category or {@code null} if there aren't any components in
+	 *              it.
+	 */
+	public synchronized ComponentCategory getCategory(String name) {
+		CategoryEntry entry = entries.get(name);
+		if (entry == null)
+			return null;
+		
+		return entry.category;
+	}
+	
+	/**
+	 * Gets the canonical object of a category, creating it if needed. Objects
+	 * stay in the pool even after their category is left without components,
+	 * so a component never holds a category that isn't the one in the index.
+	 * This doesn't take the lock of the index, so it's safe to call while
+	 * holding the lock of a component.
+	 * 
+	 * @param  name Category name or {@code null} if uncategorized.
+	 * @return      Canonical category.
+	 */
+	public ComponentCategory getCanonicalCategory(String name) {
+		if (name == null)
+			return uncategorized;
+		
+		ComponentCategory category = categoryPool.get(name);
+		if (category != null)
+			return category;
+		
+		// Another thread may have beaten us to it.
+		category = new ComponentCategory(name);
+		ComponentCategory existing = categoryPool.putIfAbsent(name, category);
+		return (existing != null) ? existing : category;
+	}
+	
+	/**
+	 * Gets the canonical object of a sub-category, creating it if needed. Just
+	 * like {@link #getCanonicalCategory(String)} this doesn't take the lock of
+	 * the index.
+	 * 
+	 * @param  category Name of the category that the sub-category belongs to.
+	 * @param  name     Sub-category name or {@code null} if there isn't one.
+	 * @return          Canonical sub-category.
+	 */
+	public ComponentCategory getCanonicalSubCategory(String category,
+			String name) {
+		if (name == null)
+			return noSubCategory;
+		
+		String key = getCanonicalCategory(category).getName() + "\n" + name;
+		ComponentCategory subCategory = subCategoryPool.get(key);
+		if (subCategory != null)
+			return subCategory;
+		
+		// Another thread may have beaten us to it.
+		subCategory = new ComponentCategory(name);
+		subCategory.setAsSubCategory(true);
+		ComponentCategory existing = subCategoryPool.putIfAbsent(key, subCategory);
+		return (existing != null) ? existing : subCategory;
+	}
+	
+	/**
+	 * Gets all the components in a category sorted alphabetically.
+	 * 
+	 * @param  category Category to get the components from.
+	 * @return          Read-only list of components.
+	 */
+	public synchronized List<Component> getComponents(ComponentCategory category) {
+		CategoryEntry entry = getEntry(category, false);
+		if (entry == null)
+			return Collections.emptyList();
+		
+		return Collections.unmodifiableList(entry.components);
+	}
+	
+	/**
+	 * Gets the components in a sub-category sorted alphabetically.
+	 * 
+	 * @param  category    Category to get the components from.
+	 * @param  subCategory Sub-category of the components or {@code null} to get
+	 *                     the components that don't have a sub-category.
+	 * @return             Read-only list of components.
+	 */
+	public synchronized List<Component> getComponents(ComponentCategory category,
+			ComponentCategory subCategory) {
+		CategoryEntry entry = getEntry(category, false);
+		if (entry == null)
+			return Collections.emptyList();
+		
+		List<Component> list = entry.subComponents.get(
+				(subCategory == null) ? null : subCategory.getName());
+		if (list == null)
+			return Collections.emptyList();
+		
+		return Collections.unmodifiableList(list);
+	}
+	
+	/**
+	 * Checks if a component is in the index.
+	 * 
+	 * @param  component Component to look for.
+	 * @return           True if the component has been filed.
+	 */
+	public synchronized boolean contains(Component component) {
+		return filed.containsKey(component);
+	}
+	
+	/**
+	 * Gets the number of components in the index.
+	 * 
+	 * @return Number of indexed components.
+	 */
+	public synchronized int size() {
+		return filed.size();
+	}
+	
+	/**
+	 * Gets the entry of a category.
+	 * 
+	 * @param  category Category to look for.
+	 * @param  create   Create the entry if it doesn't exist yet?
+	 * @return          Category entry or {@code null} if it doesn't exist and
+	 *                  we weren't asked to create it.
+	 */
+	private CategoryEntry getEntry(ComponentCategory category, boolean create) {
+		CategoryEntry entry = entries.get(category.getName());
+		if ((entry != null) || !create)
+			return entry;
+		
+		// Use the canonical category from the pool.
+		entry = new CategoryEntry(getCanonicalCategory(category.getName()));
+		entries.put(category.getName(), entry);
+		categories.add(insertionPoint(categories, entry.category,
+				categoryComparator), entry.category);
+		
+		return entry;
+	}
+	
+	/**
+	 * Finds the position where an item should be inserted in a sorted list.
+	 * Items that compare equal are inserted after the existing ones.
+	 * 
+	 * @param  list       Sorted list.
+	 * @param  item       Item to be inserted.
+	 * @param  comparator Comparator used to sort the list.
+	 * @return            Index where the item should be inserted.
+	 */
+	private static <T> int insertionPoint(List<T> list, T item,
+			Comparator<? super T> comparator) {
+		int low = 0;
+		int high = list.size();
+		
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparator.compare(list.get(mid), item) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		
+		return low;
+	}
+	
+	/**
+	 * Removes a specific object from a list.
+	 * 
+	 * @param  list List to remove the object from.
+	 * @param  item Object to be removed.
+	 * @return      True if the object was found.
+	 */
+	private static <T> boolean removeIdentical(List<T> list, T item) {
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == item) {
+				list.remove(i);
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * The components of a single category.
+	 */
+	private class CategoryEntry {
+		private ComponentCategory category;
+		private ArrayList<ComponentCategory> subCategories;
+		private Map<String, List<Component>> subComponents;
+		private Map<Component, String> subFiled;
+		private List<Component> components;
+		
+		/**
+		 * Creates an empty category entry.
+		 * 
+		 * @param category Canonical category object.
+		 */
+		public CategoryEntry(ComponentCategory category) {
+			this.category = category;
+			this.subCategories = new ArrayList<ComponentCategory>();
+			this.subComponents = new HashMap<String, List<Component>>();
+			this.subFiled = new IdentityHashMap<Component, String>();
+			this.components = new ArrayList<Component>();
+			
+			category.setSubCategories(subCategories);
+		}
+		
+		/**
+		 * Files a component under this category.
+		 * 
+		 * @param component   Component to be filed.
+		 * @param subCategory Sub-category of the component.
+		 * @param sorted      Should the component be inserted in order?
+		 */
+		public void file(Component component, ComponentCategory subCategory,
+				boolean sorted) {
+			String subName = subCategory.getName();
+			
+			// Get the list of components in the sub-category.
+			List<Component> list = subComponents.get(subName);
+			if (list == null) {
+				list = new ArrayList<Component>();
+				subComponents.put(subName, list);
+				
+				// Components without a sub-category aren't listed.
+				if (subName != null) {
+					ComponentCategory sub = getCanonicalSubCategory(
+							category.getName(), subName);
+					subCategories.add(sorted ? insertionPoint(subCategories, sub,
+							categoryComparator) : subCategories.size(), sub);
+				}
+			}
+			
+			// Add the component to the lists.
+			if (sorted) {
+				components.add(insertionPoint(components, component,
+						componentComparator), component);
+				list.add(insertionPoint(list, component, componentComparator),
+						component);
+			} else {
+				components.add(component);
+				list.add(component);
+			}
+			subFiled.put(component, subName);
+		}
+		
+		/**
+		 * Removes a component from this category.
+		 * 
+		 * @param component Component to be removed.
+		 */
+		public void unfile(Component component) {
+			String subName = subFiled.remove(component);
+			removeIdentical(components, component);
+			
+			// Remove it from its sub-category and get rid of it if it's empty.
+			List<Component> list = subComponents.get(subName);
+			if (list != null) {
+				removeIdentical(list, component);
+				
+				if (list.isEmpty()) {
+					subComponents.remove(subName);
+					if (subName != null)
+						removeIdentical(subCategories, getCanonicalSubCategory(
+								category.getName(), subName));
+				}
+			}
+		}
+		
+		/**
+		 * Sorts all the lists of this category.
+		 */
+		public void sort() {
+			Collections.sort(subCategories, categoryComparator);
+			Collections.sort(components, componentComparator);
+			for (List<Component> list : subComponents.values())
+				Collections.sort(list, componentComparator);
+		}
+	}
+}
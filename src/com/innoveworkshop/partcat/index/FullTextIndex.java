@@ -0,0 +1,605 @@
+package com.innoveworkshop.partcat.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.innoveworkshop.partcat.components.Component;
+
+/**
+ * A full text index of the names, property values and notes of the
+ * components of a workspace. The text is broken up into words (terms), and
+ * each term keeps a list of the components that contain it and how many
+ * times, which allows searches to be ranked using BM25 without reading a
+ * single component.
+ * 
+ * The index is persisted together with the change stamp of each component,
+ * so that only the components that have changed since the last time the
+ * workspace was opened have to be indexed again.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class FullTextIndex {
+	private static final int MAGIC = 0x50434654;  // "PCFT"
+	private static final int VERSION = 1;
+	
+	// BM25 ranking parameters.
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+	
+	// Words in the name count as much as this many words anywhere else.
+	private static final int NAME_WEIGHT = 3;
+	
+	private List<Document> documents;
+	private Map<String, Integer> ids;
+	private Map<String, PostingList> postings;
+	private String[] sortedTerms;
+	private long totalLength;
+	private boolean dirty;
+	
+	/**
+	 * Creates an empty full text index.
+	 */
+	public FullTextIndex() {
+		documents = new ArrayList<Document>();
+		ids = new HashMap<String, Integer>();
+		postings = new HashMap<String, PostingList>();
+		sortedTerms = null;
+		totalLength = 0;
+		dirty = false;
+	}
+	
+	/**
+	 * Loads an index from a file. If the file doesn't exist, is corrupt, or
+	 * was written by an incompatible version, an empty index is returned,
+	 * which will make everything be indexed again.
+	 * 
+	 * @param  path {@link Path} to the index file.
+	 * @return      The loaded index.
+	 */
+	public static FullTextIndex load(Path path) {
+		FullTextIndex index = new FullTextIndex();
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Files.newInputStream(path)))) {
+			// Check if this is a file we can actually understand.
+			if ((in.readInt() != MAGIC) || (in.readInt() != VERSION))
+				throw new IOException("Unknown full text index format");
+			
+			// Nothing stored in the file can be larger than the file itself.
+			long limit = Files.size(path);
+			
+			// Read the documents.
+			int count = in.readInt();
+			if ((count < 0) || (count > limit))
+				throw new IOException("Invalid document count: " + count);
+			for (int i = 0; i < count; i++)
+				index.addDocument(Document.read(in, limit));
+		} catch (NoSuchFileException e) {
+			// No index yet. Everything will be indexed.
+			index.clear();
+		} catch (Exception e) {
+			System.err.println("Full text index at " + path.toString() +
+					" is invalid. Everything will be indexed again.");
+			index.clear();
+		}
+		
+		index.dirty = false;
+		return index;
+	}
+	
+	/**
+	 * Saves the index to a file. The file is written to a temporary location
+	 * first and then moved over the old one, so that an interrupted save won't
+	 * leave a corrupt index behind.
+	 * 
+	 * @param path {@link Path} to the index file.
+	 * 
+	 * @throws IOException If something goes wrong while writing the file.
+	 */
+	public synchronized void save(Path path) throws IOException {
+		Files.createDirectories(path.getParent());
+		Path tmpPath = path.resolveSibling(path.getFileName().toString() + ".tmp");
+		
+		// Write the documents.
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(tmpPath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(ids.size());
+			
+			for (Document document : documents) {
+				if (document != null)
+					document.write(out);
+			}
+		}
+		
+		// Replace the old index.
+		try {
+			Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+		
+		dirty = false;
+	}
+	
+	/**
+	 * Checks if a component was indexed with its current contents.
+	 * 
+	 * @param  name  Component name.
+	 * @param  stamp Current change stamp of the component folder or
+	 *               {@code null} if it isn't known.
+	 * @return       True if the component doesn't have to be indexed again.
+	 */
+	public synchronized boolean isCurrent(String name, long[] stamp) {
+		Integer id = ids.get(name);
+		if ((id == null) || (stamp == null))
+			return false;
+		
+		return WorkspaceSnapshot.isSameStamp(documents.get(id).stamp, stamp);
+	}
+	
+	/**
+	 * Indexes a component, replacing whatever was indexed under its name. This
+	 * may read the notes of the component from disk.
+	 * 
+	 * @param component {@link Component} to be indexed.
+	 * @param stamp     Change stamp of the component folder when it was read
+	 *                  or {@code null} if it isn't known.
+	 */
+	public void put(Component component, long[] stamp) {
+		// Break the text up before locking, since the notes might need to be
+		// read from disk.
+		Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+		addTerms(counts, component.getName(), NAME_WEIGHT);
+		for (Map.Entry<String, String> property : component.getProperties().entrySet())
+			addTerms(counts, property.getValue(), 1);
+		addTerms(counts, component.getNotes(), 1);
+		
+		Document document = new Document(component.getName(), stamp, counts);
+		synchronized (this) {
+			removeDocument(component.getName());
+			addDocument(document);
+			dirty = true;
+		}
+	}
+	
+	/**
+	 * Removes a component from the index.
+	 * 
+	 * @param name Component name.
+	 */
+	public synchronized void remove(String name) {
+		if (removeDocument(name))
+			dirty = true;
+	}
+	
+	/**
+	 * Removes all the components that aren't part of a collection of
+	 * component names.
+	 * 
+	 * @param names Names of the components that should be kept.
+	 */
+	public synchronized void retainAll(Collection<String> names) {
+		Set<String> keep = new HashSet<String>(names);
+		for (String name : new ArrayList<String>(ids.keySet())) {
+			if (!keep.contains(name))
+				remove(name);
+		}
+	}
+	
+	/**
+	 * Removes everything from the index.
+	 */
+	public synchronized void clear() {
+		documents.clear();
+		ids.clear();
+		postings.clear();
+		sortedTerms = null;
+		totalLength = 0;
+		dirty = true;
+	}
+	
+	/**
+	 * Searches for the components that best match a text. A component matches
+	 * if it contains any of the words of the text, and the last word is also
+	 * matched as the beginning of a word if the text doesn't end there, that
+	 * way the results are useful while the text is still being typed.
+	 * 
+	 * @param  text  Text to search for.
+	 * @param  limit Maximum number of results.
+	 * @return       Names of the matching components, best matches first.
+	 */
+	public synchronized List<String> search(String text, int limit) {
+		List<String> terms = new ArrayList<String>(getTerms(text));
+		if (terms.isEmpty() || ids.isEmpty())
+			return Collections.emptyList();
+		boolean prefix = Character.isLetterOrDigit(text.charAt(text.length() - 1));
+		
+		// Score the documents of each term.
+		final double[] scores = new double[documents.size()];
+		double avgLength = (double)totalLength / ids.size();
+		for (int i = 0; i < terms.size(); i++) {
+			Collection<String> matched;
+			if (prefix && (i == (terms.size() - 1))) {
+				matched = getTermsStartingWith(terms.get(i));
+			} else {
+				matched = Collections.singletonList(terms.get(i));
+			}
+			
+			for (String term : matched) {
+				PostingList list = postings.get(term);
+				if (list == null)
+					continue;
+				
+				double idf = Math.log(1 + ((ids.size() - list.size + 0.5) /
+						(list.size + 0.5)));
+				for (int j = 0; j < list.size; j++) {
+					int id = list.ids[j];
+					int freq = list.freqs[j];
+					double norm = 1 - B + (B * documents.get(id).length / avgLength);
+					scores[id] += idf * ((freq * (K1 + 1)) / (freq + (K1 * norm)));
+				}
+			}
+		}
+		
+		// Rank the matches, keeping only the best ones around.
+		Comparator<Integer> ranking = new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				int order = Double.compare(scores[b], scores[a]);
+				if (order != 0)
+					return order;
+				
+				return documents.get(a).name.compareTo(documents.get(b).name);
+			}
+		};
+		PriorityQueue<Integer> best = new PriorityQueue<Integer>(Math.max(1, limit),
+				Collections.reverseOrder(ranking));
+		for (int id = 0; id < scores.length; id++) {
+			if (scores[id] <= 0)
+				continue;
+			
+			if (best.size() < limit) {
+				best.add(id);
+			} else if ((limit > 0) && (ranking.compare(id, best.peek()) < 0)) {
+				best.poll();
+				best.add(id);
+			}
+		}
+		
+		List<Integer> matches = new ArrayList<Integer>(best);
+		Collections.sort(matches, ranking);
+		List<String> names = new ArrayList<String>(matches.size());
+		for (int id : matches)
+			names.add(documents.get(id).name);
+		
+		return names;
+	}
+	
+	/**
+	 * Checks if the index has changed since it was loaded or saved.
+	 * 
+	 * @return True if the index should be saved.
+	 */
+	public synchronized boolean isDirty() {
+		return dirty;
+	}
+	
+	/**
+	 * Gets the number of components in the index.
+	 * 
+	 * @return Number of indexed components.
+	 */
+	public synchronized int size() {
+		return ids.size();
+	}
+	
+	/**
+	 * Adds a document to the index. There mustn't be another document with the
+	 * same name.
+	 * 
+	 * @param document Document to be added.
+	 */
+	private void addDocument(Document document) {
+		// Documents are numbered in the order they're added, that way the
+		// posting lists are always sorted without any effort.
+		int id = documents.size();
+		documents.add(document);
+		ids.put(document.name, id);
+		totalLength += document.length;
+		
+		for (int i = 0; i < document.terms.length; i++) {
+			PostingList list = postings.get(document.terms[i]);
+			if (list == null) {
+				list = new PostingList(document.terms[i]);
+				postings.put(list.term, list);
+				sortedTerms = null;
+			}
+			
+			// Share the term strings between documents.
+			document.terms[i] = list.term;
+			list.add(id, document.freqs[i]);
+		}
+	}
+	
+	/**
+	 * Removes a document from the index.
+	 * 
+	 * @param  name Component name.
+	 * @return      True if there was a document with that name.
+	 */
+	private boolean removeDocument(String name) {
+		Integer id = ids.remove(name);
+		if (id == null)
+			return false;
+		
+		// Leave a hole behind, so that the other documents keep their numbers.
+		Document document = documents.set(id, null);
+		totalLength -= document.length;
+		for (String term : document.terms) {
+			PostingList list = postings.get(term);
+			list.remove(id);
+			if (list.size == 0) {
+				postings.remove(term);
+				sortedTerms = null;
+			}
+		}
+		
+		// Start over once the holes take up most of the space.
+		if (documents.size() > (ids.size() * 2) + 64) {
+			List<Document> remaining = new ArrayList<Document>(ids.size());
+			for (Document doc : documents) {
+				if (doc != null)
+					remaining.add(doc);
+			}
+			
+			documents.clear();
+			ids.clear();
+			postings.clear();
+			sortedTerms = null;
+			totalLength = 0;
+			for (Document doc : remaining)
+				addDocument(doc);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Gets all the indexed terms that start with a given prefix.
+	 * 
+	 * @param  prefix Term prefix.
+	 * @return        Matching terms.
+	 */
+	private List<String> getTermsStartingWith(String prefix) {
+		// Sort the terms only when they have changed.
+		if (sortedTerms == null) {
+			sortedTerms = postings.keySet().toArray(new String[postings.size()]);
+			Arrays.sort(sortedTerms);
+		}
+		
+		int index = Arrays.binarySearch(sortedTerms, prefix);
+		if (index < 0)
+			index = -(index + 1);
+		
+		List<String> terms = new ArrayList<String>();
+		while ((index < sortedTerms.length) && sortedTerms[index].startsWith(prefix))
+			terms.add(sortedTerms[index++]);
+		
+		return terms;
+	}
+	
+	/**
+	 * Gets the distinct terms of a text in the order they appear.
+	 * 
+	 * @param  text Text to be broken up.
+	 * @return      Terms of the text.
+	 */
+	private static Set<String> getTerms(String text) {
+		Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+		addTerms(counts, text, 1);
+		
+		return new LinkedHashSet<String>(counts.keySet());
+	}
+	
+	/**
+	 * Breaks up a text into case-folded terms (runs of letters and digits)
+	 * and counts them.
+	 * 
+	 * @param counts Map to add the term counts to.
+	 * @param text   Text to be broken up or {@code null}.
+	 * @param weight How much each occurrence of a term counts.
+	 */
+	private static void addTerms(Map<String, Integer> counts, String text, int weight) {
+		if (text == null)
+			return;
+		
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean inTerm = (i < text.length()) && Character.isLetterOrDigit(text.charAt(i));
+			if (inTerm && (start < 0)) {
+				start = i;
+			} else if (!inTerm && (start >= 0)) {
+				String term = text.substring(start, i).toLowerCase(Locale.ROOT);
+				Integer count = counts.get(term);
+				counts.put(term, (count == null) ? weight : count + weight);
+				start = -1;
+			}
+		}
+	}
+	
+	/**
+	 * The terms of a single component.
+	 */
+	private static class Document {
+		private String name;
+		private long[] stamp;
+		private String[] terms;
+		private int[] freqs;
+		private int length;
+		
+		/**
+		 * Creates a document.
+		 * 
+		 * @param name   Component name.
+		 * @param stamp  Change stamp of the component folder or {@code null}.
+		 * @param counts Terms of the component and how many times they appear.
+		 */
+		public Document(String name, long[] stamp, Map<String, Integer> counts) {
+			this.name = name;
+			this.stamp = stamp;
+			this.terms = new String[counts.size()];
+			this.freqs = new int[counts.size()];
+			this.length = 0;
+			
+			int i = 0;
+			for (Map.Entry<String, Integer> count : counts.entrySet()) {
+				terms[i] = count.getKey();
+				freqs[i++] = count.getValue();
+				length += count.getValue();
+			}
+		}
+		
+		/**
+		 * Reads a document from a stream. The lengths in it are checked against
+		 * the size of the file before anything is allocated, so that a corrupt
+		 * file can't make us run out of memory.
+		 * 
+		 * @param  in    Stream to read from.
+		 * @param  limit Size of the file being read.
+		 * @return       The document that was read.
+		 * 
+		 * @throws IOException If something goes wrong while reading.
+		 */
+		public static Document read(DataInputStream in, long limit)
+				throws IOException {
+			String name = in.readUTF();
+			
+			// Change stamp.
+			long[] stamp = null;
+			int stampLength = in.readInt();
+			if (stampLength > (limit / 8))
+				throw new IOException("Invalid stamp length: " + stampLength);
+			if (stampLength >= 0) {
+				stamp = new long[stampLength];
+				for (int i = 0; i < stampLength; i++)
+					stamp[i] = in.readLong();
+			}
+			
+			// Terms. Each of them takes at least 6 bytes.
+			int count = in.readInt();
+			if ((count < 0) || (count > (limit / 6)))
+				throw new IOException("Invalid term count: " + count);
+			Map<String, Integer> counts = new LinkedHashMap<String, Integer>(count * 2);
+			for (int i = 0; i < count; i++)
+				counts.put(in.readUTF(), in.readInt());
+			
+			return new Document(name, stamp, counts);
+		}
+		
+		/**
+		 * Writes the document to a stream.
+		 * 
+		 * @param out Stream to write to.
+		 * 
+		 * @throws IOException If something goes wrong while writing.
+		 */
+		public void write(DataOutputStream out) throws IOException {
+			out.writeUTF(name);
+			
+			// Change stamp.
+			if (stamp == null) {
+				out.writeInt(-1);
+			} else {
+				out.writeInt(stamp.length);
+				for (long time : stamp)
+					out.writeLong(time);
+			}
+			
+			// Terms.
+			out.writeInt(terms.length);
+			for (int i = 0; i < terms.length; i++) {
+				out.writeUTF(terms[i]);
+				out.writeInt(freqs[i]);
+			}
+		}
+	}
+	
+	/**
+	 * A sorted list of the documents that contain a term.
+	 */
+	private static class PostingList {
+		private String term;
+		private int[] ids;
+		private int[] freqs;
+		private int size;
+		
+		/**
+		 * Creates an empty posting list.
+		 * 
+		 * @param term Term of the list.
+		 */
+		public PostingList(String term) {
+			this.term = term;
+			this.ids = new int[2];
+			this.freqs = new int[2];
+			this.size = 0;
+		}
+		
+		/**
+		 * Adds a document to the end of the list.
+		 * 
+		 * @param id   Document number, which must be bigger than the ones
+		 *             already in the list.
+		 * @param freq Number of times the term appears in the document.
+		 */
+		public void add(int id, int freq) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				freqs = Arrays.copyOf(freqs, size * 2);
+			}
+			
+			ids[size] = id;
+			freqs[size++] = freq;
+		}
+		
+		/**
+		 * Removes a document from the list.
+		 * 
+		 * @param id Document number.
+		 */
+		public void remove(int id) {
+			int index = Arrays.binarySearch(ids, 0, size, id);
+			if (index < 0)
+				return;
+			
+			System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+			System.arraycopy(freqs, index + 1, freqs, index, size - index - 1);
+			size--;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.innoveworkshop.partcat.index;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.innoveworkshop.utilities.FileUtilities;
+
+/**
+ * An index of the images directory of a workspace that maps image names
+ * (filenames without the extension) to their files. The directory is only
+ * listed once, the first time the index is used, and after that it's kept
+ * current by telling it about the files that have changed. This is safe to
+ * be used from multiple threads.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ImageIndex {
+	private Path imagesPath;
+	private volatile Map<String, Path> images;
+	
+	/**
+	 * Creates an image index for an images directory.
+	 * 
+	 * @param imagesPath Path to the images directory.
+	 */
+	public ImageIndex(Path imagesPath) {
+		this.imagesPath = imagesPath;
+		this.images = null;
+	}
+	
+	/**
+	 * Gets the image file with a given name.
+	 * 
+	 * @param  name Image name (filename without the extension).
+	 * @return      Path to the image file or {@code null} if there isn't one.
+	 */
+	public Path get(String name) {
+		if (name == null)
+			return null;
+		
+		return getImages().get(name);
+	}
+	
+	/**
+	 * Checks if an image with a given name exists.
+	 * 
+	 * @param  name Image name (filename without the extension).
+	 * @return      True if the image exists.
+	 */
+	public boolean contains(String name) {
+		return get(name) != null;
+	}
+	
+	/**
+	 * Gets all the indexed image files.
+	 * 
+	 * @return Read-only view of the image files.
+	 */
+	public Collection<Path> getPaths() {
+		return Collections.unmodifiableCollection(getImages().values());
+	}
+	
+	/**
+	 * Updates the index after a file in the images directory has been created,
+	 * modified or deleted.
+	 * 
+	 * @param filename Name of the file (with the extension) that has changed.
+	 */
+	public synchronized void refresh(String filename) {
+		Map<String, Path> map = images;
+		if (map == null)
+			return;
+		
+		Path path = imagesPath.resolve(filename);
+		String name = FileUtilities.getFilenameWithoutExt(path);
+		Path current = map.get(name);
+		
+		if (Files.isRegularFile(path)) {
+			// Images with the same name are resolved in filename order.
+			if ((current == null) || (filename.compareTo(
+					current.getFileName().toString()) < 0)) {
+				map.put(name, path);
+			}
+		} else if (path.equals(current)) {
+			// There might be another file with the same name, so let's just
+			// list the directory again the next time around.
+			images = null;
+		}
+	}
+	
+	/**
+	 * Updates the index after a file has been copied or moved into the images
+	 * directory.
+	 * 
+	 * @param path Path to the file that has changed.
+	 */
+	public void refresh(Path path) {
+		if ((path != null) && imagesPath.equals(path.getParent()))
+			refresh(path.getFileName().toString());
+	}
+	
+	/**
+	 * Forgets everything. The directory will be listed again the next time
+	 * the index is used.
+	 */
+	public synchronized void invalidate() {
+		images = null;
+	}
+	
+	/**
+	 * Gets the number of images in the directory.
+	 * 
+	 * @return Number of indexed images.
+	 */
+	public int size() {
+		return getImages().size();
+	}
+	
+	/**
+	 * Gets the image map, listing the images directory if needed.
+	 * 
+	 * @return Map of image names and their files.
+	 */
+	private Map<String, Path> getImages() {
+		Map<String, Path> map = images;
+		if (map != null)
+			return map;
+		
+		synchronized (this) {
+			if (images == null)
+				images = scan();
+			
+			return images;
+		}
+	}
+	
+	/**
+	 * Lists the images directory.
+	 * 
+	 * @return Map of image names and their files.
+	 */
+	private Map<String, Path> scan() {
+		Map<String, Path> map = new ConcurrentHashMap<String, Path>();
+		File[] contents = imagesPath.toFile().listFiles();
+		if (contents == null)
+			return map;
+		
+		for (File file : contents) {
+			if (!file.isFile())
+				continue;
+			
+			// Images with the same name are resolved in filename order.
+			Path path = file.toPath();
+			String name = FileUtilities.getFilenameWithoutExt(path);
+			Path current = map.get(name);
+			if ((current == null) || (file.getName().compareTo(
+					current.getFileName().toString()) < 0)) {
+				map.put(name, path);
+			}
+		}
+		
+		return map;
+	}
+}
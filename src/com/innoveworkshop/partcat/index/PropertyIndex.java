@@ -0,0 +1,588 @@
+package com.innoveworkshop.partcat.index;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.partcat.components.ComponentProperties;
+
+/**
+ * An index of the property values of the components of a workspace, used to
+ * answer parametric queries. Every field (property, name and quantity) has a
+ * hash index of its case-folded values for equality lookups, and the values
+ * that are numbers (engineering notation like "4k7" or "100nF" included) are
+ * also kept in a sorted index for range lookups.
+ * 
+ * The index is built when the workspace is opened and is kept current by
+ * telling it about the components that have changed, which happens on the
+ * event thread, where the components are edited. The values of every field
+ * are copied when a component is indexed, and queries are only answered from
+ * those copies, so they can run on any thread without reading a component
+ * that's being edited. Reading the quantity of every component means reading
+ * a file for each one of them when loading lazily, so quantities are only
+ * indexed the first time a query asks for them. All the sets returned by this
+ * class are copies, so they can be used while the index is being changed on
+ * another thread.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class PropertyIndex {
+	public static final String FIELD_NAME = "name";
+	public static final String FIELD_QUANTITY = "quantity";
+	
+	private static final Pattern NUMBER_PATTERN = Pattern.compile(
+			"([+-]?\\d+(?:\\.\\d+)?)\\s*([pnu\u00b5\u03bcmkKMGR]?)(\\d*)\\s*[a-zA-Z\u03a9\u2126%]*");
+	
+	private Map<String, Map<String, List<Component>>> values;
+	private Map<String, TreeMap<Double, List<Component>>> numbers;
+	private Map<Component, String[]> indexed;
+	private volatile boolean quantitiesIndexed;
+	
+	/**
+	 * Creates an empty property index.
+	 */
+	public PropertyIndex() {
+		values = new HashMap<String, Map<String, List<Component>>>();
+		numbers = new HashMap<String, TreeMap<Double, List<Component>>>();
+		indexed = new IdentityHashMap<Component, String[]>();
+		quantitiesIndexed = false;
+	}
+	
+	/**
+	 * Rebuilds the whole index from a list of components. Quantities will be
+	 * indexed again the next time they're needed.
+	 * 
+	 * @param components All the components of the workspace.
+	 */
+	public synchronized void rebuild(Collection<Component> components) {
+		values.clear();
+		numbers.clear();
+		indexed.clear();
+		quantitiesIndexed = false;
+		
+		for (Component component : components)
+			index(component);
+	}
+	
+	/**
+	 * Adds a component to the index.
+	 * 
+	 * @param component Component to be added.
+	 */
+	public synchronized void add(Component component) {
+		index(component);
+	}
+	
+	/**
+	 * Removes a component from the index.
+	 * 
+	 * @param component Component to be removed.
+	 */
+	public synchronized void remove(Component component) {
+		String[] fields = indexed.remove(component);
+		if (fields == null)
+			return;
+		
+		for (int i = 0; i < fields.length; i += 2) {
+			// Equality index.
+			Map<String, List<Component>> map = values.get(fields[i]);
+			removeFrom(map, foldValue(fields[i + 1]), component);
+			if (map.isEmpty())
+				values.remove(fields[i]);
+			
+			// Range index.
+			Double number = parseNumber(fields[i + 1]);
+			if (number != null) {
+				TreeMap<Double, List<Component>> tree = numbers.get(fields[i]);
+				removeFrom(tree, number, component);
+				if (tree.isEmpty())
+					numbers.remove(fields[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Indexes a component again after its properties or quantity have changed.
+	 * This does nothing if the component isn't in the index.
+	 * 
+	 * @param component Component that has changed.
+	 */
+	public synchronized void update(Component component) {
+		if (!indexed.containsKey(component))
+			return;
+		
+		remove(component);
+		index(component);
+	}
+	
+	/**
+	 * Makes sure that a field can be looked up. Quantities are indexed the
+	 * first time they're needed, which may have to read a file for every
+	 * component, so this shouldn't be called from the event thread.
+	 * 
+	 * @param field Case-folded field name.
+	 */
+	public void prepare(String field) {
+		if (field.equals(FIELD_QUANTITY) && !quantitiesIndexed)
+			indexQuantities();
+	}
+	
+	/**
+	 * Gets the value a field had when a component was indexed. See
+	 * {@link #prepare(String)}.
+	 * 
+	 * @param  component Indexed component.
+	 * @param  field     Case-folded field name. The name and quantity fields
+	 *                   take precedence over properties with the same name.
+	 * @return           Field value or {@code null} if the component doesn't
+	 *                   have it or isn't in the index.
+	 */
+	public synchronized String getValue(Component component, String field) {
+		String[] fields = indexed.get(component);
+		if (fields == null)
+			return null;
+		
+		for (int i = 0; i < fields.length; i += 2) {
+			if (fields[i].equals(field))
+				return fields[i + 1];
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Gets the components that have a field equal to a value. Values are
+	 * compared ignoring case, and numbers are also compared by their value, so
+	 * "10k" is equal to "10000".
+	 * 
+	 * @param  field Case-folded field name.
+	 * @param  value Value to look for.
+	 * @return       Matching components.
+	 */
+	public synchronized Set<Component> getEqual(String field, String value) {
+		List<Component> equal = getEqualList(field, value);
+		List<Component> equalNumber = getEqualNumberList(field, value);
+		
+		Set<Component> matches = createSet(equal.size() + equalNumber.size());
+		matches.addAll(equal);
+		matches.addAll(equalNumber);
+		
+		return matches;
+	}
+	
+	/**
+	 * Counts the components that have a field equal to a value. See
+	 * {@link #getEqual(String, String)}.
+	 * 
+	 * @param  field Case-folded field name.
+	 * @param  value Value to look for.
+	 * @return       Number of matching components (may be a bit over the real
+	 *               number if the same value is written in different ways).
+	 */
+	public synchronized int countEqual(String field, String value) {
+		return getEqualList(field, value).size() +
+				getEqualNumberList(field, value).size();
+	}
+	
+	/**
+	 * Gets the components that have a numeric field within a range.
+	 * 
+	 * @param  field         Case-folded field name.
+	 * @param  low           Lowest value or {@code null} if there isn't one.
+	 * @param  lowInclusive  Is the lowest value part of the range?
+	 * @param  high          Highest value or {@code null} if there isn't one.
+	 * @param  highInclusive Is the highest value part of the range?
+	 * @return               Matching components.
+	 */
+	public synchronized Set<Component> getRange(String field, Double low,
+			boolean lowInclusive, Double high, boolean highInclusive) {
+		NavigableMap<Double, List<Component>> range = getRangeMap(field, low,
+				lowInclusive, high, highInclusive);
+		int count = 0;
+		for (List<Component> list : range.values())
+			count += list.size();
+		
+		Set<Component> matches = createSet(count);
+		for (List<Component> list : range.values())
+			matches.addAll(list);
+		
+		return matches;
+	}
+	
+	/**
+	 * Counts the components that have a numeric field within a range. Since
+	 * this is used to decide which part of a query should be looked up first,
+	 * it stops counting once a limit is reached.
+	 * 
+	 * @param  field         Case-folded field name.
+	 * @param  low           Lowest value or {@code null} if there isn't one.
+	 * @param  lowInclusive  Is the lowest value part of the range?
+	 * @param  high          Highest value or {@code null} if there isn't one.
+	 * @param  highInclusive Is the highest value part of the range?
+	 * @param  limit         Number of components to stop counting at.
+	 * @return               Number of matching components or the limit if
+	 *                       there are more.
+	 */
+	public synchronized int countRange(String field, Double low, boolean lowInclusive,
+			Double high, boolean highInclusive, int limit) {
+		int count = 0;
+		for (List<Component> list : getRangeMap(field, low, lowInclusive, high,
+				highInclusive).values()) {
+			count += list.size();
+			if (count >= limit)
+				return limit;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Gets the number of components in the index.
+	 * 
+	 * @return Number of indexed components.
+	 */
+	public synchronized int size() {
+		return indexed.size();
+	}
+	
+	/**
+	 * Case-folds a field name or value.
+	 * 
+	 * @param  value Field name or value.
+	 * @return       Case-folded and trimmed value.
+	 */
+	public static String foldValue(String value) {
+		return value.trim().toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Parses a number that may be written in engineering notation, with an
+	 * optional unit after it ("4.7k", "4k7", "100nF", "2R2", "5V").
+	 * 
+	 * @param  value Value to be parsed.
+	 * @return       Parsed number or {@code null} if it isn't a number.
+	 */
+	public static Double parseNumber(String value) {
+		if (value == null)
+			return null;
+		
+		Matcher matcher = NUMBER_PATTERN.matcher(value.trim());
+		if (!matcher.matches())
+			return null;
+		
+		// Digits after the prefix are decimals ("4k7").
+		String digits = matcher.group(1);
+		String prefix = matcher.group(2);
+		String decimals = matcher.group(3);
+		if (!decimals.isEmpty()) {
+			if (prefix.isEmpty() || digits.contains("."))
+				return null;
+			digits += "." + decimals;
+		}
+		
+		// Use a decimal to scale the number, that way "4.7k" equals "4700".
+		return new BigDecimal(digits).scaleByPowerOfTen(getExponent(prefix))
+				.doubleValue();
+	}
+	
+	/**
+	 * Gets the power of ten of an engineering notation prefix.
+	 * 
+	 * @param  prefix Prefix character or an empty string.
+	 * @return        Power of ten.
+	 */
+	private static int getExponent(String prefix) {
+		switch (prefix) {
+		case "p":
+			return -12;
+		case "n":
+			return -9;
+		case "u":
+		case "\u00b5":
+		case "\u03bc":
+			return -6;
+		case "m":
+			return -3;
+		case "k":
+		case "K":
+			return 3;
+		case "M":
+			return 6;
+		case "G":
+			return 9;
+		default:
+			return 0;
+		}
+	}
+	
+	/**
+	 * Adds a component to the indexes.
+	 * 
+	 * @param component Component to be indexed.
+	 */
+	private void index(Component component) {
+		if (component.isDeleted() || indexed.containsKey(component))
+			return;
+		
+		String[] fields = getFields(component);
+		if (quantitiesIndexed)
+			fields = addQuantity(fields, String.valueOf(component.getQuantity()));
+		indexed.put(component, fields);
+		addFields(component, fields, 0);
+	}
+	
+	/**
+	 * Adds the quantity of every indexed component to the indexes.
+	 */
+	private void indexQuantities() {
+		// Reading the quantities may have to go to the disk, so it's done
+		// without holding the lock.
+		Map<Component, String[]> components;
+		synchronized (this) {
+			components = new IdentityHashMap<Component, String[]>(indexed);
+		}
+		Map<Component, String> quantities = new IdentityHashMap<Component, String>(
+				components.size());
+		for (Component component : components.keySet())
+			quantities.put(component, String.valueOf(component.getQuantity()));
+		
+		synchronized (this) {
+			if (quantitiesIndexed)
+				return;
+			
+			for (Map.Entry<Component, String[]> entry : indexed.entrySet()) {
+				// Components that were indexed in the meantime are read again.
+				Component component = entry.getKey();
+				String quantity = quantities.get(component);
+				if (components.get(component) != entry.getValue())
+					quantity = String.valueOf(component.getQuantity());
+				
+				String[] fields = addQuantity(entry.getValue(), quantity);
+				entry.setValue(fields);
+				addFields(component, fields, fields.length - 2);
+			}
+			
+			quantitiesIndexed = true;
+		}
+	}
+	
+	/**
+	 * Adds the fields of a component to the indexes.
+	 * 
+	 * @param component Component being indexed.
+	 * @param fields    Pairs of case-folded field names and their values.
+	 * @param start     Index of the first field to be added.
+	 */
+	private void addFields(Component component, String[] fields, int start) {
+		for (int i = start; i < fields.length; i += 2) {
+			// Equality index.
+			Map<String, List<Component>> map = values.get(fields[i]);
+			if (map == null) {
+				map = new HashMap<String, List<Component>>();
+				values.put(fields[i], map);
+			}
+			addTo(map, foldValue(fields[i + 1]), component);
+			
+			// Range index.
+			Double number = parseNumber(fields[i + 1]);
+			if (number != null) {
+				TreeMap<Double, List<Component>> tree = numbers.get(fields[i]);
+				if (tree == null) {
+					tree = new TreeMap<Double, List<Component>>();
+					numbers.put(fields[i], tree);
+				}
+				addTo(tree, number, component);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the fields of a component that are going to be indexed, except for
+	 * the quantity. We have to take note of them, since the component might
+	 * have changed by the time it's removed from the index.
+	 * 
+	 * @param  component Component to get the fields from.
+	 * @return           Pairs of case-folded field names and their values. The
+	 *                   first property wins when their names only differ in
+	 *                   case, and properties named like the name and quantity
+	 *                   fields are left out.
+	 */
+	private static String[] getFields(Component component) {
+		ComponentProperties properties = component.getProperties();
+		String[] fields = new String[(properties.size() + 1) * 2];
+		fields[0] = FIELD_NAME;
+		fields[1] = component.getName();
+		
+		int length = 2;
+		for (Map.Entry<String, String> property : properties.entrySet()) {
+			String field = foldValue(property.getKey());
+			if (!field.equals(FIELD_QUANTITY) &&
+					!containsField(fields, length, field)) {
+				fields[length++] = field;
+				fields[length++] = property.getValue();
+			}
+		}
+		
+		return (length == fields.length) ? fields : Arrays.copyOf(fields, length);
+	}
+	
+	/**
+	 * Adds the quantity to the fields of a component.
+	 * 
+	 * @param  fields   Pairs of case-folded field names and their values.
+	 * @param  quantity Quantity of the component.
+	 * @return          New fields array with the quantity at the end.
+	 */
+	private static String[] addQuantity(String[] fields, String quantity) {
+		String[] withQuantity = Arrays.copyOf(fields, fields.length + 2);
+		withQuantity[fields.length] = FIELD_QUANTITY;
+		withQuantity[fields.length + 1] = quantity;
+		
+		return withQuantity;
+	}
+	
+	/**
+	 * Checks if a field has already been taken note of.
+	 * 
+	 * @param  fields Pairs of case-folded field names and their values.
+	 * @param  length Number of used positions in the array.
+	 * @param  field  Case-folded field name.
+	 * @return        True if the field is already there.
+	 */
+	private static boolean containsField(String[] fields, int length, String field) {
+		for (int i = 0; i < length; i += 2) {
+			if (fields[i].equals(field))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Gets the components that have a field equal to a value, ignoring case.
+	 * 
+	 * @param  field Case-folded field name.
+	 * @param  value Value to look for.
+	 * @return       Matching components.
+	 */
+	private List<Component> getEqualList(String field, String value) {
+		Map<String, List<Component>> map = values.get(field);
+		List<Component> list = (map == null) ? null : map.get(foldValue(value));
+		
+		return (list == null) ? Collections.<Component>emptyList() : list;
+	}
+	
+	/**
+	 * Gets the components that have a numeric field equal to a value.
+	 * 
+	 * @param  field Case-folded field name.
+	 * @param  value Value to look for.
+	 * @return       Matching components or an empty list if the value isn't a
+	 *               number.
+	 */
+	private List<Component> getEqualNumberList(String field, String value) {
+		Double number = parseNumber(value);
+		TreeMap<Double, List<Component>> tree = numbers.get(field);
+		List<Component> list = ((number == null) || (tree == null)) ? null :
+				tree.get(number);
+		
+		return (list == null) ? Collections.<Component>emptyList() : list;
+	}
+	
+	/**
+	 * Gets the part of a range index that's within a range.
+	 * 
+	 * @param  field         Case-folded field name.
+	 * @param  low           Lowest value or {@code null} if there isn't one.
+	 * @param  lowInclusive  Is the lowest value part of the range?
+	 * @param  high          Highest value or {@code null} if there isn't one.
+	 * @param  highInclusive Is the highest value part of the range?
+	 * @return               Values within the range and their components.
+	 */
+	private NavigableMap<Double, List<Component>> getRangeMap(String field, Double low,
+			boolean lowInclusive, Double high, boolean highInclusive) {
+		NavigableMap<Double, List<Component>> tree = numbers.get(field);
+		if (tree == null)
+			return Collections.emptyNavigableMap();
+		
+		if (low != null)
+			tree = tree.tailMap(low, lowInclusive);
+		if (high != null)
+			tree = tree.headMap(high, highInclusive);
+		
+		return tree;
+	}
+	
+	/**
+	 * Adds a component to the list of a value. Components are only ever
+	 * indexed once, so a list is enough and is a lot cheaper to build than a
+	 * set.
+	 * 
+	 * @param map       Map of values and their components.
+	 * @param key       Value.
+	 * @param component Component to be added.
+	 */
+	private static <K> void addTo(Map<K, List<Component>> map, K key,
+			Component component) {
+		List<Component> list = map.get(key);
+		if (list == null) {
+			// Most values (names, quantities) only have a handful of components.
+			list = new ArrayList<Component>(2);
+			map.put(key, list);
+		}
+		
+		list.add(component);
+	}
+	
+	/**
+	 * Removes a component from the list of a value, getting rid of the value if
+	 * it's the last one.
+	 * 
+	 * @param map       Map of values and their components.
+	 * @param key       Value.
+	 * @param component Component to be removed.
+	 */
+	private static <K> void removeFrom(Map<K, List<Component>> map, K key,
+			Component component) {
+		List<Component> list = map.get(key);
+		if (list == null)
+			return;
+		
+		// Components are compared by name, so look for this exact one and put
+		// the last one in its place.
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == component) {
+				list.set(i, list.get(list.size() - 1));
+				list.remove(list.size() - 1);
+				break;
+			}
+		}
+		
+		if (list.isEmpty())
+			map.remove(key);
+	}
+	
+	/**
+	 * Creates an empty set of components.
+	 * 
+	 * @param  capacity Number of components expected to be in the set.
+	 * @return          Empty component set.
+	 */
+	private static Set<Component> createSet(int capacity) {
+		return Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>(
+				capacity));
+	}
+}
@@ -0,0 +1,299 @@
+package com.innoveworkshop.partcat.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.innoveworkshop.partcat.components.Component;
+
+/**
+ * A case-insensitive substring index of the names of the components of a
+ * workspace. Every name is broken up into the sequences of 3 characters
+ * (trigrams) it contains, and each trigram keeps a sorted list of the
+ * components that have it. A substring search only has to intersect the
+ * lists of the trigrams of the searched text and check the few components
+ * that are left, instead of going through every single name.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class TrigramIndex {
+	private List<Component> components;
+	private List<String> names;
+	private Map<Component, Integer> ids;
+	private Map<Long, PostingList> postings;
+	
+	/**
+	 * Creates an empty trigram index.
+	 */
+	public TrigramIndex() {
+		components = new ArrayList<Component>();
+		names = new ArrayList<String>();
+		ids = new IdentityHashMap<Component, Integer>();
+		postings = new HashMap<Long, PostingList>();
+	}
+	
+	/**
+	 * Rebuilds the whole index from a list of components.
+	 * 
+	 * @param components Components to be indexed.
+	 */
+	public synchronized void rebuild(Collection<Component> components) {
+		clear();
+		
+		for (Component component : components)
+			add(component);
+	}
+	
+	/**
+	 * Adds a component to the index.
+	 * 
+	 * @param component Component to be added.
+	 */
+	public synchronized void add(Component component) {
+		if (component.isDeleted() || ids.containsKey(component))
+			return;
+		
+		// Components are numbered in the order they're added, that way the
+		// posting lists are always sorted without any effort.
+		int id = components.size();
+		String name = foldName(component.getName());
+		components.add(component);
+		names.add(name);
+		ids.put(component, id);
+		
+		for (long trigram : getTrigrams(name)) {
+			PostingList list = postings.get(trigram);
+			if (list == null) {
+				list = new PostingList();
+				postings.put(trigram, list);
+			}
+			
+			list.add(id);
+		}
+	}
+	
+	/**
+	 * Removes a component from the index.
+	 * 
+	 * @param component Component to be removed.
+	 */
+	public synchronized void remove(Component component) {
+		Integer id = ids.remove(component);
+		if (id == null)
+			return;
+		
+		// Leave a hole behind, so that the other components keep their numbers.
+		for (long trigram : getTrigrams(names.get(id))) {
+			PostingList list = postings.get(trigram);
+			list.remove(id);
+			if (list.size == 0)
+				postings.remove(trigram);
+		}
+		components.set(id, null);
+		names.set(id, null);
+		
+		// Start over once the holes take up most of the space.
+		if (components.size() > (ids.size() * 2) + 64)
+			rebuild(new ArrayList<Component>(ids.keySet()));
+	}
+	
+	/**
+	 * Removes everything from the index.
+	 */
+	public synchronized void clear() {
+		components.clear();
+		names.clear();
+		ids.clear();
+		postings.clear();
+	}
+	
+	/**
+	 * Finds the components whose names contain a piece of text, ignoring
+	 * case.
+	 * 
+	 * @param  text Text to search for.
+	 * @return      Read-only set of matching components.
+	 */
+	public synchronized Set<Component> search(String text) {
+		String query = foldName(text);
+		Set<Component> matches;
+		
+		// Texts that are too short to have a trigram need a full scan.
+		long[] trigrams = getTrigrams(query);
+		if (trigrams.length == 0) {
+			matches = createSet(ids.size());
+			for (int id = 0; id < names.size(); id++) {
+				String name = names.get(id);
+				if ((name != null) && name.contains(query))
+					matches.add(components.get(id));
+			}
+			
+			return Collections.unmodifiableSet(matches);
+		}
+		
+		// Get the posting lists, starting with the shortest one.
+		PostingList[] lists = new PostingList[trigrams.length];
+		for (int i = 0; i < trigrams.length; i++) {
+			lists[i] = postings.get(trigrams[i]);
+			if (lists[i] == null)
+				return Collections.emptySet();
+		}
+		Arrays.sort(lists, new Comparator<PostingList>() {
+			@Override
+			public int compare(PostingList a, PostingList b) {
+				return Integer.compare(a.size, b.size);
+			}
+		});
+		
+		// Intersect the lists and check if the candidates really contain the
+		// text, since having all of its trigrams isn't enough.
+		int[] positions = new int[lists.length];
+		PostingList shortest = lists[0];
+		matches = createSet(shortest.size);
+		candidates:
+		for (int i = 0; i < shortest.size; i++) {
+			int id = shortest.ids[i];
+			for (int j = 1; j < lists.length; j++) {
+				positions[j] = lists[j].seek(id, positions[j]);
+				if (positions[j] >= lists[j].size)
+					break candidates;
+				if (lists[j].ids[positions[j]] != id)
+					continue candidates;
+			}
+			
+			if (names.get(id).contains(query))
+				matches.add(components.get(id));
+		}
+		
+		return Collections.unmodifiableSet(matches);
+	}
+	
+	/**
+	 * Gets the number of components in the index.
+	 * 
+	 * @return Number of indexed components.
+	 */
+	public synchronized int size() {
+		return ids.size();
+	}
+	
+	/**
+	 * Creates an empty set of components that's big enough to hold a number
+	 * of them without growing.
+	 * 
+	 * @param  capacity Number of components expected at most.
+	 * @return          Empty component set.
+	 */
+	private static Set<Component> createSet(int capacity) {
+		return Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>(capacity));
+	}
+	
+	/**
+	 * Case-folds a name or a search text.
+	 * 
+	 * @param  name Name to be case-folded.
+	 * @return      Case-folded name.
+	 */
+	private static String foldName(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * Gets the distinct trigrams of a case-folded text.
+	 * 
+	 * @param  text Case-folded text.
+	 * @return      Trigrams packed as 3 characters in a number.
+	 */
+	private static long[] getTrigrams(String text) {
+		if (text.length() < 3)
+			return new long[0];
+		
+		long[] trigrams = new long[text.length() - 2];
+		for (int i = 0; i < trigrams.length; i++) {
+			trigrams[i] = ((long)text.charAt(i) << 32) |
+					((long)text.charAt(i + 1) << 16) | text.charAt(i + 2);
+		}
+		
+		// Get rid of the repeated ones.
+		Arrays.sort(trigrams);
+		int count = 0;
+		for (int i = 0; i < trigrams.length; i++) {
+			if ((i == 0) || (trigrams[i] != trigrams[i - 1]))
+				trigrams[count++] = trigrams[i];
+		}
+		
+		return Arrays.copyOf(trigrams, count);
+	}
+	
+	/**
+	 * A sorted list of the components that have a trigram.
+	 */
+	private static class PostingList {
+		private int[] ids;
+		private int size;
+		
+		/**
+		 * Creates an empty posting list.
+		 */
+		public PostingList() {
+			ids = new int[4];
+			size = 0;
+		}
+		
+		/**
+		 * Adds a component to the end of the list.
+		 * 
+		 * @param id Component number, which must be bigger than the ones
+		 *           already in the list.
+		 */
+		public void add(int id) {
+			if (size == ids.length)
+				ids = Arrays.copyOf(ids, size * 2);
+			ids[size++] = id;
+		}
+		
+		/**
+		 * Removes a component from the list.
+		 * 
+		 * @param id Component number.
+		 */
+		public void remove(int id) {
+			int index = Arrays.binarySearch(ids, 0, size, id);
+			if (index < 0)
+				return;
+			
+			System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+			size--;
+		}
+		
+		/**
+		 * Finds the first position at or after a starting point that holds a
+		 * component number that isn't smaller than the one we're looking for.
+		 * 
+		 * @param  id    Component number to look for.
+		 * @param  start Position to start looking from.
+		 * @return       Position of the component number or where it would be.
+		 */
+		public int seek(int id, int start) {
+			// Gallop ahead and then do a binary search in the last stretch.
+			int step = 1;
+			int high = start;
+			while ((high < size) && (ids[high] < id)) {
+				start = high + 1;
+				high += step;
+				step *= 2;
+			}
+			
+			int index = Arrays.binarySearch(ids, start, Math.min(high, size), id);
+			return (index < 0) ? -(index + 1) : index;
+		}
+	}
+}
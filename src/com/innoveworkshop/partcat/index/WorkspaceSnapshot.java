@@ -0,0 +1,574 @@
+package com.innoveworkshop.partcat.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.innoveworkshop.partcat.PartCatConstants;
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.partcat.components.ComponentProperties;
+import com.innoveworkshop.utilities.StringPool;
+
+/**
+ * A persistent snapshot of the parsed contents of every component in a
+ * workspace. This allows us to skip reading and parsing the files of the
+ * components that haven't changed since the last time the workspace was
+ * opened.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class WorkspaceSnapshot {
+	private static final int MAGIC = 0x50434958;  // "PCIX"
+	private static final int VERSION = 3;
+	
+	// Network shares and FAT volumes only store modification times in steps
+	// of up to 2 seconds, so anything changed more recently than this could
+	// still be changed again without its time changing.
+	private static final long MTIME_GRANULARITY_MS = 2000;
+	private static final long UNSETTLED = Long.MIN_VALUE;
+	
+	// Flags of what was loaded when the entry was made.
+	private static final int HAS_QUANTITY = 1;
+	private static final int HAS_NOTES = 2;
+	private static final int HAS_IMAGE = 4;
+	
+	// Files that are stat'ed to check if a component has changed.
+	private static final String[] STAMPED_FILES = {
+		PartCatConstants.MANIFEST_FILE,
+		PartCatConstants.QUANTITY_FILE,
+		PartCatConstants.IMAGE_FILE,
+		PartCatConstants.NOTES_FILE
+	};
+	
+	private Map<String, Entry> entries;
+	private boolean dirty;
+	
+	/**
+	 * Creates an empty snapshot.
+	 */
+	public WorkspaceSnapshot() {
+		entries = new ConcurrentHashMap<String, Entry>();
+		dirty = false;
+	}
+	
+	/**
+	 * Loads a snapshot from a file. If the file doesn't exist, is corrupt, or
+	 * was written by an incompatible version, an empty snapshot is returned,
+	 * which will make the workspace fallback to a full scan.
+	 * 
+	 * @param  path {@link Path} to the snapshot file.
+	 * @return      The loaded snapshot.
+	 */
+	public static WorkspaceSnapshot load(Path path) {
+		return load(path, null);
+	}
+	
+	/**
+	 * Loads a snapshot from a file. If the file doesn't exist, is corrupt, or
+	 * was written by an incompatible version, an empty snapshot is returned,
+	 * which will make the workspace fallback to a full scan.
+	 * 
+	 * @param  path {@link Path} to the snapshot file.
+	 * @param  pool Pool used to share the component property strings or
+	 *              {@code null} if they shouldn't be shared.
+	 * @return      The loaded snapshot.
+	 */
+	public static WorkspaceSnapshot load(Path path, StringPool pool) {
+		WorkspaceSnapshot snapshot = new WorkspaceSnapshot();
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Files.newInputStream(path)))) {
+			// Nothing stored in the file can be larger than the file itself.
+			long limit = Files.size(path);
+			
+			// Check if this is a file we can actually understand.
+			if ((in.readInt() != MAGIC) || (in.readInt() != VERSION))
+				throw new IOException("Unknown workspace index format");
+			
+			// Read the entries.
+			int count = readLength(in, limit);
+			for (int i = 0; i < count; i++) {
+				Entry entry = Entry.read(in, pool, limit);
+				snapshot.entries.put(entry.getName(), entry);
+			}
+		} catch (NoSuchFileException e) {
+			// No index yet. Everything will be scanned.
+			snapshot.entries.clear();
+		} catch (Exception e) {
+			System.err.println("Workspace index at " + path.toString() +
+					" is invalid. Falling back to a full scan.");
+			snapshot.entries.clear();
+		}
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Saves the snapshot to a file. The file is written to a temporary
+	 * location first and then moved over the old one, so that an interrupted
+	 * save won't leave a corrupt index behind.
+	 * 
+	 * @param path {@link Path} to the snapshot file.
+	 * 
+	 * @throws IOException If something goes wrong while writing the file.
+	 */
+	public void save(Path path) throws IOException {
+		Files.createDirectories(path.getParent());
+		Path tmpPath = path.resolveSibling(path.getFileName().toString() + ".tmp");
+		
+		// Write the entries.
+		Collection<Entry> values = entries.values();
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(tmpPath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(values.size());
+			
+			for (Entry entry : values)
+				entry.write(out);
+		}
+		
+		// Replace the old index.
+		try {
+			Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+		
+		dirty = false;
+	}
+	
+	/**
+	 * Gets the change stamp of a component folder. This is composed of the
+	 * modification time of the folder itself and of the modification times
+	 * and sizes of each of its data files. If anything was changed too
+	 * recently for its modification time to be trusted the stamp is marked as
+	 * unsettled, and it won't ever be the same as any other stamp.
+	 * 
+	 * @param  dir Component folder {@link Path}.
+	 * @return     Change stamp. Missing files have a time and size of -1.
+	 */
+	public static long[] stamp(Path dir) {
+		long[] stamp = new long[(STAMPED_FILES.length * 2) + 1];
+		long newest = -1;
+		
+		for (int i = 0; i <= STAMPED_FILES.length; i++) {
+			Path path = (i == 0) ? dir : dir.resolve(STAMPED_FILES[i - 1]);
+			long time = -1;
+			long size = -1;
+			
+			try {
+				BasicFileAttributes attr = Files.readAttributes(path,
+						BasicFileAttributes.class);
+				time = attr.lastModifiedTime().toMillis();
+				size = attr.size();
+			} catch (IOException e) {
+				// Missing files are part of the stamp as well.
+			}
+			
+			// The size of the folder itself doesn't tell us anything.
+			if (i == 0) {
+				stamp[0] = time;
+			} else {
+				stamp[(i * 2) - 1] = time;
+				stamp[i * 2] = size;
+			}
+			newest = Math.max(newest, time);
+		}
+		
+		// Don't trust anything that might still change in the same time step.
+		if (newest > (System.currentTimeMillis() - MTIME_GRANULARITY_MS))
+			stamp[0] = UNSETTLED;
+		
+		return stamp;
+	}
+	
+	/**
+	 * Checks if two change stamps are the same. Unsettled stamps are never the
+	 * same as any other stamp.
+	 * 
+	 * @param  a First change stamp or {@code null} if it isn't known.
+	 * @param  b Second change stamp or {@code null} if it isn't known.
+	 * @return   True if nothing has changed between the two stamps.
+	 */
+	public static boolean isSameStamp(long[] a, long[] b) {
+		if ((a == null) || (b == null) || (a.length == 0) || (a[0] == UNSETTLED))
+			return false;
+		
+		return Arrays.equals(a, b);
+	}
+	
+	/**
+	 * Gets the snapshot entry of a component.
+	 * 
+	 * @param  name Component name.
+	 * @return      Snapshot entry or {@code null} if there isn't one.
+	 */
+	public Entry get(String name) {
+		return entries.get(name);
+	}
+	
+	/**
+	 * Gets the snapshot entry of a component only if it's still current.
+	 * 
+	 * @param  name  Component name.
+	 * @param  stamp Current change stamp of the component folder.
+	 * @return       Snapshot entry or {@code null} if there isn't one or if it
+	 *               is stale.
+	 */
+	public Entry getCurrent(String name, long[] stamp) {
+		Entry entry = entries.get(name);
+		if ((entry == null) || !entry.isCurrent(stamp))
+			return null;
+		
+		return entry;
+	}
+	
+	/**
+	 * Stores the current state of a component in the snapshot.
+	 * 
+	 * @param component {@link Component} to be stored.
+	 * @param stamp     Change stamp taken right before the component was read.
+	 */
+	public void put(Component component, long[] stamp) {
+		entries.put(component.getName(), new Entry(component, stamp));
+		dirty = true;
+	}
+	
+	/**
+	 * Removes a component from the snapshot.
+	 * 
+	 * @param name Component name.
+	 */
+	public void remove(String name) {
+		if (entries.remove(name) != null)
+			dirty = true;
+	}
+	
+	/**
+	 * Removes all the entries that aren't part of a collection of component
+	 * names.
+	 * 
+	 * @param names Names of the components that should be kept.
+	 */
+	public void retainAll(Collection<String> names) {
+		Set<String> keep = new HashSet<String>(names);
+		Iterator<String> iter = entries.keySet().iterator();
+		
+		while (iter.hasNext()) {
+			if (!keep.contains(iter.next())) {
+				iter.remove();
+				dirty = true;
+			}
+		}
+	}
+	
+	/**
+	 * Checks if the snapshot has changed since it was loaded or saved.
+	 * 
+	 * @return True if the snapshot should be saved.
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+	
+	/**
+	 * Gets the number of entries in the snapshot.
+	 * 
+	 * @return Number of entries.
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * A snapshot of a single component.
+	 */
+	public static class Entry {
+		private String name;
+		private int flags;
+		private long[] stamp;
+		private ComponentProperties properties;
+		private int quantity;
+		private String notes;
+		private String imageName;
+		
+		/**
+		 * Creates an empty entry. Used when reading from a file.
+		 * 
+		 * @param pool Pool used to share the property strings.
+		 */
+		private Entry(StringPool pool) {
+			properties = new ComponentProperties(pool);
+		}
+		
+		/**
+		 * Creates an entry from a loaded component.
+		 * 
+		 * @param component {@link Component} to be stored.
+		 * @param stamp     Change stamp of the component folder.
+		 */
+		public Entry(Component component, long[] stamp) {
+			// The component strings are already shared, so no pool is needed.
+			this.name = component.getName();
+			this.stamp = stamp;
+			this.properties = new ComponentProperties(null,
+					component.getProperties());
+			
+			// Only store what has been loaded, we don't want to force a lazy
+			// component to read its files.
+			this.flags = 0;
+			if (component.isQuantityLoaded()) {
+				this.quantity = component.getQuantity();
+				this.flags |= HAS_QUANTITY;
+			}
+			if (component.isNotesLoaded()) {
+				this.notes = component.getNotes();
+				this.flags |= HAS_NOTES;
+			}
+			if (component.isImageLoaded()) {
+				this.imageName = component.getImageDeclaration();
+				this.flags |= HAS_IMAGE;
+			}
+		}
+		
+		/**
+		 * Reads an entry from a stream.
+		 * 
+		 * @param  in    Stream to read from.
+		 * @param  pool  Pool used to share the property strings.
+		 * @param  limit Size of the file being read.
+		 * @return       Read entry.
+		 * 
+		 * @throws IOException If the stream ended prematurely or is corrupt.
+		 */
+		private static Entry read(DataInputStream in, StringPool pool,
+				long limit) throws IOException {
+			Entry entry = new Entry(pool);
+			
+			entry.name = readString(in, limit);
+			entry.flags = in.readUnsignedByte();
+			entry.stamp = new long[in.readUnsignedByte()];
+			for (int i = 0; i < entry.stamp.length; i++)
+				entry.stamp[i] = in.readLong();
+			
+			int count = readLength(in, limit);
+			for (int i = 0; i < count; i++)
+				entry.properties.put(readString(in, limit), readString(in, limit));
+			entry.properties.trimToSize();
+			
+			entry.quantity = in.readInt();
+			entry.notes = readString(in, limit);
+			entry.imageName = readString(in, limit);
+			
+			return entry;
+		}
+		
+		/**
+		 * Writes the entry to a stream.
+		 * 
+		 * @param out Stream to write to.
+		 * 
+		 * @throws IOException If something goes wrong while writing.
+		 */
+		private void write(DataOutputStream out) throws IOException {
+			writeString(out, name);
+			out.writeByte(flags);
+			out.writeByte(stamp.length);
+			for (long time : stamp)
+				out.writeLong(time);
+			
+			out.writeInt(properties.size());
+			for (Map.Entry<String, String> prop : properties.entrySet()) {
+				writeString(out, prop.getKey());
+				writeString(out, prop.getValue());
+			}
+			
+			out.writeInt(quantity);
+			writeString(out, notes);
+			writeString(out, imageName);
+		}
+		
+		/**
+		 * Checks if the entry is still current.
+		 * 
+		 * @param  stamp Current change stamp of the component folder.
+		 * @return       True if nothing has changed since the entry was made.
+		 */
+		public boolean isCurrent(long[] stamp) {
+			return isSameStamp(this.stamp, stamp);
+		}
+		
+		/**
+		 * Gets the change stamp of the component folder when the entry was
+		 * made. This array shouldn't be modified.
+		 * 
+		 * @return Change stamp.
+		 */
+		public long[] getStamp() {
+			return stamp;
+		}
+		
+		/**
+		 * Gets the component name.
+		 * 
+		 * @return Component name.
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Gets the parsed component properties.
+		 * 
+		 * @return Component properties.
+		 */
+		public Map<String, String> getProperties() {
+			return Collections.unmodifiableMap(properties);
+		}
+		
+		/**
+		 * Checks if everything about the component was loaded when the entry
+		 * was made.
+		 * 
+		 * @return True if the entry has all of the component data.
+		 */
+		public boolean isComplete() {
+			return flags == (HAS_QUANTITY | HAS_NOTES | HAS_IMAGE);
+		}
+		
+		/**
+		 * Checks if the quantity was loaded when the entry was made.
+		 * 
+		 * @return True if the entry has the component quantity.
+		 */
+		public boolean hasQuantity() {
+			return (flags & HAS_QUANTITY) != 0;
+		}
+		
+		/**
+		 * Checks if the notes were loaded when the entry was made.
+		 * 
+		 * @return True if the entry has the component notes.
+		 */
+		public boolean hasNotes() {
+			return (flags & HAS_NOTES) != 0;
+		}
+		
+		/**
+		 * Checks if the image declaration was loaded when the entry was made.
+		 * 
+		 * @return True if the entry has the declared image name.
+		 */
+		public boolean hasImageName() {
+			return (flags & HAS_IMAGE) != 0;
+		}
+		
+		/**
+		 * Gets the component quantity.
+		 * 
+		 * @return Component quantity.
+		 */
+		public int getQuantity() {
+			return quantity;
+		}
+		
+		/**
+		 * Gets the component notes.
+		 * 
+		 * @return Component notes or {@code null} if there weren't any.
+		 */
+		public String getNotes() {
+			return notes;
+		}
+		
+		/**
+		 * Gets the image name declared in the component image file.
+		 * 
+		 * @return Image name or {@code null} if there wasn't one declared.
+		 */
+		public String getImageName() {
+			return imageName;
+		}
+	}
+	
+	/**
+	 * Reads a length or a count from a stream, making sure it's sane before
+	 * anything gets allocated from it.
+	 * 
+	 * @param  in    Stream to read from.
+	 * @param  limit Size of the file being read.
+	 * @return       The length.
+	 * 
+	 * @throws IOException If the length is negative or larger than the file.
+	 */
+	private static int readLength(DataInputStream in, long limit)
+			throws IOException {
+		int length = in.readInt();
+		if ((length < 0) || (length > limit))
+			throw new IOException("Invalid length in workspace index: " + length);
+		
+		return length;
+	}
+	
+	/**
+	 * Reads a nullable UTF-8 string from a stream.
+	 * 
+	 * @param  in    Stream to read from.
+	 * @param  limit Size of the file being read.
+	 * @return       The string.
+	 * 
+	 * @throws IOException If the stream ended prematurely or is corrupt.
+	 */
+	private static String readString(DataInputStream in, long limit)
+			throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		if (length > limit)
+			throw new IOException("Invalid length in workspace index: " + length);
+		
+		byte[] data = new byte[length];
+		in.readFully(data);
+		
+		return new String(data, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Writes a nullable UTF-8 string to a stream. Unlike
+	 * {@link DataOutputStream#writeUTF(String)} this isn't limited to 64K.
+	 * 
+	 * @param out Stream to write to.
+	 * @param str String to be written.
+	 * 
+	 * @throws IOException If something goes wrong while writing.
+	 */
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		if (str == null) {
+			out.writeInt(-1);
+			return;
+		}
+		
+		byte[] data = str.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(data.length);
+		out.write(data);
+	}
+}
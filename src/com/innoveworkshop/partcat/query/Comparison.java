@@ -0,0 +1,217 @@
+package com.innoveworkshop.partcat.query;
+
+import java.util.Collection;
+import java.util.Set;
+
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.partcat.index.PropertyIndex;
+
+/**
+ * A query that compares a field of a component (a property, its name or its
+ * quantity) against a value. Values are compared ignoring case, and numbers
+ * (engineering notation included) are compared by their value.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class Comparison extends Query {
+	public enum Operator {
+		EQUAL("="), NOT_EQUAL("!="), LESS("<"), LESS_EQUAL("<="), GREATER(">"),
+		GREATER_EQUAL(">="), BETWEEN("BETWEEN");
+		
+		private String symbol;
+		
+		/**
+		 * Creates an operator.
+		 * 
+		 * @param symbol Symbol used to write the operator.
+		 */
+		Operator(String symbol) {
+			this.symbol = symbol;
+		}
+		
+		/**
+		 * Checks if this operator compares numbers.
+		 * 
+		 * @return True if the operator is a range comparison.
+		 */
+		public boolean isRange() {
+			return (this != EQUAL) && (this != NOT_EQUAL);
+		}
+		
+		@Override
+		public String toString() {
+			return symbol;
+		}
+	}
+	
+	private String field;
+	private Operator operator;
+	private String value;
+	private String foldedValue;
+	private Double low;
+	private boolean lowInclusive;
+	private Double high;
+	private boolean highInclusive;
+	
+	/**
+	 * Creates a comparison of a field against a value.
+	 * 
+	 * @param field    Field name.
+	 * @param operator Comparison operator. Use
+	 *                 {@link #Comparison(String, Double, Double)} for
+	 *                 {@link Operator#BETWEEN}.
+	 * @param value    Value to compare against, which must be a number for
+	 *                 range comparisons.
+	 */
+	public Comparison(String field, Operator operator, String value) {
+		this.field = PropertyIndex.foldValue(field);
+		this.operator = operator;
+		this.value = value;
+		this.foldedValue = PropertyIndex.foldValue(value);
+		this.low = null;
+		this.lowInclusive = false;
+		this.high = null;
+		this.highInclusive = false;
+		
+		// Turn range comparisons into bounds.
+		Double number = PropertyIndex.parseNumber(value);
+		switch (operator) {
+		case LESS:
+		case LESS_EQUAL:
+			high = number;
+			highInclusive = (operator == Operator.LESS_EQUAL);
+			break;
+		case GREATER:
+		case GREATER_EQUAL:
+			low = number;
+			lowInclusive = (operator == Operator.GREATER_EQUAL);
+			break;
+		default:
+			low = number;
+			high = number;
+			lowInclusive = true;
+			highInclusive = true;
+			break;
+		}
+	}
+	
+	/**
+	 * Creates a comparison that checks if a field is within a range (both ends
+	 * included).
+	 * 
+	 * @param field Field name.
+	 * @param low   Lowest value.
+	 * @param high  Highest value.
+	 */
+	public Comparison(String field, Double low, Double high) {
+		this.field = PropertyIndex.foldValue(field);
+		this.operator = Operator.BETWEEN;
+		this.value = null;
+		this.foldedValue = null;
+		this.low = low;
+		this.lowInclusive = true;
+		this.high = high;
+		this.highInclusive = true;
+	}
+	
+	@Override
+	public Set<Component> find(PropertyIndex index, Collection<Component> all) {
+		index.prepare(field);
+		
+		switch (operator) {
+		case EQUAL:
+			return index.getEqual(field, value);
+		case NOT_EQUAL:
+			// Components that don't have the field are also different.
+			Set<Component> equal = index.getEqual(field, value);
+			Set<Component> matches = createSet();
+			for (Component component : all) {
+				if (!component.isDeleted() && !equal.contains(component))
+					matches.add(component);
+			}
+			
+			return matches;
+		default:
+			return index.getRange(field, low, lowInclusive, high, highInclusive);
+		}
+	}
+	
+	@Override
+	public boolean matches(PropertyIndex index, Component component) {
+		index.prepare(field);
+		String str = index.getValue(component, field);
+		
+		switch (operator) {
+		case EQUAL:
+			return isEqual(str);
+		case NOT_EQUAL:
+			return !isEqual(str);
+		default:
+			return isWithinRange(PropertyIndex.parseNumber(str));
+		}
+	}
+	
+	@Override
+	public int estimate(PropertyIndex index, int total, int limit) {
+		index.prepare(field);
+		
+		switch (operator) {
+		case EQUAL:
+			return Math.min(index.countEqual(field, value), limit);
+		case NOT_EQUAL:
+			return Math.min(total, limit);
+		default:
+			return index.countRange(field, low, lowInclusive, high, highInclusive,
+					limit);
+		}
+	}
+	
+	/**
+	 * Checks if a field value is equal to the value we are looking for.
+	 * 
+	 * @param  str Field value or {@code null} if there isn't one.
+	 * @return     True if the values are equal.
+	 */
+	private boolean isEqual(String str) {
+		if (str == null)
+			return false;
+		if (PropertyIndex.foldValue(str).equals(foldedValue))
+			return true;
+		
+		Double number = PropertyIndex.parseNumber(str);
+		return (number != null) && number.equals(low);
+	}
+	
+	/**
+	 * Checks if a field value is within the range we are looking for.
+	 * 
+	 * @param  number Field value or {@code null} if it isn't a number.
+	 * @return        True if the value is within range.
+	 */
+	private boolean isWithinRange(Double number) {
+		if (number == null)
+			return false;
+		
+		if (low != null) {
+			int cmp = number.compareTo(low);
+			if ((cmp < 0) || ((cmp == 0) && !lowInclusive))
+				return false;
+		}
+		
+		if (high != null) {
+			int cmp = number.compareTo(high);
+			if ((cmp > 0) || ((cmp == 0) && !highInclusive))
+				return false;
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public String toString() {
+		if (operator == Operator.BETWEEN)
+			return field + " BETWEEN " + low + " AND " + high;
+		
+		return field + " " + operator + " " + value;
+	}
+}
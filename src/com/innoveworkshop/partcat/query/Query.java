@@ -0,0 +1,262 @@
+package com.innoveworkshop.partcat.query;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.partcat.exceptions.QueryParseException;
+import com.innoveworkshop.partcat.index.PropertyIndex;
+
+/**
+ * A parametric component query, like
+ * {@code Category=Resistors AND Package=0603 AND Value BETWEEN 1k AND 10k}.
+ * Queries are trees of comparisons joined by AND, OR and NOT, which are
+ * answered with the help of a {@link PropertyIndex}.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public abstract class Query {
+	/**
+	 * Parses a query.
+	 * 
+	 * @param  text Query text.
+	 * @return      Parsed query.
+	 * 
+	 * @throws QueryParseException If the query isn't valid.
+	 */
+	public static Query parse(String text) throws QueryParseException {
+		return new QueryParser(text).parse();
+	}
+	
+	/**
+	 * Finds the components that match the query.
+	 * 
+	 * @param  index Property index of the workspace.
+	 * @param  all   All the components of the workspace.
+	 * @return       Matching components.
+	 */
+	public abstract Set<Component> find(PropertyIndex index, Collection<Component> all);
+	
+	/**
+	 * Checks if a single component matches the query, using the field values
+	 * that were taken note of by the index.
+	 * 
+	 * @param  index     Property index of the workspace.
+	 * @param  component Component to be checked.
+	 * @return           True if the component matches.
+	 */
+	public abstract boolean matches(PropertyIndex index, Component component);
+	
+	/**
+	 * Estimates how many components the query will find, which is used to
+	 * decide which part of a query should be looked up first.
+	 * 
+	 * @param  index Property index of the workspace.
+	 * @param  total Number of components in the workspace.
+	 * @param  limit Estimate to stop counting at, since anything over it won't
+	 *               be used anyway.
+	 * @return       Estimated number of matching components.
+	 */
+	public abstract int estimate(PropertyIndex index, int total, int limit);
+	
+	/**
+	 * Creates an empty set of components.
+	 * 
+	 * @return Empty component set.
+	 */
+	protected static Set<Component> createSet() {
+		return Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+	}
+	
+	/**
+	 * Query that's only matched when all of its parts are matched.
+	 */
+	static class And extends Query {
+		private List<Query> parts;
+		
+		/**
+		 * Creates an AND query.
+		 * 
+		 * @param parts Parts that must all be matched.
+		 */
+		public And(List<Query> parts) {
+			this.parts = parts;
+		}
+		
+		@Override
+		public Set<Component> find(PropertyIndex index, Collection<Component> all) {
+			// Look up the most selective part and check the others one by one.
+			Query driver = null;
+			int best = Integer.MAX_VALUE;
+			for (Query part : parts) {
+				int estimate = part.estimate(index, all.size(), best);
+				if (estimate < best) {
+					driver = part;
+					best = estimate;
+				}
+			}
+			
+			Set<Component> matches = createSet();
+			for (Component component : driver.find(index, all)) {
+				if (matchesExcept(index, component, driver))
+					matches.add(component);
+			}
+			
+			return matches;
+		}
+		
+		@Override
+		public boolean matches(PropertyIndex index, Component component) {
+			return matchesExcept(index, component, null);
+		}
+		
+		@Override
+		public int estimate(PropertyIndex index, int total, int limit) {
+			int best = limit;
+			for (Query part : parts)
+				best = Math.min(best, part.estimate(index, total, best));
+			
+			return best;
+		}
+		
+		/**
+		 * Checks if a component matches all the parts except one.
+		 * 
+		 * @param  index     Property index of the workspace.
+		 * @param  component Component to be checked.
+		 * @param  skip      Part that's already known to match.
+		 * @return           True if the component matches.
+		 */
+		private boolean matchesExcept(PropertyIndex index, Component component,
+				Query skip) {
+			for (Query part : parts) {
+				if ((part != skip) && !part.matches(index, component))
+					return false;
+			}
+			
+			return true;
+		}
+		
+		@Override
+		public String toString() {
+			return join(parts, " AND ");
+		}
+	}
+	
+	/**
+	 * Query that's matched when any of its parts is matched.
+	 */
+	static class Or extends Query {
+		private List<Query> parts;
+		
+		/**
+		 * Creates an OR query.
+		 * 
+		 * @param parts Parts of which at least one must be matched.
+		 */
+		public Or(List<Query> parts) {
+			this.parts = parts;
+		}
+		
+		@Override
+		public Set<Component> find(PropertyIndex index, Collection<Component> all) {
+			Set<Component> matches = createSet();
+			for (Query part : parts)
+				matches.addAll(part.find(index, all));
+			
+			return matches;
+		}
+		
+		@Override
+		public boolean matches(PropertyIndex index, Component component) {
+			for (Query part : parts) {
+				if (part.matches(index, component))
+					return true;
+			}
+			
+			return false;
+		}
+		
+		@Override
+		public int estimate(PropertyIndex index, int total, int limit) {
+			int sum = 0;
+			for (Query part : parts) {
+				sum += part.estimate(index, total, limit - sum);
+				if (sum >= limit)
+					return limit;
+			}
+			
+			return Math.min(sum, total);
+		}
+		
+		@Override
+		public String toString() {
+			return join(parts, " OR ");
+		}
+	}
+	
+	/**
+	 * Query that's matched when its part isn't.
+	 */
+	static class Not extends Query {
+		private Query part;
+		
+		/**
+		 * Creates a NOT query.
+		 * 
+		 * @param part Part that must not be matched.
+		 */
+		public Not(Query part) {
+			this.part = part;
+		}
+		
+		@Override
+		public Set<Component> find(PropertyIndex index, Collection<Component> all) {
+			Set<Component> excluded = part.find(index, all);
+			Set<Component> matches = createSet();
+			for (Component component : all) {
+				if (!component.isDeleted() && !excluded.contains(component))
+					matches.add(component);
+			}
+			
+			return matches;
+		}
+		
+		@Override
+		public boolean matches(PropertyIndex index, Component component) {
+			return !part.matches(index, component);
+		}
+		
+		@Override
+		public int estimate(PropertyIndex index, int total, int limit) {
+			// Checking every component is the only way to answer this.
+			return Math.min(total, limit);
+		}
+		
+		@Override
+		public String toString() {
+			return "NOT (" + part + ")";
+		}
+	}
+	
+	/**
+	 * Joins the parts of a query.
+	 * 
+	 * @param  parts     Parts of the query.
+	 * @param  separator Operator between the parts.
+	 * @return           Parts surrounded by parentheses and joined.
+	 */
+	private static String join(List<Query> parts, String separator) {
+		StringBuilder str = new StringBuilder();
+		for (Query part : parts) {
+			if (str.length() > 0)
+				str.append(separator);
+			str.append('(').append(part).append(')');
+		}
+		
+		return str.toString();
+	}
+}
@@ -0,0 +1,352 @@
+package com.innoveworkshop.partcat.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.innoveworkshop.partcat.exceptions.QueryParseException;
+import com.innoveworkshop.partcat.index.PropertyIndex;
+
+/**
+ * A parser of component queries. The grammar is:
+ * 
+ * <pre>
+ * query      := and { OR and }
+ * and        := term { AND term }
+ * term       := NOT term | ( query ) | comparison
+ * comparison := field operator value | field BETWEEN value AND value
+ * operator   := = | == | : | != | &lt;&gt; | &lt; | &lt;= | &gt; | &gt;=
+ * </pre>
+ * 
+ * Keywords are case-insensitive, and fields and values that have spaces or
+ * special characters in them can be quoted with single or double quotes.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class QueryParser {
+	private String text;
+	private int position;
+	private Token token;
+	
+	/**
+	 * Creates a parser for a query.
+	 * 
+	 * @param text Query text.
+	 */
+	public QueryParser(String text) {
+		this.text = text;
+		this.position = 0;
+		this.token = null;
+	}
+	
+	/**
+	 * Parses the whole query.
+	 * 
+	 * @return Parsed query.
+	 * 
+	 * @throws QueryParseException If the query isn't valid.
+	 */
+	public Query parse() throws QueryParseException {
+		position = 0;
+		next();
+		
+		if (token.type == TokenType.END)
+			throw new QueryParseException("The query is empty", token.position);
+		
+		Query query = parseOr();
+		if (token.type != TokenType.END)
+			throw unexpected("AND, OR or the end of the query");
+		
+		return query;
+	}
+	
+	/**
+	 * Parses parts joined by OR.
+	 * 
+	 * @return Parsed query.
+	 * 
+	 * @throws QueryParseException If the query isn't valid.
+	 */
+	private Query parseOr() throws QueryParseException {
+		List<Query> parts = new ArrayList<Query>();
+		parts.add(parseAnd());
+		while (isKeyword("OR")) {
+			next();
+			parts.add(parseAnd());
+		}
+		
+		return (parts.size() == 1) ? parts.get(0) : new Query.Or(parts);
+	}
+	
+	/**
+	 * Parses parts joined by AND.
+	 * 
+	 * @return Parsed query.
+	 * 
+	 * @throws QueryParseException If the query isn't valid.
+	 */
+	private Query parseAnd() throws QueryParseException {
+		List<Query> parts = new ArrayList<Query>();
+		parts.add(parseTerm());
+		while (isKeyword("AND")) {
+			next();
+			parts.add(parseTerm());
+		}
+		
+		return (parts.size() == 1) ? parts.get(0) : new Query.And(parts);
+	}
+	
+	/**
+	 * Parses a negation, a parenthesized query or a comparison.
+	 * 
+	 * @return Parsed query.
+	 * 
+	 * @throws QueryParseException If the query isn't valid.
+	 */
+	private Query parseTerm() throws QueryParseException {
+		if (isKeyword("NOT")) {
+			next();
+			return new Query.Not(parseTerm());
+		}
+		
+		if (token.type == TokenType.OPEN) {
+			next();
+			Query query = parseOr();
+			if (token.type != TokenType.CLOSE)
+				throw unexpected("a closing parenthesis");
+			next();
+			
+			return query;
+		}
+		
+		return parseComparison();
+	}
+	
+	/**
+	 * Parses a comparison.
+	 * 
+	 * @return Parsed query.
+	 * 
+	 * @throws QueryParseException If the query isn't valid.
+	 */
+	private Query parseComparison() throws QueryParseException {
+		String field = parseValue("a property name");
+		
+		// Range.
+		if (isKeyword("BETWEEN")) {
+			next();
+			Double low = parseNumber();
+			if (!isKeyword("AND"))
+				throw unexpected("AND");
+			next();
+			Double high = parseNumber();
+			
+			return new Comparison(field, low, high);
+		}
+		
+		// Comparison operator.
+		if (token.type != TokenType.OPERATOR)
+			throw unexpected("a comparison operator");
+		Comparison.Operator operator = getOperator(token.text);
+		next();
+		
+		if (operator.isRange()) {
+			int start = token.position;
+			String value = parseValue("a number");
+			if (PropertyIndex.parseNumber(value) == null)
+				throw new QueryParseException("'" + value + "' isn't a number", start);
+			
+			return new Comparison(field, operator, value);
+		}
+		
+		return new Comparison(field, operator, parseValue("a value"));
+	}
+	
+	/**
+	 * Parses a field name or value.
+	 * 
+	 * @param  expected Description of what was expected, used when reporting
+	 *                  errors.
+	 * @return          Field name or value.
+	 * 
+	 * @throws QueryParseException If there isn't a field name or value.
+	 */
+	private String parseValue(String expected) throws QueryParseException {
+		if ((token.type != TokenType.WORD) && (token.type != TokenType.STRING))
+			throw unexpected(expected);
+		
+		String value = token.text;
+		next();
+		
+		return value;
+	}
+	
+	/**
+	 * Parses a number.
+	 * 
+	 * @return Parsed number.
+	 * 
+	 * @throws QueryParseException If there isn't a number.
+	 */
+	private Double parseNumber() throws QueryParseException {
+		int start = token.position;
+		String value = parseValue("a number");
+		Double number = PropertyIndex.parseNumber(value);
+		if (number == null)
+			throw new QueryParseException("'" + value + "' isn't a number", start);
+		
+		return number;
+	}
+	
+	/**
+	 * Checks if the current token is a keyword.
+	 * 
+	 * @param  keyword Keyword in upper case.
+	 * @return         True if the current token is the keyword.
+	 */
+	private boolean isKeyword(String keyword) {
+		return (token.type == TokenType.WORD) && token.text.equalsIgnoreCase(keyword);
+	}
+	
+	/**
+	 * Creates an exception for an unexpected token.
+	 * 
+	 * @param  expected Description of what was expected.
+	 * @return          Exception to be thrown.
+	 */
+	private QueryParseException unexpected(String expected) {
+		if (token.type == TokenType.END) {
+			return new QueryParseException("Expected " + expected +
+					" but the query ended", token.position);
+		}
+		
+		return new QueryParseException("Expected " + expected + " but found '" +
+				token.text + "'", token.position);
+	}
+	
+	/**
+	 * Gets the comparison operator for a symbol.
+	 * 
+	 * @param  symbol Operator symbol.
+	 * @return        Comparison operator.
+	 * 
+	 * @throws QueryParseException If the symbol isn't an operator.
+	 */
+	private Comparison.Operator getOperator(String symbol) throws QueryParseException {
+		switch (symbol) {
+		case "=":
+		case "==":
+		case ":":
+			return Comparison.Operator.EQUAL;
+		case "!=":
+		case "<>":
+			return Comparison.Operator.NOT_EQUAL;
+		case "<":
+			return Comparison.Operator.LESS;
+		case "<=":
+			return Comparison.Operator.LESS_EQUAL;
+		case ">":
+			return Comparison.Operator.GREATER;
+		case ">=":
+			return Comparison.Operator.GREATER_EQUAL;
+		default:
+			throw new QueryParseException("'" + symbol + "' isn't a valid operator",
+					token.position);
+		}
+	}
+	
+	/**
+	 * Reads the next token from the query.
+	 * 
+	 * @throws QueryParseException If a quoted string isn't closed.
+	 */
+	private void next() throws QueryParseException {
+		// Skip the whitespace.
+		while ((position < text.length()) &&
+				Character.isWhitespace(text.charAt(position))) {
+			position++;
+		}
+		
+		int start = position;
+		if (position >= text.length()) {
+			token = new Token(TokenType.END, "", start);
+			return;
+		}
+		
+		char c = text.charAt(position);
+		if (c == '(') {
+			position++;
+			token = new Token(TokenType.OPEN, "(", start);
+		} else if (c == ')') {
+			position++;
+			token = new Token(TokenType.CLOSE, ")", start);
+		} else if ((c == '"') || (c == '\'')) {
+			// Quoted string.
+			int end = text.indexOf(c, position + 1);
+			if (end < 0)
+				throw new QueryParseException("Unclosed quote", start);
+			
+			position = end + 1;
+			token = new Token(TokenType.STRING, text.substring(start + 1, end), start);
+		} else if (isOperatorChar(c)) {
+			while ((position < text.length()) && isOperatorChar(text.charAt(position)))
+				position++;
+			token = new Token(TokenType.OPERATOR, text.substring(start, position),
+					start);
+		} else {
+			// Bare word.
+			while ((position < text.length()) && isWordChar(text.charAt(position)))
+				position++;
+			token = new Token(TokenType.WORD, text.substring(start, position), start);
+		}
+	}
+	
+	/**
+	 * Checks if a character is part of a comparison operator.
+	 * 
+	 * @param  c Character to be checked.
+	 * @return   True if the character is part of an operator.
+	 */
+	private static boolean isOperatorChar(char c) {
+		return (c == '=') || (c == '!') || (c == '<') || (c == '>') || (c == ':');
+	}
+	
+	/**
+	 * Checks if a character can be part of a bare word.
+	 * 
+	 * @param  c Character to be checked.
+	 * @return   True if the character can be part of a word.
+	 */
+	private static boolean isWordChar(char c) {
+		return !Character.isWhitespace(c) && !isOperatorChar(c) && (c != '(') &&
+				(c != ')') && (c != '"') && (c != '\'');
+	}
+	
+	/**
+	 * Types of tokens in a query.
+	 */
+	private enum TokenType {
+		WORD, STRING, OPERATOR, OPEN, CLOSE, END
+	}
+	
+	/**
+	 * A token of a query.
+	 */
+	private static class Token {
+		private TokenType type;
+		private String text;
+		private int position;
+		
+		/**
+		 * Creates a token.
+		 * 
+		 * @param type     Type of the token.
+		 * @param text     Text of the token (without quotes).
+		 * @param position Position of the token in the query.
+		 */
+		public Token(TokenType type, String text, int position) {
+			this.type = type;
+			this.text = text;
+			this.position = position;
+		}
+	}
+}
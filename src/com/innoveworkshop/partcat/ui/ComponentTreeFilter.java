@@ -0,0 +1,132 @@
+package com.innoveworkshop.partcat.ui;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.tree.TreePath;
+
+import com.innoveworkshop.partcat.PartCatConstants;
+import com.innoveworkshop.partcat.PartCatWorkspace;
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.partcat.query.Query;
+
+/**
+ * A filter to be applied to the component tree. Finding the components that
+ * match it is the slow part, which can be done on any thread, and the result
+ * is then handed to the {@link ComponentTreeModel} on the event thread. The
+ * filtering itself is answered by the name index of the workspace, full text
+ * searches by its full text index and parametric queries by its property
+ * index.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ComponentTreeFilter {
+	private static final int BY_NAME = 0;
+	private static final int BY_QUERY = 1;
+	private static final int BY_SEARCH = 2;
+	private PartCatWorkspace workspace;
+	private int type;
+	private String text;
+	private Query query;
+	private Set<Component> matches;
+	private List<Component> results;
+	
+	/**
+	 * Creates a component tree filter.
+	 * 
+	 * @param workspace Workspace to be filtered.
+	 * @param type      Type of the filter.
+	 * @param text      Text to filter by.
+	 * @param query     Query to filter by.
+	 */
+	private ComponentTreeFilter(PartCatWorkspace workspace, int type, String text,
+			Query query) {
+		this.workspace = workspace;
+		this.type = type;
+		this.text = text;
+		this.query = query;
+		this.matches = null;
+		this.results = null;
+	}
+	
+	/**
+	 * Creates a filter for the component names.
+	 * 
+	 * @param  workspace Workspace to be filtered.
+	 * @param  filter    Text to look for in the names. An empty filter shows
+	 *                   every component.
+	 * @return           Component tree filter.
+	 */
+	public static ComponentTreeFilter byName(PartCatWorkspace workspace,
+			String filter) {
+		return new ComponentTreeFilter(workspace, BY_NAME, filter, null);
+	}
+	
+	/**
+	 * Creates a filter for the components that match a parametric query.
+	 * 
+	 * @param  workspace Workspace to be filtered.
+	 * @param  query     Query to be matched or {@code null} to show every
+	 *                   component.
+	 * @return           Component tree filter.
+	 */
+	public static ComponentTreeFilter byQuery(PartCatWorkspace workspace,
+			Query query) {
+		return new ComponentTreeFilter(workspace, BY_QUERY, null, query);
+	}
+	
+	/**
+	 * Creates a filter that shows the results of a full text search, best
+	 * matches first. An empty search shows every component.
+	 * 
+	 * @param  workspace Workspace to be searched.
+	 * @param  text      Text to search for.
+	 * @return           Component tree filter.
+	 */
+	public static ComponentTreeFilter bySearch(PartCatWorkspace workspace,
+			String text) {
+		return new ComponentTreeFilter(workspace, BY_SEARCH, text, null);
+	}
+	
+	/**
+	 * Finds the components that match the filter. If the thread gets
+	 * interrupted while doing it the result should be thrown away.
+	 * 
+	 * @return True if the filtering wasn't interrupted.
+	 */
+	public boolean run() {
+		switch (type) {
+		case BY_QUERY:
+			if (query != null)
+				matches = workspace.queryComponents(query);
+			break;
+		case BY_SEARCH:
+			if (!text.trim().isEmpty()) {
+				results = workspace.searchComponents(text,
+						PartCatConstants.MAX_SEARCH_RESULTS);
+			}
+			break;
+		default:
+			if (!text.isEmpty())
+				matches = workspace.getComponentsByName(text);
+			break;
+		}
+		
+		return !Thread.currentThread().isInterrupted();
+	}
+	
+	/**
+	 * Shows the components that matched the filter in the component tree.
+	 * This should be called from the event thread after {@link #run()}.
+	 * 
+	 * @param  model Model of the component tree.
+	 * @return       Paths of the categories and sub-categories that were
+	 *               inserted, parents before their children.
+	 */
+	public List<TreePath> apply(ComponentTreeModel model) {
+		if (results != null)
+			return model.showResults(results);
+		
+		return model.showMatches(matches);
+	}
+}
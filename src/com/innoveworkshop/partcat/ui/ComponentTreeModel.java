@@ -0,0 +1,793 @@
+package com.innoveworkshop.partcat.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.partcat.components.ComponentCategory;
+import com.innoveworkshop.partcat.index.CategoryIndex;
+import com.innoveworkshop.partcat.watcher.WorkspaceChangeEvent;
+
+/**
+ * The model of the component tree. The tree is answered from the category
+ * index of the workspace and the components that match the current filter,
+ * so there's no tree of nodes to be built: categories and sub-categories are
+ * represented by their canonical {@link ComponentCategory} objects and only
+ * the components that the tree view actually asks for get a
+ * {@link ComponentTreeNode}, which is kept for as long as they are shown.
+ * 
+ * The model holds on to the children that the tree view has seen for each
+ * category. Whenever the filter or the workspace changes they are compared
+ * against the index and events are fired only for the children that were
+ * inserted or removed, so the expanded nodes and the selection are kept and
+ * the tree view only has to deal with what has changed. Once most of a
+ * category has changed (a filter being typed in or cleared) the tree view is
+ * told to start over on it instead, since it handles each inserted or removed
+ * node on its own.
+ * 
+ * This model reads the category index, so it should only be used from the
+ * event thread.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ComponentTreeModel implements TreeModel {
+	private static final int MIN_STRUCTURE_CHANGE = 32;
+	private CategoryIndex index;
+	private Object root;
+	private Branch rootBranch;
+	private Map<Object, Branch> branches;
+	private Map<Component, Branch> located;
+	private Set<Component> matches;
+	private List<Component> results;
+	private EventListenerList listeners;
+	
+	/**
+	 * Creates a component tree model showing every component in the index.
+	 * 
+	 * @param index Category index of the workspace.
+	 */
+	public ComponentTreeModel(CategoryIndex index) {
+		this.index = index;
+		root = "Components";
+		rootBranch = new Branch(root, null);
+		branches = new IdentityHashMap<Object, Branch>();
+		located = new IdentityHashMap<Component, Branch>();
+		matches = null;
+		results = null;
+		listeners = new EventListenerList();
+		
+		sync();
+	}
+	
+	/**
+	 * Shows the components of the index that match a filter in their
+	 * categories.
+	 * 
+	 * @param  matches Components to be shown or {@code null} to show all of
+	 *                 them.
+	 * @return         Paths of the categories and sub-categories that were
+	 *                 inserted, parents before their children.
+	 */
+	public List<TreePath> showMatches(Set<Component> matches) {
+		results = null;
+		this.matches = null;
+		if (matches != null) {
+			this.matches = Collections.newSetFromMap(
+					new IdentityHashMap<Component, Boolean>(matches.size()));
+			this.matches.addAll(matches);
+		}
+		
+		return sync();
+	}
+	
+	/**
+	 * Shows a ranked list of components, best matches first, without any
+	 * categories.
+	 * 
+	 * @param  results Components to be shown.
+	 * @return         Paths of the categories that were inserted, which is
+	 *                 always empty in this case.
+	 */
+	public List<TreePath> showResults(List<Component> results) {
+		matches = null;
+		this.results = new ArrayList<Component>(results);
+		
+		return sync();
+	}
+	
+	/**
+	 * Brings the tree up to date with the category index, keeping the current
+	 * filter.
+	 * 
+	 * @return Paths of the categories and sub-categories that were inserted,
+	 *         parents before their children.
+	 */
+	public List<TreePath> refresh() {
+		return sync();
+	}
+	
+	/**
+	 * Brings the tree up to date after a batch of components changed in the
+	 * workspace, keeping the current filter. Reloaded components take over the
+	 * nodes of the ones they replace, so the selection is kept as long as they
+	 * stay in the same category, and they keep matching the filter until it's
+	 * applied again. Added components only show up when there's no filter,
+	 * since only the filter knows if they match it.
+	 * 
+	 * @param  event Changes that were applied to the workspace.
+	 * @return       Paths of the categories and sub-categories that were
+	 *               inserted, parents before their children.
+	 */
+	public List<TreePath> applyChanges(WorkspaceChangeEvent event) {
+		// Forget about the removed components.
+		for (Component component : event.getRemoved()) {
+			if (matches != null)
+				matches.remove(component);
+		}
+		
+		// Put the reloaded components in place of the old ones.
+		for (Component component : event.getReplaced()) {
+			Component replacement = event.getReplacement(component);
+			if ((matches != null) && matches.remove(component))
+				matches.add(replacement);
+			if (results != null) {
+				for (int i = 0; i < results.size(); i++) {
+					if (results.get(i) == component)
+						results.set(i, replacement);
+				}
+			}
+			
+			Branch branch = located.get(component);
+			if (branch != null)
+				branch.replace(component, replacement);
+		}
+		
+		// Moves, additions and removals are dealt with like any other change.
+		return sync();
+	}
+	
+	/**
+	 * Gets the path to the node of a component.
+	 * 
+	 * @param  component Component to look for.
+	 * @return           Path to the component node or {@code null} if the
+	 *                   component isn't in the tree.
+	 */
+	public TreePath getPath(Component component) {
+		Branch branch = located.get(component);
+		if (branch == null)
+			return null;
+		
+		return branch.getPath().pathByAddingChild(branch.getNode(component));
+	}
+	
+	/**
+	 * Gets the paths of all the category and sub-category nodes in the tree.
+	 * 
+	 * @return Category paths, parents before their children.
+	 */
+	public List<TreePath> getCategoryPaths() {
+		List<TreePath> paths = new ArrayList<TreePath>();
+		addCategoryPaths(rootBranch, paths);
+		
+		return paths;
+	}
+	
+	/**
+	 * Gets the root of the tree.
+	 * 
+	 * @return Root object.
+	 */
+	@Override
+	public Object getRoot() {
+		return root;
+	}
+	
+	/**
+	 * Gets a child of a node.
+	 * 
+	 * @param  parent Parent node.
+	 * @param  index  Index of the child.
+	 * @return        Child node.
+	 */
+	@Override
+	public Object getChild(Object parent, int index) {
+		Branch branch = getBranch(parent);
+		if (branch == null)
+			return null;
+		
+		return branch.getChild(index);
+	}
+	
+	/**
+	 * Gets the number of children of a node.
+	 * 
+	 * @param  parent Parent node.
+	 * @return        Number of children.
+	 */
+	@Override
+	public int getChildCount(Object parent) {
+		Branch branch = getBranch(parent);
+		if (branch == null)
+			return 0;
+		
+		return branch.children.size();
+	}
+	
+	/**
+	 * Checks if a node is a leaf. Only components are leaves, since empty
+	 * categories aren't shown.
+	 * 
+	 * @param  node Node to be checked.
+	 * @return      True if the node is a component.
+	 */
+	@Override
+	public boolean isLeaf(Object node) {
+		return node instanceof ComponentTreeNode;
+	}
+	
+	/**
+	 * Gets the index of a child of a node.
+	 * 
+	 * @param  parent Parent node.
+	 * @param  child  Child node.
+	 * @return        Index of the child or -1 if it isn't a child of the
+	 *                parent.
+	 */
+	@Override
+	public int getIndexOfChild(Object parent, Object child) {
+		Branch branch = getBranch(parent);
+		if ((branch == null) || (child == null))
+			return -1;
+		
+		return branch.indexOf(child);
+	}
+	
+	/**
+	 * The tree isn't editable, so this does nothing.
+	 * 
+	 * @param path     Path to the node that was edited.
+	 * @param newValue New value of the node.
+	 */
+	@Override
+	public void valueForPathChanged(TreePath path, Object newValue) {
+	}
+	
+	/**
+	 * Adds a listener to be notified of the changes to the tree.
+	 * 
+	 * @param listener Listener to be added.
+	 */
+	@Override
+	public void addTreeModelListener(TreeModelListener listener) {
+		listeners.add(TreeModelListener.class, listener);
+	}
+	
+	/**
+	 * Removes a listener that was notified of the changes to the tree.
+	 * 
+	 * @param listener Listener to be removed.
+	 */
+	@Override
+	public void removeTreeModelListener(TreeModelListener listener) {
+		listeners.remove(TreeModelListener.class, listener);
+	}
+	
+	/**
+	 * Compares what the tree is showing against what it should be showing and
+	 * fires the events for the differences.
+	 * 
+	 * @return Paths of the categories and sub-categories that were inserted,
+	 *         parents before their children.
+	 */
+	private List<TreePath> sync() {
+		List<TreePath> inserted = new ArrayList<TreePath>();
+		Map<Object, List<Object>> wanted = new IdentityHashMap<Object, List<Object>>();
+		List<Object> top = new ArrayList<Object>();
+		
+		if (results != null) {
+			// Ranked results that are still in the workspace.
+			Set<Component> seen = Collections.newSetFromMap(
+					new IdentityHashMap<Component, Boolean>());
+			for (Component component : results) {
+				if (isWanted(component) && index.contains(component) &&
+						seen.add(component)) {
+					top.add(component);
+				}
+			}
+		} else {
+			// Categories with sub-categories first and then their components.
+			for (ComponentCategory category : index.getCategories()) {
+				List<Object> children = new ArrayList<Object>();
+				
+				for (ComponentCategory subCategory : category.getSubCategories()) {
+					List<Object> subChildren = new ArrayList<Object>();
+					addWanted(subChildren, index.getComponents(category, subCategory));
+					
+					if (!subChildren.isEmpty()) {
+						children.add(subCategory);
+						wanted.put(subCategory, subChildren);
+					}
+				}
+				addWanted(children, index.getComponents(category, null));
+				
+				if (!children.isEmpty()) {
+					top.add(category);
+					wanted.put(category, children);
+				}
+			}
+		}
+		
+		update(rootBranch, top, wanted, inserted);
+		return inserted;
+	}
+	
+	/**
+	 * Updates the children of a branch and of the branches under it.
+	 * 
+	 * @param branch   Branch to be updated.
+	 * @param children Children the branch should have.
+	 * @param wanted   Children each category and sub-category should have.
+	 * @param inserted List to add the paths of the inserted categories to.
+	 */
+	private void update(Branch branch, List<Object> children,
+			Map<Object, List<Object>> wanted, List<TreePath> inserted) {
+		Set<Object> current = identitySet(branch.children);
+		Set<Object> kept = identitySet(children);
+		kept.retainAll(current);
+		
+		// Start over if most of the children have changed.
+		int removedCount = branch.children.size() - kept.size();
+		int insertedCount = children.size() - kept.size();
+		int changes = removedCount + insertedCount;
+		if (((changes >= MIN_STRUCTURE_CHANGE) && (changes > kept.size())) ||
+				!isSameOrder(branch.children, children, kept)) {
+			replaceChildren(branch, children, wanted, inserted);
+			return;
+		}
+		
+		if (removedCount > 0)
+			removeChildren(branch, kept, removedCount);
+		if (insertedCount > 0)
+			insertChildren(branch, children, kept, insertedCount, wanted, inserted);
+		
+		// Now that this level is settled we can go down to the next one.
+		for (Object child : children) {
+			if ((child instanceof ComponentCategory) && kept.contains(child))
+				update(branches.get(child), wanted.get(child), wanted, inserted);
+		}
+	}
+	
+	/**
+	 * Checks if the children that are being kept are in the same order in the
+	 * old and new lists, which isn't the case when a component was renamed or
+	 * the search results were ranked differently.
+	 * 
+	 * @param  current  Current children.
+	 * @param  children New children.
+	 * @param  kept     Children in both lists.
+	 * @return          True if the kept children are in the same order.
+	 */
+	private static boolean isSameOrder(List<Object> current, List<Object> children,
+			Set<Object> kept) {
+		int index = 0;
+		for (Object child : current) {
+			if (!kept.contains(child))
+				continue;
+			
+			// Look for the next kept child in the new list.
+			while (!kept.contains(children.get(index)))
+				index++;
+			if (children.get(index++) != child)
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Removes the children of a branch that are no longer wanted.
+	 * 
+	 * @param branch Parent branch.
+	 * @param kept   Children to be kept.
+	 * @param count  Number of children to be removed.
+	 */
+	private void removeChildren(Branch branch, Set<Object> kept, int count) {
+		List<Object> children = new ArrayList<Object>(kept.size());
+		int[] indices = new int[count];
+		Object[] removed = new Object[count];
+		int removedCount = 0;
+		
+		for (int i = 0; i < branch.children.size(); i++) {
+			Object child = branch.children.get(i);
+			if (kept.contains(child)) {
+				children.add(child);
+			} else {
+				indices[removedCount] = i;
+				removed[removedCount++] = forget(branch, child);
+			}
+		}
+		
+		branch.setChildren(children);
+		fireTreeNodesRemoved(branch.getPath(), indices, removed);
+	}
+	
+	/**
+	 * Inserts the new children of a branch in between the kept ones.
+	 * 
+	 * @param branch   Parent branch.
+	 * @param children Children the branch should have.
+	 * @param kept     Children that were already there.
+	 * @param count    Number of children to be inserted.
+	 * @param wanted   Children each category and sub-category should have.
+	 * @param inserted List to add the paths of the inserted categories to.
+	 */
+	private void insertChildren(Branch branch, List<Object> children,
+			Set<Object> kept, int count, Map<Object, List<Object>> wanted,
+			List<TreePath> inserted) {
+		int[] indices = new int[count];
+		Object[] added = new Object[count];
+		int addedCount = 0;
+		
+		branch.setChildren(children);
+		for (int i = 0; i < children.size(); i++) {
+			Object child = children.get(i);
+			if (!kept.contains(child)) {
+				indices[addedCount] = i;
+				added[addedCount++] = adopt(branch, child, wanted, inserted);
+			}
+		}
+		
+		fireTreeNodesInserted(branch.getPath(), indices, added);
+	}
+	
+	/**
+	 * Replaces all the children of a branch.
+	 * 
+	 * @param branch   Parent branch.
+	 * @param children Children the branch should have.
+	 * @param wanted   Children each category and sub-category should have.
+	 * @param inserted List to add the paths of the inserted categories to.
+	 */
+	private void replaceChildren(Branch branch, List<Object> children,
+			Map<Object, List<Object>> wanted, List<TreePath> inserted) {
+		for (Object child : branch.children)
+			forget(branch, child);
+		
+		branch.setChildren(children);
+		for (Object child : children)
+			adopt(branch, child, wanted, inserted);
+		
+		fireTreeStructureChanged(branch.getPath());
+	}
+	
+	/**
+	 * Registers a child that was added to a branch.
+	 * 
+	 * @param  branch   Parent branch.
+	 * @param  child    Component or category that was added.
+	 * @param  wanted   Children each category and sub-category should have.
+	 * @param  inserted List to add the paths of the inserted categories to.
+	 * @return          Node of the child.
+	 */
+	private Object adopt(Branch branch, Object child,
+			Map<Object, List<Object>> wanted, List<TreePath> inserted) {
+		if (child instanceof Component) {
+			located.put((Component)child, branch);
+			return branch.getNode((Component)child);
+		}
+		
+		// Categories come in with all their children.
+		Branch category = new Branch(child, branch);
+		branches.put(child, category);
+		inserted.add(category.getPath());
+		
+		category.setChildren(wanted.get(child));
+		for (Object grandchild : category.children)
+			adopt(category, grandchild, wanted, inserted);
+		
+		return child;
+	}
+	
+	/**
+	 * Forgets about a child that was removed from a branch. A component may
+	 * have already been moved to another branch, so it's only forgotten if
+	 * it's still in this one.
+	 * 
+	 * @param  branch Parent branch.
+	 * @param  child  Component or category that was removed.
+	 * @return        Node of the child.
+	 */
+	private Object forget(Branch branch, Object child) {
+		if (child instanceof Component) {
+			Component component = (Component)child;
+			located.remove(component, branch);
+			
+			ComponentTreeNode node = branch.nodes.remove(component);
+			return (node != null) ? node : new ComponentTreeNode(component);
+		}
+		
+		Branch category = branches.remove(child);
+		for (Object grandchild : category.children)
+			forget(category, grandchild);
+		
+		return child;
+	}
+	
+	/**
+	 * Adds the components of a list that should be shown to the children of a
+	 * category.
+	 * 
+	 * @param children   Children of the category.
+	 * @param components Sorted components of the category.
+	 */
+	private void addWanted(List<Object> children, List<Component> components) {
+		for (Component component : components) {
+			if (isWanted(component))
+				children.add(component);
+		}
+	}
+	
+	/**
+	 * Checks if a component should be shown.
+	 * 
+	 * @param  component Component to be checked.
+	 * @return           True if it matches the filter and hasn't been deleted.
+	 */
+	private boolean isWanted(Component component) {
+		if (component.isDeleted())
+			return false;
+		
+		return (matches == null) || matches.contains(component);
+	}
+	
+	/**
+	 * Gets the branch of a node.
+	 * 
+	 * @param  node Tree node.
+	 * @return      Branch of the node or {@code null} if it's a component.
+	 */
+	private Branch getBranch(Object node) {
+		if (node == root)
+			return rootBranch;
+		
+		return branches.get(node);
+	}
+	
+	/**
+	 * Adds the paths of the categories under a branch to a list.
+	 * 
+	 * @param branch Parent branch.
+	 * @param paths  List to add the paths to.
+	 */
+	private void addCategoryPaths(Branch branch, List<TreePath> paths) {
+		for (Object child : branch.children) {
+			if (child instanceof ComponentCategory) {
+				Branch category = branches.get(child);
+				paths.add(category.getPath());
+				addCategoryPaths(category, paths);
+			}
+		}
+	}
+	
+	/**
+	 * Creates a set of objects compared by identity.
+	 * 
+	 * @param  objects Objects to be put in the set.
+	 * @return         Identity set of the objects.
+	 */
+	private static Set<Object> identitySet(List<Object> objects) {
+		Set<Object> set = Collections.newSetFromMap(
+				new IdentityHashMap<Object, Boolean>(objects.size()));
+		set.addAll(objects);
+		
+		return set;
+	}
+	
+	/**
+	 * Notifies the listeners that nodes were inserted.
+	 * 
+	 * @param path     Path to the parent node.
+	 * @param indices  Indices of the inserted nodes.
+	 * @param children Inserted nodes.
+	 */
+	private void fireTreeNodesInserted(TreePath path, int[] indices, Object[] children) {
+		TreeModelEvent event = new TreeModelEvent(this, path, indices, children);
+		Object[] list = listeners.getListenerList();
+		
+		for (int i = list.length - 2; i >= 0; i -= 2) {
+			if (list[i] == TreeModelListener.class)
+				((TreeModelListener)list[i + 1]).treeNodesInserted(event);
+		}
+	}
+	
+	/**
+	 * Notifies the listeners that nodes have changed.
+	 * 
+	 * @param path     Path to the parent node.
+	 * @param indices  Indices of the changed nodes.
+	 * @param children Changed nodes.
+	 */
+	private void fireTreeNodesChanged(TreePath path, int[] indices, Object[] children) {
+		TreeModelEvent event = new TreeModelEvent(this, path, indices, children);
+		Object[] list = listeners.getListenerList();
+		
+		for (int i = list.length - 2; i >= 0; i -= 2) {
+			if (list[i] == TreeModelListener.class)
+				((TreeModelListener)list[i + 1]).treeNodesChanged(event);
+		}
+	}
+	
+	/**
+	 * Notifies the listeners that nodes were removed.
+	 * 
+	 * @param path     Path to the parent node.
+	 * @param indices  Indices the removed nodes had.
+	 * @param children Removed nodes.
+	 */
+	private void fireTreeNodesRemoved(TreePath path, int[] indices, Object[] children) {
+		TreeModelEvent event = new TreeModelEvent(this, path, indices, children);
+		Object[] list = listeners.getListenerList();
+		
+		for (int i = list.length - 2; i >= 0; i -= 2) {
+			if (list[i] == TreeModelListener.class)
+				((TreeModelListener)list[i + 1]).treeNodesRemoved(event);
+		}
+	}
+	
+	/**
+	 * Notifies the listeners that everything under a node has changed.
+	 * 
+	 * @param path Path to the node.
+	 */
+	private void fireTreeStructureChanged(TreePath path) {
+		TreeModelEvent event = new TreeModelEvent(this, path);
+		Object[] list = listeners.getListenerList();
+		
+		for (int i = list.length - 2; i >= 0; i -= 2) {
+			if (list[i] == TreeModelListener.class)
+				((TreeModelListener)list[i + 1]).treeStructureChanged(event);
+		}
+	}
+	
+	/**
+	 * The children that the tree view has seen for the root or a category.
+	 */
+	private class Branch {
+		private Object object;
+		private Branch parent;
+		private List<Object> children;
+		private Map<Object, Integer> positions;
+		private Map<Component, ComponentTreeNode> nodes;
+		
+		/**
+		 * Creates an empty branch.
+		 * 
+		 * @param object Root or category object of the branch.
+		 * @param parent Parent branch or {@code null} if this is the root.
+		 */
+		public Branch(Object object, Branch parent) {
+			this.object = object;
+			this.parent = parent;
+			this.children = Collections.emptyList();
+			this.positions = null;
+			this.nodes = new IdentityHashMap<Component, ComponentTreeNode>();
+		}
+		
+		/**
+		 * Sets the children of the branch.
+		 * 
+		 * @param children Components and categories in order.
+		 */
+		public void setChildren(List<Object> children) {
+			this.children = children;
+			this.positions = null;
+		}
+		
+		/**
+		 * Gets a child node.
+		 * 
+		 * @param  index Index of the child.
+		 * @return       Category or component node.
+		 */
+		public Object getChild(int index) {
+			Object child = children.get(index);
+			if (child instanceof Component)
+				return getNode((Component)child);
+			
+			return child;
+		}
+		
+		/**
+		 * Gets the index of a child node.
+		 * 
+		 * @param  child Category or component node.
+		 * @return       Index of the child or -1 if it isn't in this branch.
+		 */
+		public int indexOf(Object child) {
+			// Component nodes stand for their components.
+			if (child instanceof ComponentTreeNode) {
+				Component component = ((ComponentTreeNode)child).getComponent();
+				if (nodes.get(component) != child)
+					return -1;
+				child = component;
+			}
+			
+			// Positions are only worked out when someone asks for them.
+			if (positions == null) {
+				positions = new IdentityHashMap<Object, Integer>(children.size());
+				for (int i = 0; i < children.size(); i++)
+					positions.put(children.get(i), i);
+			}
+			
+			Integer index = positions.get(child);
+			return (index == null) ? -1 : index;
+		}
+		
+		/**
+		 * Gets the node of a component in this branch, creating it the first
+		 * time it's asked for.
+		 * 
+		 * @param  component Component in this branch.
+		 * @return           Component node.
+		 */
+		public ComponentTreeNode getNode(Component component) {
+			ComponentTreeNode node = nodes.get(component);
+			if (node == null) {
+				node = new ComponentTreeNode(component);
+				nodes.put(component, node);
+			}
+			
+			return node;
+		}
+		
+		/**
+		 * Puts a component in place of another one in this branch, handing it
+		 * the node of the old one.
+		 * 
+		 * @param component   Component in this branch.
+		 * @param replacement Component to take its place.
+		 */
+		public void replace(Component component, Component replacement) {
+			int index = indexOf(component);
+			if (index < 0)
+				return;
+			
+			children.set(index, replacement);
+			positions = null;
+			located.remove(component);
+			located.put(replacement, this);
+			
+			// Only nodes that the tree view has seen have to be told about it.
+			ComponentTreeNode node = nodes.remove(component);
+			if (node != null) {
+				node.setComponent(replacement);
+				nodes.put(replacement, node);
+				fireTreeNodesChanged(getPath(), new int[] { index },
+						new Object[] { node });
+			}
+		}
+		
+		/**
+		 * Gets the path to this branch.
+		 * 
+		 * @return Tree path.
+		 */
+		public TreePath getPath() {
+			if (parent == null)
+				return new TreePath(object);
+			
+			return parent.getPath().pathByAddingChild(object);
+		}
+	}
+}
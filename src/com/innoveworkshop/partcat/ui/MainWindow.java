@@ -1,6 +1,7 @@
 package com.innoveworkshop.partcat.ui;
 
 import java.awt.Color;
+import java.awt.EventQueue;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -8,15 +9,21 @@ import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.ListIterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.prefs.Preferences;
 
+import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComboBox;
 import javax.swing.JFormattedTextField;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -41,6 +48,7 @@ import javax.swing.SpinnerNumberModel;
 import javax.swing.SpringLayout;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 import javax.swing.UIManager.LookAndFeelInfo;
 import javax.swing.event.ChangeEvent;
@@ -51,22 +59,28 @@ import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.text.DefaultFormatter;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
-import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 
 import com.innoveworkshop.partcat.PartCatConstants;
 import com.innoveworkshop.partcat.PartCatWorkspace;
 import com.innoveworkshop.partcat.components.Component;
-import com.innoveworkshop.partcat.components.ComponentCategory;
+import com.innoveworkshop.partcat.components.ComponentImage;
+import com.innoveworkshop.partcat.components.ComponentPrefetcher;
 import com.innoveworkshop.partcat.components.ComponentProperties;
+import com.innoveworkshop.partcat.exceptions.QueryParseException;
+import com.innoveworkshop.partcat.images.ImageLoadListener;
+import com.innoveworkshop.partcat.images.ImageLoader;
+import com.innoveworkshop.partcat.query.Query;
 import com.innoveworkshop.partcat.resources.ApplicationResources;
 import com.innoveworkshop.partcat.ui.dialog.AboutDialog;
 import com.innoveworkshop.partcat.ui.menu.ComponentMousePopupListener;
 import com.innoveworkshop.partcat.ui.menu.DatasheetPopupListener;
 import com.innoveworkshop.partcat.ui.menu.ImageMousePopupListener;
 import com.innoveworkshop.partcat.ui.menu.PropertiesMousePopupListener;
+import com.innoveworkshop.partcat.watcher.WorkspaceChangeEvent;
+import com.innoveworkshop.partcat.watcher.WorkspaceChangeListener;
+import com.innoveworkshop.partcat.watcher.WorkspaceWatcher;
 
 /**
  * Our main window class.
@@ -74,10 +88,22 @@ import com.innoveworkshop.partcat.ui.menu.PropertiesMousePopupListener;
  * @author Nathan Campos <nathan@innoveworkshop.com>
  */
 public class MainWindow {
+	private static final int FILTER_MODE_FULL_TEXT = 1;
+	private static final int FILTER_MODE_QUERY = 2;
+	
 	private ApplicationResources res;
 	private Preferences prefs;
 	private boolean unsavedChanges;
 	private boolean ignoreUnsaved;
+	private boolean updatingTree;
+	private boolean askingToReload;
+	private WorkspaceWatcher watcher;
+	private ImageLoader imageLoader;
+	private ComponentPrefetcher prefetcher;
+	private ExecutorService filterExecutor;
+	private Future<?> pendingFilter;
+	private long filterGeneration;
+	private Timer filterTimer;
 	
 	public MainWindowActions action;
 	public PartCatWorkspace workspace;
@@ -89,6 +115,7 @@ public class MainWindow {
 	public JMenu mnWidgetStyle;
 	public JTree treeComponents;
 	public JTextField txtFilter;
+	public JComboBox<String> cmbFilterMode;
 	public JLabel lblImage;
 	public JTextField txtName;
 	public JSpinner spnQuantity;
@@ -113,8 +140,29 @@ public class MainWindow {
 	 */
 	public MainWindow() {
 		this.ignoreUnsaved = false;
+		this.updatingTree = false;
+		this.askingToReload = false;
+		this.watcher = null;
 		this.currentComponent = null;
 		this.action = new MainWindowActions(this);
+		this.imageLoader = new ImageLoader(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				EventQueue.invokeLater(command);
+			}
+		});
+		this.prefetcher = new ComponentPrefetcher(PartCatConstants.DEFAULT_PREFETCH_COUNT);
+		this.filterExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "PartCat-Filter");
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		});
+		this.pendingFilter = null;
+		this.filterGeneration = 0;
 		
 		// Set the look and feel to be more native looking.
 		setSystemNativeLook();
@@ -136,6 +184,8 @@ public class MainWindow {
 		this();
 		this.res = res;
 		this.prefs = prefs;
+		prefetcher.setCount(prefs.getInt(PartCatConstants.PREFETCH_COUNT_KEY,
+				PartCatConstants.DEFAULT_PREFETCH_COUNT));
 		
 		// Set the application icon and restore window position and sizing.
 		frmPartcat.setIconImages(this.res.getApplicationIcons());
@@ -200,94 +250,145 @@ public class MainWindow {
 		if (node instanceof ComponentTreeNode) {
 			// Node is a component.
 			setCurrentComponent(((ComponentTreeNode)node).getComponent());
+			prefetchSiblings(event.getPath());
 		} else {
 			// Nope, not a component, so clear out.
+			prefetcher.cancel();
 			clearComponentView();
 		}
 	}
 	
+	/**
+	 * Prefetches the components that come right after a selected one, since
+	 * they're the most likely to be selected next.
+	 * 
+	 * @param path Path to the selected component node.
+	 */
+	private void prefetchSiblings(TreePath path) {
+		TreeModel model = treeComponents.getModel();
+		ComponentTreeNode node = (ComponentTreeNode)path.getLastPathComponent();
+		Object parent = path.getParentPath().getLastPathComponent();
+		
+		// Go through the nodes that come after the selected one.
+		List<Component> upcoming = new ArrayList<Component>();
+		int count = model.getChildCount(parent);
+		for (int i = model.getIndexOfChild(parent, node) + 1; (i > 0) &&
+				(i < count) && (upcoming.size() < prefetcher.getCount()); i++) {
+			Object sibling = model.getChild(parent, i);
+			if (sibling instanceof ComponentTreeNode)
+				upcoming.add(((ComponentTreeNode)sibling).getComponent());
+		}
+		
+		prefetcher.prefetch(node.getComponent(), upcoming, lblImage.getSize());
+	}
+	
+	/**
+	 * Gets the prefetcher of the components, mostly to check its hit rate.
+	 * 
+	 * @return Component prefetcher.
+	 */
+	public ComponentPrefetcher getPrefetcher() {
+		return prefetcher;
+	}
+	
 	/**
 	 * Populates the tree view applying an optional filtering {@link String}.
+	 * This is done right away, superseding any filtering that's still being
+	 * done in the background.
 	 * 
 	 * @param filter A filtering string to be applied when populating.
 	 */
 	public void populateComponentsTree(String filter) {
-		// Create the tree root node.
-		DefaultMutableTreeNode root = new DefaultMutableTreeNode("Components");
-		
-		// Go through the categories and adds them to the tree.
-		ListIterator<ComponentCategory> iterCategories = workspace.getComponentCategories().listIterator();
-		while (iterCategories.hasNext()) {
-			ComponentCategory cat = iterCategories.next();
-			DefaultMutableTreeNode catNode = new DefaultMutableTreeNode(cat.getName());
-			ArrayList<Component> components = workspace.getComponentsByCategories(cat);
-			ListIterator<Component> iterComponents = components.listIterator();
-			
-			// Create sub category nodes.
-			ListIterator<ComponentCategory> iterSub = cat.getSubCategoriesIterator();
-			ArrayList<DefaultMutableTreeNode> subNodes = new ArrayList<DefaultMutableTreeNode>();
-			while (iterSub.hasNext()) {
-				ComponentCategory subCategory = iterSub.next();
-				subNodes.add(new DefaultMutableTreeNode(subCategory.getName()));
-			}
-			
-			// Create a list with the components that aren't inside a sub category.
-			ArrayList<ComponentTreeNode> nonSubTreeNodes = new ArrayList<ComponentTreeNode>();
-
-			// Go through components adding them to the tree.
-			while (iterComponents.hasNext()) {
-				Component comp = iterComponents.next();
-				
-				// Check if we should apply any filtering.
-				if (!filter.isEmpty()) {
-					if (!comp.getName().toLowerCase().contains(filter.toLowerCase()))
-						continue;
-				}
-				
-				// Check if the component has been deleted before adding it.
-				if (!comp.isDeleted()) {
-					if (comp.hasSubCategory()) {
-						// Component is inside of a sub category.
-						ListIterator<DefaultMutableTreeNode> iterSubNodes = subNodes.listIterator();
-						while (iterSubNodes.hasNext()) {
-							DefaultMutableTreeNode subNode = iterSubNodes.next();
-							String nodeName = (String)(subNode.getUserObject());
-							
-							if (nodeName != null) {
-								if (nodeName.equals(comp.getSubCategory().getName())) {
-									subNode.add(new ComponentTreeNode(comp));
-									break;
-								}
-							}
-						}
-					} else {
-						// Component is just inside the category.
-						nonSubTreeNodes.add(new ComponentTreeNode(comp));
-					}
-				}
-			}
-			
-			// Add the sub category nodes.
-			ListIterator<DefaultMutableTreeNode> iterSubNodes = subNodes.listIterator();
-			while (iterSubNodes.hasNext()) {
-				DefaultMutableTreeNode subNode = iterSubNodes.next();
-				if (!subNode.isLeaf())
-					catNode.add(subNode);
+		cancelTreeFiltering();
+		int mode = cmbFilterMode.getSelectedIndex();
+		ComponentTreeFilter treeFilter = createTreeFilter(workspace, mode, filter,
+				parseFilterQuery(mode, filter));
+		
+		treeFilter.run();
+		showFilteredTree(treeFilter);
+	}
+	
+	/**
+	 * Creates the filter of the component tree according to the filtering mode.
+	 * 
+	 * @param  workspace Workspace to be filtered.
+	 * @param  mode      Filtering mode selected in the filter box.
+	 * @param  filter    Text of the filter box.
+	 * @param  query     Parsed query when in query mode.
+	 * @return           Component tree filter.
+	 */
+	private static ComponentTreeFilter createTreeFilter(PartCatWorkspace workspace,
+			int mode, String filter, Query query) {
+		switch (mode) {
+		case FILTER_MODE_FULL_TEXT:
+			return ComponentTreeFilter.bySearch(workspace, filter);
+		case FILTER_MODE_QUERY:
+			return ComponentTreeFilter.byQuery(workspace, query);
+		default:
+			return ComponentTreeFilter.byName(workspace, filter);
+		}
+	}
+	
+	/**
+	 * Parses the text of the filter box as a parametric query when in query
+	 * mode. Invalid queries are pointed out in the filter box itself.
+	 * 
+	 * @param  mode   Filtering mode selected in the filter box.
+	 * @param  filter Text of the filter box.
+	 * @return        Parsed query or {@code null} if we aren't in query mode,
+	 *                or the query is empty or invalid.
+	 */
+	private Query parseFilterQuery(int mode, String filter) {
+		Query query = null;
+		String error = null;
+		
+		if ((mode == FILTER_MODE_QUERY) && !filter.trim().isEmpty()) {
+			try {
+				query = Query.parse(filter);
+			} catch (QueryParseException e) {
+				error = e.getMessage();
 			}
-			
-			// Now add all those non-sub category components, this way they are below the sub folders.
-			ListIterator<ComponentTreeNode> iterNonSub = nonSubTreeNodes.listIterator();
-			while (iterNonSub.hasNext())
-				catNode.add(iterNonSub.next());
-			
-			// Add the category to the tree if it has any items.
-			if (!catNode.isLeaf())
-				root.add(catNode);
 		}
 		
-		// Set the tree model and expand all the nodes.
-		treeComponents.setModel(new DefaultTreeModel(root));
-		expandAllTreeNodes();
+		// Show the error in the filter box.
+		txtFilter.setForeground((error == null) ?
+				UIManager.getColor("TextField.foreground") : Color.RED);
+		txtFilter.setToolTipText((error == null) ? "Filter" : error);
+		
+		return query;
+	}
+	
+	/**
+	 * Shows the components that matched a filter in the component tree. If we
+	 * are already showing a tree only the differences are applied to it,
+	 * keeping the expanded nodes and the selection, and only the new
+	 * categories get expanded.
+	 * 
+	 * @param treeFilter Filter that has already been run.
+	 */
+	private void showFilteredTree(ComponentTreeFilter treeFilter) {
+		TreeModel model = treeComponents.getModel();
+		if (!(model instanceof ComponentTreeModel)) {
+			ComponentTreeModel treeModel = new ComponentTreeModel(
+					workspace.getCategoryIndex());
+			treeFilter.apply(treeModel);
+			treeComponents.setModel(treeModel);
+			expandAllTreeNodes();
+			return;
+		}
+		
+		// Apply the filter without triggering any selection side effects.
+		boolean updating = updatingTree;
+		updatingTree = true;
+		try {
+			expandTreeNodes(treeFilter.apply((ComponentTreeModel)model));
+			
+			// Replacing a whole category loses the selection inside it.
+			if ((currentComponent != null) && treeComponents.isSelectionEmpty())
+				selectComponentOnTree(currentComponent);
+		} finally {
+			updatingTree = updating;
+		}
 	}
 	
 	/**
@@ -298,12 +399,57 @@ public class MainWindow {
 	}
 	
 	/**
-	 * Applies filtering to the component tree view via a filtering string.
+	 * Applies filtering to the component tree view via a filtering string. The
+	 * filtered tree is built in the background and only shown if no other
+	 * filtering has been requested in the meantime.
 	 * 
 	 * @param filter A filtering string.
 	 */
-	public void applyTreeFiltering(String filter) {
-		populateComponentsTree(filter);
+	public void applyTreeFiltering(final String filter) {
+		cancelTreeFiltering();
+		if ((workspace == null) || !workspace.isOpen())
+			return;
+		
+		// Keep showing the last results until the query is fixed.
+		final int mode = cmbFilterMode.getSelectedIndex();
+		final Query query = parseFilterQuery(mode, filter);
+		if ((mode == FILTER_MODE_QUERY) && (query == null) && !filter.trim().isEmpty())
+			return;
+		
+		// Find the matching components elsewhere and show them here.
+		final long request = filterGeneration;
+		final ComponentTreeFilter treeFilter = createTreeFilter(workspace, mode,
+				filter, query);
+		pendingFilter = filterExecutor.submit(new Runnable() {
+			@Override
+			public void run() {
+				if (!treeFilter.run())
+					return;
+				
+				EventQueue.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						// Only the newest filtering gets to be shown.
+						if (request != filterGeneration)
+							return;
+						
+						pendingFilter = null;
+						showFilteredTree(treeFilter);
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Cancels any tree filtering that's being done in the background.
+	 */
+	private void cancelTreeFiltering() {
+		filterGeneration++;
+		if (pendingFilter != null) {
+			pendingFilter.cancel(true);
+			pendingFilter = null;
+		}
 	}
 	
 	/**
@@ -403,18 +549,18 @@ public class MainWindow {
 	}
 	
 	/**
-	 * Sets the contents of the properties table using a {@link HashMap} of
+	 * Sets the contents of the properties table using a {@link Map} of
 	 * {@link String}s.
 	 * 
-	 * @param map HashMap with strings to populate the table with.
+	 * @param map Map with strings to populate the table with.
 	 */
-	protected void setPropertiesTableContents(HashMap<String, String> map) {
+	protected void setPropertiesTableContents(Map<String, String> map) {
 		// Get the table model and clear it.
 		DefaultTableModel model = (DefaultTableModel)tblProperties.getModel();
 		model.removeTableModelListener(tblModelListener);
 		this.clearPropertiesTable();
 		
-		// Go through the HashMap.
+		// Go through the Map.
 		for (Map.Entry<String, String> entry : map.entrySet()) {
 			model.addRow(new Object[] { entry.getKey(), entry.getValue() });
 		}
@@ -438,6 +584,7 @@ public class MainWindow {
 	 * @param clearCurrentComponent Clear the current component reference?
 	 */
 	public void clearComponentTreeAndView(boolean clearCurrentComponent) {
+		prefetcher.cancel();
 		treeComponents.setModel(null);
 		clearComponentView(clearCurrentComponent);
 	}
@@ -474,18 +621,44 @@ public class MainWindow {
 	 *                  can be null if you don't have any.
 	 */
 	public void setComponentImageLabel(Component component) {
+		// Whatever was loading for the previous component isn't needed anymore.
+		imageLoader.cancel();
 		if (component == null) {
-			lblImage.setText("No Image");
-			lblImage.setIcon(null);
+			setImageLabelIcon(null);
+			return;
+		}
+		
+		// Use the image straight away if we already have it.
+		ComponentImage image = component.getImage();
+		ImageIcon icon = image.getCachedIcon(lblImage.getSize(), true);
+		if (icon != null) {
+			setImageLabelIcon(icon);
 			return;
 		}
 		
-		if (component.getImage().getIcon() == null) {
+		// Show a placeholder while the image is loaded in the background.
+		lblImage.setText("Loading...");
+		lblImage.setIcon(null);
+		imageLoader.load(image, lblImage.getSize(), true, new ImageLoadListener() {
+			@Override
+			public void imageLoaded(ImageIcon icon) {
+				setImageLabelIcon(icon);
+			}
+		});
+	}
+	
+	/**
+	 * Sets the image shown in the component image label.
+	 * 
+	 * @param icon Image to be shown or {@code null} if there isn't one.
+	 */
+	private void setImageLabelIcon(ImageIcon icon) {
+		if (icon == null) {
 			lblImage.setText("No Image");
 			lblImage.setIcon(null);
 		} else {
 			lblImage.setText("");
-			lblImage.setIcon(component.getImage().getIcon(lblImage.getSize(), true));
+			lblImage.setIcon(icon);
 		}
 	}
 	
@@ -495,7 +668,128 @@ public class MainWindow {
 	 * @param workspace Opened PartCat workspace.
 	 */
 	public void setWorkspace(PartCatWorkspace workspace) {
+		stopWatchingWorkspace();
 		this.workspace = workspace;
+		
+		// Keep an eye on changes made outside of the application.
+		if ((workspace != null) && workspace.isOpen())
+			startWatchingWorkspace();
+	}
+	
+	/**
+	 * Starts watching the current workspace for changes made to it from outside
+	 * of the application.
+	 */
+	public void startWatchingWorkspace() {
+		watcher = new WorkspaceWatcher(workspace, new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				EventQueue.invokeLater(command);
+			}
+		});
+		watcher.addListener(new WorkspaceChangeListener() {
+			@Override
+			public void workspaceChanged(WorkspaceChangeEvent event) {
+				MainWindow.this.workspaceChanged(event);
+			}
+		});
+		
+		try {
+			watcher.start();
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Couldn't watch the workspace for changes.");
+			watcher = null;
+		}
+	}
+	
+	/**
+	 * Stops watching the current workspace for changes.
+	 */
+	public void stopWatchingWorkspace() {
+		if (watcher != null) {
+			watcher.stop();
+			watcher = null;
+		}
+	}
+	
+	/**
+	 * Updates the component tree and view after a batch of components has
+	 * changed in the workspace.
+	 * 
+	 * @param event Changes that were applied to the workspace.
+	 */
+	public void workspaceChanged(WorkspaceChangeEvent event) {
+		if ((event.getWorkspace() != workspace) || event.isEmpty())
+			return;
+		
+		// Update the reference to the component we are showing.
+		boolean reshow = false;
+		boolean conflict = false;
+		if (currentComponent != null) {
+			Component replacement = event.getReplacement(currentComponent);
+			
+			if (event.isRemoved(currentComponent)) {
+				clearComponentView();
+			} else if (replacement != null) {
+				currentComponent = replacement;
+				conflict = hasUnsavedChanges();
+				reshow = !conflict;
+			}
+		}
+		
+		// Update the tree without triggering any selection side effects.
+		updatingTree = true;
+		try {
+			TreeModel model = treeComponents.getModel();
+			if (model instanceof ComponentTreeModel) {
+				expandTreeNodes(((ComponentTreeModel)model).applyChanges(event));
+			} else {
+				populateComponentsTree(txtFilter.getText());
+			}
+			
+			if (currentComponent != null)
+				selectComponentOnTree(currentComponent);
+		} finally {
+			updatingTree = false;
+		}
+		
+		// Only the filter knows if the changed components match it.
+		if (!txtFilter.getText().isEmpty() || (pendingFilter != null))
+			applyTreeFiltering(txtFilter.getText());
+		
+		// Let the user decide what happens to their edits if the component
+		// was changed on disk while they were editing it.
+		if (conflict && !askingToReload) {
+			askingToReload = true;
+			try {
+				int option = JOptionPane.showConfirmDialog(frmPartcat,
+						"The component you are editing was changed outside of " +
+						"PartCat. Do you wish to reload it and discard your " +
+						"changes?\nIf you keep your changes, saving them will " +
+						"overwrite the ones made outside.",
+						"Component Changed", JOptionPane.YES_NO_OPTION,
+						JOptionPane.WARNING_MESSAGE);
+				reshow = (option == JOptionPane.YES_OPTION);
+			} finally {
+				askingToReload = false;
+			}
+		}
+		
+		// Show the reloaded component if we aren't keeping the user's edits.
+		if (reshow && (currentComponent != null))
+			showComponent(currentComponent);
+	}
+	
+	/**
+	 * Applies the application preferences to a workspace that's about to be
+	 * opened.
+	 * 
+	 * @param workspace Workspace to be configured.
+	 */
+	public void applyWorkspacePreferences(PartCatWorkspace workspace) {
+		if (prefs != null)
+			workspace.loadPreferences(prefs);
 	}
 	
 	/**
@@ -639,31 +933,39 @@ public class MainWindow {
 	 * @param component {@link Component} object to be selected.
 	 */
 	public void selectComponentOnTree(Component component) {
-		DefaultMutableTreeNode root = (DefaultMutableTreeNode)(treeComponents.getModel().getRoot());
-		Enumeration<TreeNode> e = root.depthFirstEnumeration();
-		
-		// Go through the tree view checking for the component node.
-		while (e.hasMoreElements()) {
-			TreeNode node = e.nextElement();
-			if (node instanceof ComponentTreeNode) {
-				if (((ComponentTreeNode) node).getComponent().equals(component)) {
-					TreePath treePath = new TreePath(((DefaultMutableTreeNode) node).getPath());
-					
-					treeComponents.setSelectionPath(treePath);
-					treeComponents.scrollPathToVisible(treePath);
-					
-					return;
-				}
-			}
-		}
+		TreeModel model = treeComponents.getModel();
+		if (!(model instanceof ComponentTreeModel))
+			return;
+		
+		// Look up the component node.
+		TreePath treePath = ((ComponentTreeModel)model).getPath(component);
+		if (treePath == null)
+			return;
+		
+		treeComponents.setSelectionPath(treePath);
+		treeComponents.scrollPathToVisible(treePath);
 	}
 	
 	/**
 	 * Expands all of the nodes in the component tree view.
 	 */
 	public void expandAllTreeNodes() {
-		for (int i = 0; i < treeComponents.getRowCount(); i++) {
-			treeComponents.expandRow(i);
+		TreeModel model = treeComponents.getModel();
+		if (model instanceof ComponentTreeModel)
+			expandTreeNodes(((ComponentTreeModel)model).getCategoryPaths());
+	}
+	
+	/**
+	 * Expands category nodes of the component tree view, unless they are
+	 * inside a category that has been collapsed.
+	 * 
+	 * @param paths Paths of the category nodes to expand, parents before their
+	 *              children.
+	 */
+	private void expandTreeNodes(List<TreePath> paths) {
+		for (TreePath treePath : paths) {
+			if (treeComponents.isExpanded(treePath.getParentPath()))
+				treeComponents.expandPath(treePath);
 		}
 	}
 	
@@ -755,6 +1057,11 @@ public class MainWindow {
 				
 				// Actually close window and workspace.
 				action.closeWorkspace();
+				imageLoader.shutdown();
+				prefetcher.shutdown();
+				filterTimer.stop();
+				cancelTreeFiltering();
+				filterExecutor.shutdown();
 				frmPartcat.dispose();
 			}
 		});
@@ -868,6 +1175,33 @@ public class MainWindow {
 		mnWidgetStyle = new JMenu("Widget Style");
 		mnView.add(mnWidgetStyle);
 		
+		JMenu mnTools = new JMenu("Tools");
+		menuBar.add(mnTools);
+		
+		JMenuItem mntmMergeDuplicateImages = new JMenuItem("Merge Duplicate Images");
+		mntmMergeDuplicateImages.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if ((workspace == null) || !workspace.isOpen())
+					return;
+				if (defaultUnsavedChangesBehaviour())
+					return;
+				
+				action.mergeDuplicateImages();
+			}
+		});
+		mnTools.add(mntmMergeDuplicateImages);
+		
+		JMenuItem mntmGenerateThumbnails = new JMenuItem("Generate Thumbnails");
+		mntmGenerateThumbnails.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if ((workspace == null) || !workspace.isOpen())
+					return;
+				
+				action.generateThumbnails();
+			}
+		});
+		mnTools.add(mntmGenerateThumbnails);
+		
 		JMenu mnHelp = new JMenu("Help");
 		menuBar.add(mnHelp);
 		
@@ -904,6 +1238,9 @@ public class MainWindow {
 		treeComponents.addMouseListener(new ComponentMousePopupListener(this, treeComponents));
 		treeComponents.addTreeSelectionListener(new TreeSelectionListener() {
 			public void valueChanged(TreeSelectionEvent event) {
+				if (updatingTree)
+					return;
+				
 				if (!ignoreUnsaved) {
 					componentTreeValueChanged(event);
 				} else {
@@ -919,28 +1256,49 @@ public class MainWindow {
 		txtFilter = new JTextField();
 		sl_leftPanel.putConstraint(SpringLayout.SOUTH, txtFilter, -5, SpringLayout.SOUTH, leftPanel);
 		sl_leftPanel.putConstraint(SpringLayout.SOUTH, sclTree, -5, SpringLayout.NORTH, txtFilter);
-		sl_leftPanel.putConstraint(SpringLayout.EAST, txtFilter, 0, SpringLayout.EAST, sclTree);
 		leftPanel.add(txtFilter);
 		txtFilter.setToolTipText("Filter");
 		txtFilter.setColumns(10);
 		
+		cmbFilterMode = new JComboBox<String>(new String[] { "Name", "Full Text",
+				"Query" });
+		cmbFilterMode.setToolTipText("Filter by name, search names, properties and " +
+				"notes, or query properties (Category=Resistors AND Value<10k)");
+		cmbFilterMode.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				filterTimer.stop();
+				applyTreeFiltering(txtFilter.getText());
+			}
+		});
+		sl_leftPanel.putConstraint(SpringLayout.NORTH, cmbFilterMode, 0, SpringLayout.NORTH, txtFilter);
+		sl_leftPanel.putConstraint(SpringLayout.SOUTH, cmbFilterMode, 0, SpringLayout.SOUTH, txtFilter);
+		sl_leftPanel.putConstraint(SpringLayout.EAST, cmbFilterMode, 0, SpringLayout.EAST, sclTree);
+		sl_leftPanel.putConstraint(SpringLayout.EAST, txtFilter, -5, SpringLayout.WEST, cmbFilterMode);
+		leftPanel.add(cmbFilterMode);
+		
 		JLabel lblFilter = new JLabel("Filter");
 		sl_leftPanel.putConstraint(SpringLayout.WEST, txtFilter, 5, SpringLayout.EAST, lblFilter);
 		sl_leftPanel.putConstraint(SpringLayout.NORTH, lblFilter, 0, SpringLayout.NORTH, txtFilter);
 		sl_leftPanel.putConstraint(SpringLayout.WEST, lblFilter, 0, SpringLayout.WEST, sclTree);
 		sl_leftPanel.putConstraint(SpringLayout.SOUTH, lblFilter, 0, SpringLayout.SOUTH, txtFilter);
 		leftPanel.add(lblFilter);
+		filterTimer = new Timer(PartCatConstants.FILTER_DELAY, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				applyTreeFiltering(txtFilter.getText());
+			}
+		});
+		filterTimer.setRepeats(false);
 		txtFilter.getDocument().addDocumentListener(new DocumentListener() {
 			public void changedUpdate(DocumentEvent e) {
-				applyTreeFiltering(txtFilter.getText());
+				filterTimer.restart();
 			}
 
 			public void insertUpdate(DocumentEvent e) {
-				applyTreeFiltering(txtFilter.getText());
+				filterTimer.restart();
 			}
 
 			public void removeUpdate(DocumentEvent e) {
-				applyTreeFiltering(txtFilter.getText());
+				filterTimer.restart();
 			}
 		});
 		
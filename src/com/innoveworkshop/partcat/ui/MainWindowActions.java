@@ -1,19 +1,30 @@
 package com.innoveworkshop.partcat.ui;
 
 import java.awt.Desktop;
+import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import com.innoveworkshop.partcat.PartCatWorkspace;
 import com.innoveworkshop.partcat.components.Component;
 import com.innoveworkshop.partcat.exceptions.WorkspaceNotFoundException;
+import com.innoveworkshop.partcat.images.ImageDeduplicator;
+import com.innoveworkshop.partcat.images.ThumbnailGenerator;
+import com.innoveworkshop.partcat.images.ThumbnailProgressListener;
 import com.innoveworkshop.partcat.ui.dialog.DownloadDialog;
+import com.innoveworkshop.partcat.watcher.WorkspaceChangeEvent;
+import com.innoveworkshop.utilities.ImageUtilities;
 
 /**
  * A class to organize the MainWindow action events.
@@ -100,6 +111,8 @@ public class MainWindowActions {
 	 * @param newName   New component name in case of "Saving as".
 	 */
 	public void saveComponent(Component component, String newName) {
+		String oldName = component.getName();
+		
 		try {
 			// Sync our changes with the component object.
 			window.syncComponentChanges();
@@ -111,9 +124,9 @@ public class MainWindowActions {
 				component.saveAs(newName);
 			}
 			
-			// Reset the saved changes flag and refresh the workspace.
+			// Reset the saved changes flag and refresh the affected components.
 			window.setUnsavedChanges(false);
-			refreshWorkspace();
+			refreshComponents(oldName, component.getName());
 		} catch (IOException e) {
 			e.printStackTrace();
 			JOptionPane.showMessageDialog(window.frmPartcat,
@@ -181,7 +194,7 @@ public class MainWindowActions {
 				component.save();
 				
 				// Refresh the workspace.
-				refreshWorkspace();
+				refreshComponents(name);
 				window.setUnsavedChanges(false);
 			} catch (Exception e) {
 				e.printStackTrace();
@@ -225,6 +238,7 @@ public class MainWindowActions {
 			try {
 				Path path = Paths.get(dialog.getSelectedFile().getPath());
 				PartCatWorkspace workspace = PartCatWorkspace.createNew(path);
+				window.applyWorkspacePreferences(workspace);
 				
 				openWorkspace(workspace);
 			} catch (IOException e) {
@@ -248,7 +262,7 @@ public class MainWindowActions {
 		// Show the dialog and handle the open operation only if approved.
 		if (dialog.showDialog(window.frmPartcat, "Open Workspace") == JFileChooser.APPROVE_OPTION) {
 			try {
-				PartCatWorkspace workspace = new PartCatWorkspace(dialog.getSelectedFile().getPath());
+				PartCatWorkspace workspace = loadWorkspace(dialog.getSelectedFile().toPath());
 				openWorkspace(workspace);
 			} catch (WorkspaceNotFoundException e) {
 				e.printStackTrace();
@@ -284,6 +298,24 @@ public class MainWindowActions {
 		window.setLastOpenedWorkspace(workspace);
 	}
 	
+	/**
+	 * Creates a workspace object configured with the application preferences
+	 * and opens it.
+	 * 
+	 * @param  path Path to the root of the workspace.
+	 * @return      Opened workspace.
+	 * 
+	 * @throws WorkspaceNotFoundException If the specified path wasn't found or
+	 *                                    isn't a directory.
+	 */
+	private PartCatWorkspace loadWorkspace(Path path) throws WorkspaceNotFoundException {
+		PartCatWorkspace workspace = new PartCatWorkspace();
+		window.applyWorkspacePreferences(workspace);
+		workspace.open(path);
+		
+		return workspace;
+	}
+	
 	/**
 	 * Refreshes the currently opened workspace.
 	 */
@@ -293,7 +325,7 @@ public class MainWindowActions {
 			
 			// Actually refresh the workspace.
 			closeWorkspace(true);
-			openWorkspace(new PartCatWorkspace(path), true);
+			openWorkspace(loadWorkspace(path), true);
 			
 			// Reload the component that was last in use.
 			window.restoreSelectedComponent();
@@ -305,6 +337,95 @@ public class MainWindowActions {
 		}
 	}
 	
+	/**
+	 * Reloads only the specified components of the currently opened workspace
+	 * and updates the UI accordingly.
+	 * 
+	 * @param names Names of the components that have changed.
+	 */
+	public void refreshComponents(String... names) {
+		WorkspaceChangeEvent event = window.workspace.reloadComponents(Arrays.asList(names));
+		window.workspaceChanged(event);
+	}
+	
+	/**
+	 * Merges the images with the same contents in the current workspace and
+	 * shows a summary of what was done.
+	 */
+	public void mergeDuplicateImages() {
+		ImageDeduplicator.Result result = new ImageDeduplicator(window.workspace)
+				.mergeDuplicates();
+		
+		// Show the updated image of the current component.
+		if (window.currentComponent != null)
+			window.setComponentImageLabel(window.currentComponent);
+		
+		JOptionPane.showMessageDialog(window.frmPartcat,
+				"Removed " + result.getFilesRemoved() + " duplicate images (" +
+				(result.getBytesSaved() / 1024) + " KB) and updated " +
+				result.getComponentsUpdated() + " components.",
+				"Merge Duplicate Images", JOptionPane.INFORMATION_MESSAGE);
+	}
+	
+	/**
+	 * Generates the thumbnails of every component image in the current
+	 * workspace in the background, showing its progress and allowing it to
+	 * be cancelled.
+	 */
+	public void generateThumbnails() {
+		// Generate them at the size they're shown.
+		List<Dimension> sizes = new ArrayList<Dimension>();
+		double scale = ImageUtilities.getDisplayScale();
+		sizes.add(new Dimension((int)Math.round(window.lblImage.getWidth() * scale),
+				(int)Math.round(window.lblImage.getHeight() * scale)));
+		
+		final ThumbnailGenerator generator = new ThumbnailGenerator(window.workspace, sizes);
+		final ProgressMonitor monitor = new ProgressMonitor(window.frmPartcat,
+				"Generating thumbnails...", null, 0, 100);
+		monitor.setMillisToDecideToPopup(0);
+		monitor.setMillisToPopup(0);
+		
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				generator.generate(new ThumbnailProgressListener() {
+					@Override
+					public void progressChanged(final int done, final int total) {
+						EventQueue.invokeLater(new Runnable() {
+							@Override
+							public void run() {
+								if (monitor.isCanceled()) {
+									generator.cancel();
+									return;
+								}
+								
+								monitor.setMaximum(total);
+								monitor.setProgress(done);
+								monitor.setNote(done + " of " + total + " images");
+							}
+						});
+					}
+				});
+				
+				// Let the user know how it went.
+				EventQueue.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						monitor.close();
+						JOptionPane.showMessageDialog(window.frmPartcat,
+								(generator.isCancelled() ? "Cancelled. " : "") +
+								"Generated " + generator.getGenerated() + " thumbnails, " +
+								generator.getSkipped() + " were already up to date and " +
+								generator.getFailed() + " failed.",
+								"Generate Thumbnails", JOptionPane.INFORMATION_MESSAGE);
+					}
+				});
+			}
+		}, "PartCat-Thumbnails");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
 	/**
 	 * Closes the currently opened workspace.
 	 */
@@ -320,6 +441,7 @@ public class MainWindowActions {
 	public void closeWorkspace(boolean isRefreshing) {
 		window.setUnsavedChanges(false);
 		window.clearComponentTreeAndView(!isRefreshing);
+		window.stopWatchingWorkspace();
 		
 		if (window.workspace != null)
 			window.workspace.close();
@@ -74,6 +74,7 @@ public class ComponentMousePopupListener extends MouseAdapter {
 					return;
 				
 				// Rename the component.
+				String oldName = selComponent.getName();
 				try {
 					selComponent.rename(name);
 				} catch (IOException e1) {
@@ -83,8 +84,8 @@ public class ComponentMousePopupListener extends MouseAdapter {
 							"Renaming Error", JOptionPane.ERROR_MESSAGE);
 				}
 				
-				// Refresh the workspace after the changes.
-				window.action.refreshWorkspace();
+				// Refresh the renamed component.
+				window.action.refreshComponents(oldName, name);
 			}
 		});
 		popupMenu.add(mitmRename);
@@ -114,9 +115,8 @@ public class ComponentMousePopupListener extends MouseAdapter {
 								"Deletion Error", JOptionPane.ERROR_MESSAGE);
 					}
 					
-					// Clear everything and reload the tree view.
-					window.clearComponentTreeAndView();
-					window.populateComponentsTree();
+					// Drop the component from the workspace and the tree view.
+					window.action.refreshComponents(selComponent.getName());
 				}
 			}
 		});
@@ -0,0 +1,267 @@
+package com.innoveworkshop.partcat.watcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.innoveworkshop.partcat.PartCatWorkspace;
+import com.innoveworkshop.partcat.components.Component;
+
+/**
+ * A batch of changes to the components of a workspace.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class WorkspaceChangeEvent {
+	private PartCatWorkspace workspace;
+	private List<Component> added;
+	private List<Component> removed;
+	private List<String> removedNames;
+	private List<Component> modified;
+	private Map<Component, Component> replacements;
+	private Map<Component, Boolean> removedSet;
+	private Map<String, Exception> errors;
+	
+	/**
+	 * Creates an empty change event.
+	 * 
+	 * @param workspace Workspace that changed.
+	 */
+	public WorkspaceChangeEvent(PartCatWorkspace workspace) {
+		this.workspace = workspace;
+		this.added = new ArrayList<Component>();
+		this.removed = new ArrayList<Component>();
+		this.removedNames = new ArrayList<String>();
+		this.modified = new ArrayList<Component>();
+		this.replacements = new IdentityHashMap<Component, Component>();
+		this.removedSet = new IdentityHashMap<Component, Boolean>();
+		this.errors = new LinkedHashMap<String, Exception>();
+	}
+	
+	/**
+	 * Adds a component that was created.
+	 * 
+	 * @param component Newly loaded component.
+	 */
+	public void addAdded(Component component) {
+		added.add(component);
+	}
+	
+	/**
+	 * Adds a component that was removed.
+	 * 
+	 * @param component Component that no longer exists.
+	 */
+	public void addRemoved(Component component) {
+		removed.add(component);
+		removedSet.put(component, Boolean.TRUE);
+	}
+	
+	/**
+	 * Adds the name of a component folder that was removed but wasn't loaded.
+	 * 
+	 * @param name Component folder name.
+	 */
+	public void addRemovedName(String name) {
+		removedNames.add(name);
+	}
+	
+	/**
+	 * Adds a component that was modified.
+	 * 
+	 * @param current   Component object that is currently in the workspace.
+	 * @param component Reloaded component object that will replace it.
+	 */
+	public void addModified(Component current, Component component) {
+		modified.add(component);
+		replacements.put(current, component);
+	}
+	
+	/**
+	 * Adds an error that happened while reloading a component.
+	 * 
+	 * @param name Component name.
+	 * @param err  Exception that prevented the component from being loaded.
+	 */
+	public void addError(String name, Exception err) {
+		errors.put(name, err);
+	}
+	
+	/**
+	 * Drops the changes that no longer apply to the components of the
+	 * workspace. This happens when the workspace was changed by someone else
+	 * in between this event being prepared and it being applied (the UI
+	 * reloading the same components the watcher is reloading). Removed and
+	 * replaced components must still be in the workspace, and added ones must
+	 * not have a name that's already taken.
+	 * 
+	 * @param components Components currently in the workspace.
+	 */
+	public void discardStale(List<Component> components) {
+		Map<Component, Boolean> current = new IdentityHashMap<Component, Boolean>(
+				components.size());
+		Set<String> names = new HashSet<String>();
+		for (Component component : components) {
+			current.put(component, Boolean.TRUE);
+			if (!component.isDeleted())
+				names.add(component.getName());
+		}
+		
+		// Components that were already removed.
+		Iterator<Component> iter = removed.iterator();
+		while (iter.hasNext()) {
+			Component component = iter.next();
+			if (!current.containsKey(component)) {
+				iter.remove();
+				removedSet.remove(component);
+			}
+		}
+		
+		// Components that were already replaced or removed.
+		Iterator<Map.Entry<Component, Component>> entries =
+				replacements.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<Component, Component> entry = entries.next();
+			if (!current.containsKey(entry.getKey())) {
+				removeIdentical(modified, entry.getValue());
+				entries.remove();
+			}
+		}
+		
+		// Names that were already taken by someone else.
+		Iterator<String> nameIter = removedNames.iterator();
+		while (nameIter.hasNext()) {
+			if (names.contains(nameIter.next()))
+				nameIter.remove();
+		}
+		iter = added.iterator();
+		while (iter.hasNext()) {
+			if (!names.add(iter.next().getName()))
+				iter.remove();
+		}
+	}
+	
+	/**
+	 * Gets the workspace that changed.
+	 * 
+	 * @return Changed workspace.
+	 */
+	public PartCatWorkspace getWorkspace() {
+		return workspace;
+	}
+	
+	/**
+	 * Gets the components that were created.
+	 * 
+	 * @return Added components.
+	 */
+	public List<Component> getAdded() {
+		return Collections.unmodifiableList(added);
+	}
+	
+	/**
+	 * Gets the components that were removed.
+	 * 
+	 * @return Removed components.
+	 */
+	public List<Component> getRemoved() {
+		return Collections.unmodifiableList(removed);
+	}
+	
+	/**
+	 * Gets the names of the removed component folders that weren't loaded.
+	 * 
+	 * @return Removed component folder names.
+	 */
+	public List<String> getRemovedNames() {
+		return Collections.unmodifiableList(removedNames);
+	}
+	
+	/**
+	 * Gets the reloaded versions of the components that were modified.
+	 * 
+	 * @return Modified components.
+	 */
+	public List<Component> getModified() {
+		return Collections.unmodifiableList(modified);
+	}
+	
+	/**
+	 * Gets the component objects that were replaced by the modified ones.
+	 * 
+	 * @return Replaced components.
+	 */
+	public Set<Component> getReplaced() {
+		return Collections.unmodifiableSet(replacements.keySet());
+	}
+	
+	/**
+	 * Gets the errors that happened while reloading components.
+	 * 
+	 * @return Map of component names and their load errors.
+	 */
+	public Map<String, Exception> getErrors() {
+		return Collections.unmodifiableMap(errors);
+	}
+	
+	/**
+	 * Gets the reloaded version of a component object.
+	 * 
+	 * @param  component Component object that was in the workspace.
+	 * @return           Reloaded component or {@code null} if it wasn't
+	 *                   modified.
+	 */
+	public Component getReplacement(Component component) {
+		return replacements.get(component);
+	}
+	
+	/**
+	 * Checks if a component object was removed.
+	 * 
+	 * @param  component Component object that was in the workspace.
+	 * @return           True if the component was removed.
+	 */
+	public boolean isRemoved(Component component) {
+		return removedSet.containsKey(component);
+	}
+	
+	/**
+	 * Checks if this event doesn't have any changes at all.
+	 * 
+	 * @return True if nothing has changed.
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && removedNames.isEmpty() &&
+				modified.isEmpty() && errors.isEmpty();
+	}
+	
+	/**
+	 * Gets the total number of components affected by this event.
+	 * 
+	 * @return Number of changed components.
+	 */
+	public int size() {
+		return added.size() + removed.size() + modified.size();
+	}
+	
+	/**
+	 * Removes a specific object from a list.
+	 * 
+	 * @param list List to remove the object from.
+	 * @param item Object to be removed.
+	 */
+	private static void removeIdentical(List<Component> list, Component item) {
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == item) {
+				list.remove(i);
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package com.innoveworkshop.partcat.watcher;
+
+/**
+ * A listener for batched workspace changes.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public interface WorkspaceChangeListener {
+	/**
+	 * Called after a batch of changes has been applied to the workspace.
+	 * 
+	 * @param event Changes that were applied.
+	 */
+	public void workspaceChanged(WorkspaceChangeEvent event);
+}
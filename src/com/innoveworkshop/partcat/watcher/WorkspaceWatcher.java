@@ -0,0 +1,299 @@
+package com.innoveworkshop.partcat.watcher;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.innoveworkshop.partcat.PartCatConstants;
+import com.innoveworkshop.partcat.PartCatWorkspace;
+import com.innoveworkshop.partcat.index.ImageIndex;
+import com.innoveworkshop.utilities.FileUtilities;
+
+/**
+ * Watches the components and images folders of a workspace for changes made
+ * outside of the application and reloads only the affected components.
+ * Bursts of file system events are coalesced into a single batch, which is
+ * delivered to the listeners as one {@link WorkspaceChangeEvent}.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class WorkspaceWatcher implements Runnable {
+	// Time without any events before a batch is dispatched.
+	private static final long QUIET_PERIOD_MS = 300;
+	// Maximum time a batch can be held back while events keep coming in.
+	private static final long MAX_BATCH_DELAY_MS = 3000;
+	
+	private PartCatWorkspace workspace;
+	private Executor dispatcher;
+	private List<WorkspaceChangeListener> listeners;
+	private WatchService watchService;
+	private Map<WatchKey, Path> keys;
+	private Path componentsPath;
+	private Path imagesPath;
+	private Thread thread;
+	private volatile boolean running;
+	
+	/**
+	 * Creates a workspace watcher that applies the changes and notifies its
+	 * listeners on the watcher thread.
+	 * 
+	 * @param workspace Workspace to be watched.
+	 */
+	public WorkspaceWatcher(PartCatWorkspace workspace) {
+		this(workspace, new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		});
+	}
+	
+	/**
+	 * Creates a workspace watcher.
+	 * 
+	 * @param workspace  Workspace to be watched.
+	 * @param dispatcher Executor used to apply the changes to the workspace and
+	 *                   notify the listeners. For Swing applications this
+	 *                   should dispatch to the event thread.
+	 */
+	public WorkspaceWatcher(PartCatWorkspace workspace, Executor dispatcher) {
+		this.workspace = workspace;
+		this.dispatcher = dispatcher;
+		this.listeners = new CopyOnWriteArrayList<WorkspaceChangeListener>();
+		this.keys = new HashMap<WatchKey, Path>();
+		this.componentsPath = workspace.getPath().resolve(PartCatConstants.COMPONENTS_ROOT);
+		this.imagesPath = workspace.getImagesPath();
+		this.running = false;
+	}
+	
+	/**
+	 * Adds a listener to be notified about the workspace changes.
+	 * 
+	 * @param listener Listener to be added.
+	 */
+	public void addListener(WorkspaceChangeListener listener) {
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Removes a previously added listener.
+	 * 
+	 * @param listener Listener to be removed.
+	 */
+	public void removeListener(WorkspaceChangeListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Starts watching the workspace in a background thread.
+	 * 
+	 * @throws IOException If the file system doesn't support watching.
+	 */
+	public synchronized void start() throws IOException {
+		if (running)
+			return;
+		
+		watchService = FileSystems.getDefault().newWatchService();
+		running = true;
+		
+		thread = new Thread(this, "PartCat-Watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stops watching the workspace.
+	 */
+	public synchronized void stop() {
+		if (!running)
+			return;
+		
+		running = false;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		thread.interrupt();
+	}
+	
+	/**
+	 * Checks if the watcher is running.
+	 * 
+	 * @return True if we are watching the workspace.
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Watcher thread main loop.
+	 */
+	@Override
+	public void run() {
+		try {
+			// Register all the folders we are interested in.
+			register(componentsPath);
+			register(imagesPath);
+			for (String name : workspace.listComponentFolders())
+				register(componentsPath.resolve(name));
+			
+			while (running) {
+				Set<String> components = new HashSet<String>();
+				Set<String> images = new HashSet<String>();
+				
+				// Wait for something to happen and then collect events until
+				// things calm down.
+				WatchKey key = watchService.take();
+				long start = System.currentTimeMillis();
+				boolean overflow = false;
+				while (key != null) {
+					overflow |= collect(key, components, images);
+					if ((System.currentTimeMillis() - start) > MAX_BATCH_DELAY_MS)
+						break;
+					
+					key = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS);
+				}
+				
+				// We've lost events, so everything must be checked and the
+				// folders that were created in the meantime must be watched.
+				if (overflow) {
+					ImageIndex imageIndex = workspace.getImageIndex();
+					if (imageIndex != null)
+						imageIndex.invalidate();
+					for (String name : workspace.listComponentFolders()) {
+						register(componentsPath.resolve(name));
+						components.add(name);
+					}
+					components.addAll(workspace.getComponentNames());
+				}
+				
+				dispatch(components, images);
+			}
+		} catch (InterruptedException e) {
+			// We are being stopped.
+		} catch (ClosedWatchServiceException e) {
+			// We are being stopped.
+		}
+		
+		running = false;
+	}
+	
+	/**
+	 * Collects the events of a watch key.
+	 * 
+	 * @param  key        Signaled watch key.
+	 * @param  components Set to add the affected component names to.
+	 * @param  images     Set to add the affected image names to.
+	 * @return            True if events were lost.
+	 */
+	private boolean collect(WatchKey key, Set<String> components, Set<String> images) {
+		Path dir = keys.get(key);
+		boolean overflow = false;
+		
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+				continue;
+			}
+			
+			if (dir == null)
+				continue;
+			Path context = (Path)event.context();
+			
+			if (dir.equals(componentsPath)) {
+				// A component folder was created, deleted or renamed.
+				Path child = dir.resolve(context);
+				components.add(context.toString());
+				
+				if ((event.kind() == StandardWatchEventKinds.ENTRY_CREATE) &&
+						Files.isDirectory(child)) {
+					register(child);
+				}
+			} else if (dir.equals(imagesPath)) {
+				// An image was changed.
+				ImageIndex imageIndex = workspace.getImageIndex();
+				if (imageIndex != null)
+					imageIndex.refresh(context.toString());
+				workspace.getImageCache().invalidate(dir.resolve(context));
+				images.add(FileUtilities.getFilenameWithoutExt(context));
+			} else {
+				// Something inside a component folder was changed.
+				components.add(dir.getFileName().toString());
+			}
+		}
+		
+		// Forget about folders that no longer exist.
+		if (!key.reset())
+			keys.remove(key);
+		
+		return overflow;
+	}
+	
+	/**
+	 * Reloads the affected components and dispatches the changes.
+	 * 
+	 * @param components Names of the affected components.
+	 * @param images     Names of the affected images.
+	 */
+	private void dispatch(Set<String> components, Set<String> images) {
+		Set<String> imageUsers = workspace.getComponentsUsingImages(images);
+		components.addAll(imageUsers);
+		if (components.isEmpty() || !running)
+			return;
+		
+		// Do all the heavy lifting in this thread. Components using a changed
+		// image must be reloaded even if their folders haven't changed.
+		final WorkspaceChangeEvent event = workspace.prepareReload(components,
+				imageUsers);
+		if (event.isEmpty())
+			return;
+		
+		// Apply the changes and notify everyone.
+		dispatcher.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!running)
+					return;
+				
+				workspace.applyChanges(event);
+				for (WorkspaceChangeListener listener : listeners)
+					listener.workspaceChanged(event);
+			}
+		});
+	}
+	
+	/**
+	 * Registers a folder with the watch service.
+	 * 
+	 * @param dir Folder to be watched.
+	 */
+	private void register(Path dir) {
+		try {
+			WatchKey key = dir.register(watchService,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+			keys.put(key, dir);
+		} catch (ClosedWatchServiceException e) {
+			throw e;
+		} catch (IOException e) {
+			System.err.println("Couldn't watch " + dir.toString() + ": " +
+					e.getMessage());
+		}
+	}
+}
@@ -15,6 +15,8 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 /**
  * A simple class to help us with our file needs.
@@ -22,6 +24,8 @@ import java.nio.file.attribute.BasicFileAttributes;
  * @author Nathan Campos <nathan@innoveworkshop.com>
  */
 public class FileUtilities {
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
 	/**
 	 * Slurps the contents of a file.
 	 * 
@@ -157,6 +161,41 @@ public class FileUtilities {
 		});
 	}
 	
+	/**
+	 * Computes the SHA-1 hash of the contents of a file.
+	 * 
+	 * @param  path {@link Path} to the file to be hashed.
+	 * @return      Hexadecimal hash.
+	 * 
+	 * @throws IOException If the file couldn't be read.
+	 */
+	public static String hashFile(Path path) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-1 isn't available", e);
+		}
+		
+		// Hash the file in chunks.
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = Files.newInputStream(path)) {
+			int read;
+			while ((read = in.read(buffer)) > 0)
+				digest.update(buffer, 0, read);
+		}
+		
+		// Convert it to a string.
+		byte[] hash = digest.digest();
+		char[] hex = new char[hash.length * 2];
+		for (int i = 0; i < hash.length; i++) {
+			hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0x0F];
+			hex[(i * 2) + 1] = HEX_DIGITS[hash[i] & 0x0F];
+		}
+		
+		return new String(hex);
+	}
+	
 	/**
 	 * Gets the filename from a path and removes the extension.
 	 * 
@@ -167,7 +206,13 @@ public class FileUtilities {
 		if (path == null)
 			return null;
 		
-		return path.getFileName().toString().replaceFirst("[.][^.]+$", "");
+		// Same as removing "[.][^.]+$", without the regular expression.
+		String name = path.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		if ((dot < 0) || (dot == (name.length() - 1)))
+			return name;
+		
+		return name.substring(0, dot);
 	}
 	
 	/**
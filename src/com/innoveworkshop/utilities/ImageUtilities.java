@@ -1,29 +1,426 @@
 package com.innoveworkshop.utilities;
 
+import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
 import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 
 /**
  * A simple class to help us with our image needs.
- *
+ * 
  * @author Nathan Campos <nathan@innoveworkshop.com>
  */
 public class ImageUtilities {
+	private static final int SUBSAMPLING_MARGIN = 4;
+	private static final float JPEG_QUALITY = 0.9f;
+	
+	/**
+	 * Reads the size of an image from its header, without decoding it.
+	 * 
+	 * @param  file Image file to be read.
+	 * @return      Size of the image or {@code null} if there isn't a reader
+	 *              for its format.
+	 * 
+	 * @throws IOException If the image couldn't be read.
+	 */
+	public static Dimension readImageSize(File file) throws IOException {
+		ImageInputStream stream = ImageIO.createImageInputStream(file);
+		if (stream == null)
+			throw new IOException("Couldn't open " + file.getPath());
+		
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext())
+				return null;
+			ImageReader reader = readers.next();
+			
+			try {
+				reader.setInput(stream, true, true);
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/**
+	 * Writes an image to a file. JPEG images are written with a high quality
+	 * setting and without an alpha channel, since most readers don't like it.
+	 * 
+	 * @param image  Image to be written.
+	 * @param format Informal format name ("png", "jpg", etc.).
+	 * @param file   File to write the image to.
+	 * 
+	 * @throws IOException If the image couldn't be written.
+	 */
+	public static void writeImage(BufferedImage image, String format, File file)
+			throws IOException {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+		if (!writers.hasNext())
+			throw new IOException("Don't know how to write " + format + " images");
+		ImageWriter writer = writers.next();
+		
+		// JPEG has no alpha channel.
+		ImageWriteParam param = writer.getDefaultWriteParam();
+		boolean jpeg = format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg");
+		if (jpeg) {
+			if (image.getColorModel().hasAlpha()) {
+				BufferedImage opaque = new BufferedImage(image.getWidth(),
+						image.getHeight(), BufferedImage.TYPE_INT_RGB);
+				Graphics2D graphics = opaque.createGraphics();
+				graphics.setColor(Color.WHITE);
+				graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+				graphics.drawImage(image, 0, 0, null);
+				graphics.dispose();
+				image = opaque;
+			}
+			
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(JPEG_QUALITY);
+		}
+		
+		// Write the image.
+		try (OutputStream out = new FileOutputStream(file)) {
+			ImageOutputStream stream = ImageIO.createImageOutputStream(out);
+			try {
+				writer.setOutput(stream);
+				writer.write(null, new IIOImage(image, null, null), param);
+			} finally {
+				writer.dispose();
+				stream.close();
+			}
+		}
+	}
+	
+	/**
+	 * Reads an image resized to fit a dimension. Only the header is read at
+	 * first, so that the image can be decoded with subsampling straight to a
+	 * resolution that's just above the one needed for the resize, which saves
+	 * a lot of time and memory with big photos. The result is the same size
+	 * as {@link #resizeImage(BufferedImage, Dimension, boolean)} would give.
+	 * 
+	 * @param  file           Image file to be read.
+	 * @param  dim            Dimension to resize the image to.
+	 * @param  maintainAspect Should we maintain the original aspect ratio?
+	 * @return                Resized image or {@code null} if there isn't a
+	 *                        reader for its format.
+	 * 
+	 * @throws IOException If the image couldn't be read.
+	 */
+	public static BufferedImage readResizedImage(File file, Dimension dim,
+			boolean maintainAspect) throws IOException {
+		ImageInputStream stream = ImageIO.createImageInputStream(file);
+		if (stream == null)
+			throw new IOException("Couldn't open " + file.getPath());
+		
+		try {
+			// Find a reader for the image.
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext())
+				return null;
+			ImageReader reader = readers.next();
+			
+			try {
+				// Get the size of the image from its header.
+				reader.setInput(stream, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				
+				// Figure out how many pixels we can skip.
+				Dimension target = dim;
+				if (maintainAspect)
+					target = getScaledDimension(new Dimension(width, height), dim);
+				int xSubsampling = getSubsampling(width, target.width);
+				int ySubsampling = getSubsampling(height, target.height);
+				
+				// Decode the image and resize it to the size the whole image
+				// would've been resized to.
+				ImageReadParam param = reader.getDefaultReadParam();
+				if ((xSubsampling > 1) || (ySubsampling > 1))
+					param.setSourceSubsampling(xSubsampling, ySubsampling, 0, 0);
+				return resizeImage(reader.read(0, param), target, false);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/**
+	 * Gets how many source pixels can be skipped while still having at least
+	 * {@link #SUBSAMPLING_MARGIN} times the target number of pixels left for
+	 * the resize to filter.
+	 * 
+	 * @param  source Number of pixels in the source image.
+	 * @param  target Number of pixels needed after the resize.
+	 * @return        Subsampling period (1 means no subsampling).
+	 */
+	private static int getSubsampling(int source, int target) {
+		return Math.max(1, source / (Math.max(1, target) * SUBSAMPLING_MARGIN));
+	}
+	
 	/**
-	 * Resizes a {@link BufferedImage} to a new dimension.
+	 * Resizes a {@link BufferedImage} to a new dimension. Downscaling is done
+	 * progressively, halving the image with bilinear filtering until it's close
+	 * to the target size, which looks as good as area averaging while being a
+	 * lot faster and creating a lot less garbage. The resized image only has
+	 * an alpha channel if the original one isn't opaque.
 	 * 
 	 * @param image          Image to be resized
 	 * @param dim            Dimension to resize the image to.
 	 * @param maintainAspect Should we maintain the original aspect ratio?
 	 * @return               Properly resized {@link BufferedImage}.
 	 * 
-	 * @see <a href="https://stackoverflow.com/a/9417836/126353">Source of part of this snippet</a>
+	 * @see "Chris Campbell, The Perils of Image.getScaledInstance()"
 	 */
 	public static BufferedImage resizeImage(BufferedImage image, Dimension dim,
 			boolean maintainAspect) {
 		// Handle the aspect ratio stuff.
+		if (maintainAspect)
+			dim = getScaledDimension(new Dimension(image.getWidth(), image.getHeight()), dim);
+		int targetWidth = Math.max(1, dim.width);
+		int targetHeight = Math.max(1, dim.height);
+		
+		// Halve opaque images directly on their pixel data while we can, which
+		// is the same as a bilinear halving step, only a lot faster.
+		BufferedImage current = image;
+		while (((current.getWidth() / 2) >= targetWidth) &&
+				((current.getHeight() / 2) >= targetHeight) && canHalveRaster(current)) {
+			BufferedImage half = halveRaster(current);
+			if (current != image)
+				current.flush();
+			current = half;
+		}
+		
+		// Intermediate steps don't need an alpha channel if the image is opaque.
+		int stepType = (image.getTransparency() == Transparency.OPAQUE) ?
+				BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+		int width = current.getWidth();
+		int height = current.getHeight();
+		
+		do {
+			// Halve the image while we are more than twice as big as the target.
+			if (width > targetWidth) {
+				width = Math.max(width / 2, targetWidth);
+			} else {
+				width = targetWidth;
+			}
+			if (height > targetHeight) {
+				height = Math.max(height / 2, targetHeight);
+			} else {
+				height = targetHeight;
+			}
+			
+			BufferedImage step = new BufferedImage(width, height, stepType);
+			
+			// Draw the scaled down version.
+			Graphics2D graphics = step.createGraphics();
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+					(current.getWidth() < width) || (current.getHeight() < height) ?
+					RenderingHints.VALUE_INTERPOLATION_BICUBIC :
+					RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING,
+					RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.drawImage(current, 0, 0, width, height, null);
+			graphics.dispose();
+			
+			// Let go of the intermediate images as soon as possible.
+			if (current != image)
+				current.flush();
+			current = step;
+		} while ((width != targetWidth) || (height != targetHeight));
+		
+		return current;
+	}
+	
+	/**
+	 * Converts an image to the pixel format of the screen, so that it can be
+	 * drawn without being converted every time, and so that Java2D can keep
+	 * a copy of it in video memory. Images that already match are returned
+	 * as they are, and so is everything when there isn't a screen.
+	 * 
+	 * @param  image Image to be converted.
+	 * @return       Image in a format compatible with the screen.
+	 */
+	public static BufferedImage toCompatibleImage(BufferedImage image) {
+		GraphicsConfiguration config = getScreenConfiguration();
+		if (config == null)
+			return image;
+		
+		// Check if it's already in the right format.
+		int transparency = image.getTransparency();
+		if (image.getColorModel().equals(config.getColorModel(transparency)))
+			return image;
+		
+		// Convert it.
+		BufferedImage compatible = config.createCompatibleImage(image.getWidth(),
+				image.getHeight(), transparency);
+		Graphics2D graphics = compatible.createGraphics();
+		graphics.drawImage(image, 0, 0, null);
+		graphics.dispose();
+		
+		return compatible;
+	}
+	
+	/**
+	 * Gets the scale factor of the screen, which is bigger than 1 on HiDPI
+	 * displays when the Java runtime scales the user interface (Java 9 and
+	 * later on Windows and Linux, for example).
+	 * 
+	 * @return Number of pixels per user interface unit.
+	 */
+	public static double getDisplayScale() {
+		GraphicsConfiguration config = getScreenConfiguration();
+		if (config == null)
+			return 1;
+		
+		return Math.max(1, config.getDefaultTransform().getScaleX());
+	}
+	
+	/**
+	 * Gets the configuration of the default screen.
+	 * 
+	 * @return Screen configuration or {@code null} if there isn't a screen.
+	 */
+	private static GraphicsConfiguration getScreenConfiguration() {
+		if (GraphicsEnvironment.isHeadless())
+			return null;
+		
+		return GraphicsEnvironment.getLocalGraphicsEnvironment()
+				.getDefaultScreenDevice().getDefaultConfiguration();
+	}
+	
+	/**
+	 * Checks if an image can be halved by {@link #halveRaster(BufferedImage)}.
+	 * 
+	 * @param  image Image to be checked.
+	 * @return       True if the image is opaque and its pixel data is laid out
+	 *               in a way we can handle directly.
+	 */
+	private static boolean canHalveRaster(BufferedImage image) {
+		if ((image.getType() != BufferedImage.TYPE_INT_RGB) &&
+				(image.getType() != BufferedImage.TYPE_3BYTE_BGR)) {
+			return false;
+		}
+		
+		// Only images that own all of their pixel data (not sub-images).
+		WritableRaster raster = image.getRaster();
+		return (raster.getParent() == null) &&
+				(raster.getSampleModelTranslateX() == 0) &&
+				(raster.getSampleModelTranslateY() == 0) &&
+				(raster.getDataBuffer().getNumBanks() == 1) &&
+				(raster.getDataBuffer().getOffset() == 0);
+	}
+	
+	/**
+	 * Halves an opaque image by averaging each 2x2 block of pixels. An odd last
+	 * row or column is dropped.
+	 * 
+	 * @param  image Image to be halved. Must pass {@link #canHalveRaster(BufferedImage)}.
+	 * @return       Halved image of type {@link BufferedImage#TYPE_INT_RGB}.
+	 */
+	private static BufferedImage halveRaster(BufferedImage image) {
+		int width = image.getWidth() / 2;
+		int height = image.getHeight() / 2;
+		BufferedImage half = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] dst = ((DataBufferInt)half.getRaster().getDataBuffer()).getData();
+		
+		if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+			// Packed 0x00RRGGBB pixels.
+			int[] src = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+			int stride = ((SinglePixelPackedSampleModel)image.getSampleModel())
+					.getScanlineStride();
+			
+			for (int y = 0; y < height; y++) {
+				int row = (y * 2) * stride;
+				int out = y * width;
+				
+				for (int x = 0; x < width; x++) {
+					int i = row + (x * 2);
+					int p0 = src[i];
+					int p1 = src[i + 1];
+					int p2 = src[i + stride];
+					int p3 = src[i + stride + 1];
+					
+					// Average the red and blue channels together and green apart.
+					int rb = (p0 & 0xFF00FF) + (p1 & 0xFF00FF) + (p2 & 0xFF00FF) +
+							(p3 & 0xFF00FF) + 0x020002;
+					int g = (p0 & 0x00FF00) + (p1 & 0x00FF00) + (p2 & 0x00FF00) +
+							(p3 & 0x00FF00) + 0x000200;
+					dst[out + x] = ((rb >> 2) & 0xFF00FF) | ((g >> 2) & 0x00FF00);
+				}
+			}
+		} else {
+			// Interleaved B, G, R bytes.
+			byte[] src = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+			int stride = ((ComponentSampleModel)image.getSampleModel())
+					.getScanlineStride();
+			
+			for (int y = 0; y < height; y++) {
+				int row = (y * 2) * stride;
+				int out = y * width;
+				
+				for (int x = 0; x < width; x++) {
+					int i = row + (x * 6);
+					int j = i + stride;
+					int b = (src[i] & 0xFF) + (src[i + 3] & 0xFF) +
+							(src[j] & 0xFF) + (src[j + 3] & 0xFF) + 2;
+					int g = (src[i + 1] & 0xFF) + (src[i + 4] & 0xFF) +
+							(src[j + 1] & 0xFF) + (src[j + 4] & 0xFF) + 2;
+					int r = (src[i + 2] & 0xFF) + (src[i + 5] & 0xFF) +
+							(src[j + 2] & 0xFF) + (src[j + 5] & 0xFF) + 2;
+					dst[out + x] = ((r >> 2) << 16) | ((g >> 2) << 8) | (b >> 2);
+				}
+			}
+		}
+		
+		return half;
+	}
+	
+	/**
+	 * Resizes a {@link BufferedImage} to a new dimension using the slow, but
+	 * high quality, area averaging algorithm of
+	 * {@link Image#getScaledInstance(int, int, int)}. This is only kept around
+	 * as a reference to compare {@link #resizeImage(BufferedImage, Dimension, boolean)}
+	 * against.
+	 * 
+	 * @param image          Image to be resized
+	 * @param dim            Dimension to resize the image to.
+	 * @param maintainAspect Should we maintain the original aspect ratio?
+	 * @return               Properly resized {@link BufferedImage}.
+	 * 
+	 * @see <a href="https://stackoverflow.com/a/9417836/126353">Source of part of this snippet</a>
+	 */
+	public static BufferedImage resizeImageAreaAveraging(BufferedImage image,
+			Dimension dim, boolean maintainAspect) {
+		// Handle the aspect ratio stuff.
 		if (maintainAspect)
 			dim = getScaledDimension(new Dimension(image.getWidth(), image.getHeight()), dim);
 		
@@ -31,12 +428,12 @@ public class ImageUtilities {
 		Image tempImage = image.getScaledInstance(dim.width, dim.height, Image.SCALE_SMOOTH);
 	    BufferedImage scaledImage = new BufferedImage(dim.width, dim.height,
 	    		BufferedImage.TYPE_INT_ARGB);
-
+	
 	    // Create a scaled version.
 	    Graphics2D graphics = scaledImage.createGraphics();
 	    graphics.drawImage(tempImage, 0, 0, null);
 	    graphics.dispose();
-
+	
 	    return scaledImage;
 	}
 	
@@ -56,21 +453,21 @@ public class ImageUtilities {
 	    int bound_height = boundary.height;
 	    int new_width = original_width;
 	    int new_height = original_height;
-
+	
 	    // First check if we need to scale width.
 	    if (original_width > bound_width) {
 	        // Scale width to fit and scale height to maintain aspect ratio.
 	        new_width = bound_width;
 	        new_height = (new_width * original_height) / original_width;
 	    }
-
+	
 	    // Check if we need to scale even with the new height.
 	    if (new_height > bound_height) {
 	        // Scale height to fit instead and scale width to maintain aspect ratio
 	        new_height = bound_height;
 	        new_width = (new_height * original_width) / original_height;
 	    }
-
+	
 	    return new Dimension(new_width, new_height);
 	}
 }
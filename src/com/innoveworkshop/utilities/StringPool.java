@@ -0,0 +1,52 @@
+package com.innoveworkshop.utilities;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe pool of canonical strings. Unlike {@link String#intern()}
+ * this pool can be thrown away together with whatever owns it.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class StringPool {
+	private ConcurrentHashMap<String, String> pool;
+	
+	/**
+	 * Creates an empty string pool.
+	 */
+	public StringPool() {
+		pool = new ConcurrentHashMap<String, String>();
+	}
+	
+	/**
+	 * Gets the canonical instance of a string, adding it to the pool if it
+	 * isn't there yet.
+	 * 
+	 * @param  str String to be interned.
+	 * @return     Canonical instance of the string or {@code null} if the
+	 *             string was {@code null}.
+	 */
+	public String intern(String str) {
+		if (str == null)
+			return null;
+		
+		String canonical = pool.putIfAbsent(str, str);
+		return (canonical == null) ? str : canonical;
+	}
+	
+	/**
+	 * Gets the number of strings in the pool.
+	 * 
+	 * @return Number of pooled strings.
+	 */
+	public int size() {
+		return pool.size();
+	}
+	
+	/**
+	 * Removes all the strings from the pool.
+	 */
+	public void clear() {
+		pool.clear();
+	}
+}
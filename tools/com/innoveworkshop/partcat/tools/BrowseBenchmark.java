@@ -0,0 +1,102 @@
+package com.innoveworkshop.partcat.tools;
+
+import java.awt.Dimension;
+
+import com.innoveworkshop.partcat.PartCatWorkspace;
+import com.innoveworkshop.partcat.components.Component;
+import com.innoveworkshop.partcat.components.ComponentCategory;
+import com.innoveworkshop.partcat.images.ImageCache;
+import com.innoveworkshop.partcat.index.CategoryIndex;
+
+/**
+ * Times browsing through a workspace the way the main window does it: every
+ * component is visited in the order of the component tree and its image is
+ * fetched at the size of the image preview. The first pass starts with an
+ * empty image cache, so it shows the cost of the thumbnail store and of
+ * decoding, and the second one shows the cost of a fully cached browse.
+ * 
+ * Usage: {@code BrowseBenchmark [-size WxH] workspace}.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class BrowseBenchmark {
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args Command line arguments.
+	 */
+	public static void main(String[] args) {
+		Dimension dim = new Dimension(300, 250);
+		String path = null;
+		
+		// Parse the arguments.
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-size") && (i + 1 < args.length)) {
+				String[] size = args[++i].split("x");
+				dim = new Dimension(Integer.parseInt(size[0]),
+						Integer.parseInt(size[1]));
+			} else {
+				path = args[i];
+			}
+		}
+		
+		if (path == null) {
+			System.err.println("Usage: BrowseBenchmark [-size WxH] workspace");
+			System.exit(1);
+		}
+		
+		try {
+			// Open the workspace.
+			long start = System.nanoTime();
+			PartCatWorkspace workspace = new PartCatWorkspace(path);
+			System.out.println(String.format("Opened %d components in %.1fms",
+					workspace.getCategoryIndex().size(),
+					(System.nanoTime() - start) / 1e6));
+			
+			// Browse everything twice.
+			ImageCache cache = workspace.getImageCache();
+			cache.clear();
+			browse(workspace, dim, "Cold");
+			browse(workspace, dim, "Warm");
+			System.out.println(String.format("Image cache: %d hits, %d misses, %d images, %dKB",
+					cache.getHits(), cache.getMisses(), cache.size(),
+					cache.getBytes() / 1024));
+			
+			workspace.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Visits every component in the order of the component tree and fetches
+	 * its image.
+	 * 
+	 * @param workspace Workspace to browse.
+	 * @param dim       Size of the image preview.
+	 * @param label     Name of the pass to be printed.
+	 */
+	private static void browse(PartCatWorkspace workspace, Dimension dim,
+			String label) {
+		CategoryIndex index = workspace.getCategoryIndex();
+		long slowest = 0;
+		int count = 0;
+		
+		long start = System.nanoTime();
+		for (ComponentCategory category : index.getCategories()) {
+			for (Component component : index.getComponents(category)) {
+				long time = System.nanoTime();
+				component.getImage().getIcon(dim, true);
+				
+				slowest = Math.max(slowest, System.nanoTime() - time);
+				count++;
+			}
+		}
+		long total = System.nanoTime() - start;
+		
+		System.out.println(String.format("%s: %d components in %.1fms (%.3fms average, %.1fms slowest)",
+				label, count, total / 1e6, total / 1e6 / Math.max(1, count),
+				slowest / 1e6));
+	}
+}
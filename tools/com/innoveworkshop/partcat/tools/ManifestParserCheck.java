@@ -0,0 +1,190 @@
+package com.innoveworkshop.partcat.tools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.innoveworkshop.partcat.PartCatConstants;
+import com.innoveworkshop.partcat.components.ComponentProperties;
+
+/**
+ * Checks that {@link ComponentProperties#parseManifest(Path)} gives exactly
+ * the same properties as the original regular expression based parser kept in
+ * {@link ComponentProperties#parseManifestRegex(Path)}. A set of hand-written
+ * samples covering the tricky cases is checked along with a number of random
+ * manifests and, optionally, every manifest of the workspaces passed as
+ * arguments.
+ * 
+ * Usage: {@code ManifestParserCheck [workspace...]}. The exit status is 1 if
+ * any of the manifests was parsed differently.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ManifestParserCheck {
+	private static final int RANDOM_SAMPLES = 5000;
+	private static final String[] SAMPLES = {
+		// Plain manifest.
+		"Category: Resistors\nPackage: 0805\nValue: 10k\n",
+		// Byte order mark before the first line.
+		"\ufeffCategory: Resistors\nValue: 10k\n",
+		// Windows and old Mac line endings.
+		"Category: Resistors\r\nValue: 10k\r\n",
+		"Category: Resistors\rValue: 10k\r",
+		"Category: Resistors\r\n\r\n\r\nValue: 10k",
+		// Unicode line terminators.
+		"Category: Resistors\u0085Value: 10k\u2028Package: 0805\u2029",
+		// Odd spacing around keys and values.
+		"  Category: Resistors  \n\tValue:   10k\t\nPackage :0805\nTolerance:1%\n",
+		"Category:  Resistors\nValue:\t10k\n   \n\t\n",
+		// Empty values.
+		"Category: \nValue:\nPackage:  \nSub-Category: SMD\n",
+		// Invalid keys and lines.
+		"Cat egory: Resistors\nValue_1: 10k\n: 10k\nNo separator\nPower: 1/4W\n",
+		// Values with colons and non-ASCII text.
+		"Notes: See: datasheet\nValue: 4.7\u00b5F\nName: \u00c4\u00e7\u00e9 \u2126\n",
+		// Duplicate keys.
+		"Value: 10k\nValue: 22k\nvalue: 47k\n",
+		// Control characters.
+		"Value: 10k\u0001\nPackage:\u0000 0805\n\u000bCategory: Resistors\u000c\n",
+		// Nothing at all.
+		"",
+		"\n\n\r\n",
+	};
+	private static final String ALPHABET = "Aa0-: \t\r\n\u0085\u2028\u2029" +
+		"\u0001\u000b\u000c\u00b5\u00e9\ufeffzZ9_.,/%";
+	
+	/**
+	 * Runs the check.
+	 * 
+	 * @param args Paths to workspaces whose manifests should also be checked.
+	 */
+	public static void main(String[] args) {
+		List<Path> manifests = new ArrayList<Path>();
+		List<Path> temporary = new ArrayList<Path>();
+		
+		try {
+			// Write the samples and random manifests to temporary files.
+			Random random = new Random(1);
+			for (String sample : SAMPLES)
+				temporary.add(writeSample(sample));
+			for (int i = 0; i < RANDOM_SAMPLES; i++)
+				temporary.add(writeSample(randomManifest(random)));
+			manifests.addAll(temporary);
+			
+			// Add the manifests of the workspaces.
+			for (String arg : args) {
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(
+						Paths.get(arg, PartCatConstants.COMPONENTS_ROOT))) {
+					for (Path dir : stream) {
+						Path manifest = dir.resolve(PartCatConstants.MANIFEST_FILE);
+						if (Files.exists(manifest))
+							manifests.add(manifest);
+					}
+				}
+			}
+			
+			// Compare the parsers.
+			int mismatches = 0;
+			for (Path manifest : manifests) {
+				if (!compare(manifest))
+					mismatches++;
+			}
+			
+			System.out.println("Checked " + manifests.size() + " manifests, " +
+					mismatches + " mismatches.");
+			if (mismatches > 0)
+				System.exit(1);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(2);
+		} finally {
+			// Clean up after ourselves.
+			for (Path path : temporary) {
+				try {
+					Files.deleteIfExists(path);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Parses a manifest with both parsers and compares the results.
+	 * 
+	 * @param  manifest Manifest file path.
+	 * @return          True if both parsers agree.
+	 * 
+	 * @throws IOException If the manifest couldn't be read.
+	 */
+	private static boolean compare(Path manifest) throws IOException {
+		ComponentProperties expected = new ComponentProperties();
+		ComponentProperties actual = new ComponentProperties();
+		
+		// The old parser complains about every invalid line it finds.
+		PrintStream err = System.err;
+		System.setErr(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		try {
+			expected.parseManifestRegex(manifest);
+			actual.parseManifest(manifest);
+		} finally {
+			System.setErr(err);
+		}
+		
+		// Compare the entries in order.
+		String expectedEntries = new ArrayList<Object>(expected.entrySet()).toString();
+		String actualEntries = new ArrayList<Object>(actual.entrySet()).toString();
+		if (expectedEntries.equals(actualEntries))
+			return true;
+		
+		System.out.println("Mismatch in " + manifest.toString() + ":");
+		System.out.println("  regex:  " + expectedEntries);
+		System.out.println("  parser: " + actualEntries);
+		return false;
+	}
+	
+	/**
+	 * Generates a random manifest made up mostly of the characters that the
+	 * parsers care about.
+	 * 
+	 * @param  random Random number generator.
+	 * @return        Manifest contents.
+	 */
+	private static String randomManifest(Random random) {
+		StringBuilder str = new StringBuilder();
+		int length = random.nextInt(80);
+		
+		for (int i = 0; i < length; i++)
+			str.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		
+		return str.toString();
+	}
+	
+	/**
+	 * Writes a manifest to a temporary file using the platform's default
+	 * charset, which is what both parsers read it with.
+	 * 
+	 * @param  contents Manifest contents.
+	 * @return          Path to the temporary file.
+	 * 
+	 * @throws IOException If the file couldn't be written.
+	 */
+	private static Path writeSample(String contents) throws IOException {
+		Path path = Files.createTempFile("manifest", ".txt");
+		Files.write(path, contents.getBytes(Charset.defaultCharset()));
+		
+		return path;
+	}
+}
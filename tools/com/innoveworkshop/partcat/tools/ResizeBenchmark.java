@@ -0,0 +1,199 @@
+package com.innoveworkshop.partcat.tools;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import com.innoveworkshop.utilities.ImageUtilities;
+
+/**
+ * Compares the time taken and the quality given by
+ * {@link ImageUtilities#resizeImage(BufferedImage, Dimension, boolean)} and
+ * {@link ImageUtilities#readResizedImage(File, Dimension, boolean)} against
+ * the original area averaging resize kept in
+ * {@link ImageUtilities#resizeImageAreaAveraging(BufferedImage, Dimension, boolean)}.
+ * The quality is given as the PSNR of each result against the area averaged
+ * one, where anything above 40dB is hard to tell apart.
+ * 
+ * Usage: {@code ResizeBenchmark [-size WxH] [image...]}. When no images are
+ * given a synthetic 4000x3000 photo sized image is used. The default size is
+ * the one of the image preview in the main window.
+ * 
+ * @author Nathan Campos <nathan@innoveworkshop.com>
+ */
+public class ResizeBenchmark {
+	private static final int WARMUP_RUNS = 3;
+	private static final int RUNS = 5;
+	
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args Command line arguments.
+	 */
+	public static void main(String[] args) {
+		Dimension dim = new Dimension(300, 250);
+		List<File> files = new ArrayList<File>();
+		
+		// Parse the arguments.
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-size") && (i + 1 < args.length)) {
+				String[] size = args[++i].split("x");
+				dim = new Dimension(Integer.parseInt(size[0]),
+						Integer.parseInt(size[1]));
+			} else {
+				files.add(new File(args[i]));
+			}
+		}
+		
+		try {
+			// Use a synthetic image if we weren't given any.
+			if (files.isEmpty()) {
+				File file = File.createTempFile("resize", ".jpg");
+				file.deleteOnExit();
+				ImageIO.write(createSyntheticImage(4000, 3000), "jpg", file);
+				files.add(file);
+			}
+			
+			System.out.println("Resizing to fit " + dim.width + "x" + dim.height +
+					", average of " + RUNS + " runs:");
+			for (File file : files)
+				benchmark(file, dim);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Benchmarks the resizing of a single image and prints the results.
+	 * 
+	 * @param file Image file.
+	 * @param dim  Dimension to fit the image into.
+	 * 
+	 * @throws IOException If the image couldn't be read.
+	 */
+	private static void benchmark(File file, Dimension dim) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if (image == null) {
+			System.err.println("Couldn't read " + file.getPath());
+			return;
+		}
+		
+		// Warm everything up.
+		for (int i = 0; i < WARMUP_RUNS; i++) {
+			ImageUtilities.resizeImageAreaAveraging(image, dim, true);
+			ImageUtilities.resizeImage(image, dim, true);
+			ImageUtilities.readResizedImage(file, dim, true);
+		}
+		
+		// Area averaging.
+		BufferedImage reference = null;
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++)
+			reference = ImageUtilities.resizeImageAreaAveraging(image, dim, true);
+		double averagingTime = elapsed(start);
+		
+		// Progressive downscaling of the decoded image.
+		BufferedImage resized = null;
+		start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++)
+			resized = ImageUtilities.resizeImage(image, dim, true);
+		double resizeTime = elapsed(start);
+		
+		// Subsampled decoding followed by the resize.
+		BufferedImage read = null;
+		start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++)
+			read = ImageUtilities.readResizedImage(file, dim, true);
+		double readTime = elapsed(start);
+		
+		System.out.println(String.format("%s (%dx%d):", file.getName(),
+				image.getWidth(), image.getHeight()));
+		System.out.println(String.format("  resizeImageAreaAveraging: %8.1fms",
+				averagingTime));
+		System.out.println(String.format("  resizeImage:              %8.1fms  PSNR %.1fdB",
+				resizeTime, psnr(reference, resized)));
+		System.out.println(String.format("  readResizedImage:         %8.1fms  PSNR %.1fdB (includes decoding)",
+				readTime, psnr(reference, read)));
+	}
+	
+	/**
+	 * Gets the average time taken by each run since a given time.
+	 * 
+	 * @param  start Time when the runs started in nanoseconds.
+	 * @return       Average time in milliseconds.
+	 */
+	private static double elapsed(long start) {
+		return (System.nanoTime() - start) / 1e6 / RUNS;
+	}
+	
+	/**
+	 * Calculates the peak signal to noise ratio between two images, ignoring
+	 * their alpha channels.
+	 * 
+	 * @param  reference Reference image.
+	 * @param  image     Image to compare against the reference.
+	 * @return           PSNR in decibels or infinity if the images are equal.
+	 */
+	private static double psnr(BufferedImage reference, BufferedImage image) {
+		if ((reference.getWidth() != image.getWidth()) ||
+				(reference.getHeight() != image.getHeight())) {
+			return Double.NaN;
+		}
+		
+		double error = 0;
+		for (int y = 0; y < reference.getHeight(); y++) {
+			for (int x = 0; x < reference.getWidth(); x++) {
+				int p = reference.getRGB(x, y);
+				int q = image.getRGB(x, y);
+				
+				for (int shift = 0; shift < 24; shift += 8) {
+					int diff = ((p >> shift) & 0xFF) - ((q >> shift) & 0xFF);
+					error += diff * diff;
+				}
+			}
+		}
+		
+		error /= reference.getWidth() * reference.getHeight() * 3.0;
+		return 10 * Math.log10(255 * 255 / error);
+	}
+	
+	/**
+	 * Creates an image with gradients, fine lines and text, which is about as
+	 * hard on a resizing algorithm as a photo of a component gets.
+	 * 
+	 * @param  width  Image width.
+	 * @param  height Image height.
+	 * @return        Synthetic image.
+	 */
+	private static BufferedImage createSyntheticImage(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height,
+				BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = image.createGraphics();
+		
+		// Background gradient.
+		for (int y = 0; y < height; y++) {
+			g.setColor(new Color(255 * y / height, 128, 255 - (255 * y / height)));
+			g.drawLine(0, y, width, y);
+		}
+		
+		// Fine lines and text.
+		g.setColor(Color.BLACK);
+		for (int x = 0; x < width; x += 7)
+			g.drawLine(x, 0, width - x, height);
+		g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, height / 75));
+		for (int y = height / 60; y < height; y += height / 50)
+			g.drawString("R1 10k 0805 SOT-23 DIP-8 LM7805 TO-220", 20, y);
+		
+		g.dispose();
+		return image;
+	}
+}